@@ -1,14 +1,33 @@
 package com.kcjmowright.zerodte.controller;
 
+import com.kcjmowright.zerodte.model.EnsemblePrediction;
+import com.kcjmowright.zerodte.model.FeatureImportance;
 import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.InferenceBenchmarkResult;
+import com.kcjmowright.zerodte.model.InferencePoolStats;
+import com.kcjmowright.zerodte.model.ModelVersion;
+import com.kcjmowright.zerodte.model.OnlineLearningStatus;
+import com.kcjmowright.zerodte.model.PredictionCacheStats;
 import com.kcjmowright.zerodte.model.PricePrediction;
+import com.kcjmowright.zerodte.model.TrainingCheckpoint;
 import com.kcjmowright.zerodte.model.TrainingConfig;
-import com.kcjmowright.zerodte.model.TrainingResult;
+import com.kcjmowright.zerodte.model.TrainingJob;
+import com.kcjmowright.zerodte.service.GEXBoostedTreePredictor;
+import com.kcjmowright.zerodte.service.GEXDistiller;
+import com.kcjmowright.zerodte.service.GEXEnsemblePredictor;
+import com.kcjmowright.zerodte.service.GEXModelRegistry;
 import com.kcjmowright.zerodte.service.GEXModelTrainer;
+import com.kcjmowright.zerodte.service.GEXOnlineLearner;
 import com.kcjmowright.zerodte.service.GEXPredictor;
 import com.kcjmowright.zerodte.service.GEXService;
+import com.kcjmowright.zerodte.service.GEXWarmStartTrainer;
+import com.kcjmowright.zerodte.service.ModelBundle;
+import com.kcjmowright.zerodte.service.PredictionCache;
+import com.kcjmowright.zerodte.service.TrainingCheckpointer;
+import com.kcjmowright.zerodte.service.TrainingJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -16,6 +35,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
@@ -29,14 +49,134 @@ import java.util.Map;
 class AIController {
 
   private final GEXPredictor predictor;
+  private final GEXBoostedTreePredictor treePredictor;
+  private final GEXEnsemblePredictor ensemblePredictor;
+  private final PredictionCache predictionCache;
+  private final TrainingJobService trainingJobService;
+  private final TrainingCheckpointer trainingCheckpointer;
+  private final GEXWarmStartTrainer warmStartTrainer;
+  private final GEXDistiller distiller;
+  private final GEXOnlineLearner onlineLearner;
   private final GEXModelTrainer trainer;
+  private final GEXModelRegistry modelRegistry;
   private final GEXService gexService;
 
   @PostMapping("/train")
-  public Mono<TrainingResult> trainModel(@RequestBody TrainingConfig config) {
+  public Mono<TrainingJob> trainModel(@RequestBody TrainingConfig config) {
     log.info("Received training request: {}", config);
-    TrainingResult result = trainer.trainModel(config);
-    return Mono.just(result);
+    return Mono.just(trainingJobService.submit(config));
+  }
+
+  @GetMapping("/train/jobs")
+  public Flux<TrainingJob> getTrainingJobs() {
+    return Flux.fromIterable(trainingJobService.getJobs());
+  }
+
+  @GetMapping("/train/jobs/{id}")
+  public Mono<TrainingJob> getTrainingJob(@PathVariable String id) {
+    return Mono.justOrEmpty(trainingJobService.getJob(id));
+  }
+
+  @DeleteMapping("/train/jobs/{id}")
+  public Mono<TrainingJob> cancelTrainingJob(@PathVariable String id) {
+    log.info("Received training cancellation: {}", id);
+    return Mono.justOrEmpty(trainingJobService.cancel(id));
+  }
+
+  @GetMapping("/train/checkpoints")
+  public Flux<TrainingCheckpoint> getTrainingCheckpoints() {
+    return Flux.fromIterable(trainingCheckpointer.getCheckpoints());
+  }
+
+  @PostMapping("/train/jobs/{id}/resume")
+  public Mono<TrainingJob> resumeTrainingJob(@PathVariable String id) {
+    log.info("Received training resume request: {}", id);
+    return Mono.justOrEmpty(trainingJobService.resume(id));
+  }
+
+  @PostMapping("/train/warm-start")
+  public Mono<TrainingJob> warmStart(@RequestParam(required = false) String symbol) {
+    log.info("Received warm start request for {}", symbol == null ? "the default model" : symbol);
+    return Mono.just(trainingJobService.submitTask(
+        TrainingConfig.builder().symbol(symbol).build(),
+        () -> warmStartTrainer.warmStart(symbol)
+    ));
+  }
+
+  @PostMapping("/train/scaling")
+  public Mono<TrainingJob> measureScaling(@RequestBody TrainingConfig config,
+                                          @RequestParam(defaultValue = "1,2,4,8,16") List<Integer> workers) {
+    log.info("Received data-parallel scaling request for {} workers: {}", workers, config);
+    return Mono.just(trainingJobService.submitTask(config, () -> trainer.measureScaling(config, workers)));
+  }
+
+  @PostMapping("/train/precision")
+  public Mono<TrainingJob> measurePrecision(@RequestBody TrainingConfig config,
+                                            @RequestParam(defaultValue = "DOUBLE,FLOAT,HALF") List<String> dataTypes) {
+    log.info("Received precision benchmark request for {}: {}", dataTypes, config);
+    return Mono.just(trainingJobService.submitTask(config, () -> trainer.measurePrecision(config, dataTypes)));
+  }
+
+  @PostMapping("/train/distill")
+  public Mono<TrainingJob> distill(@RequestBody TrainingConfig config,
+                                   @RequestParam(defaultValue = "false") boolean live) {
+    log.info("Received distillation request, live {}: {}", live, config);
+    return Mono.just(trainingJobService.submitTask(config, () -> distiller.distill(config, live)));
+  }
+
+  @GetMapping("/train/online")
+  public Flux<OnlineLearningStatus> getOnlineLearningStatus() {
+    return Flux.fromIterable(onlineLearner.getStatus());
+  }
+
+  @PostMapping("/train/online/{symbol}")
+  public Mono<OnlineLearningStatus> learnOnline(@PathVariable String symbol) {
+    log.info("Received online learning request for {}", symbol);
+    return Mono.fromFuture(onlineLearner.learn(symbol));
+  }
+
+  @PostMapping("/train/gbt")
+  public Mono<TrainingJob> trainBoostedTrees(@RequestBody TrainingConfig config) {
+    log.info("Received gradient-boosted tree training request: {}", config);
+    return Mono.just(trainingJobService.submitTask(config, () -> treePredictor.train(config)));
+  }
+
+  @GetMapping("/models")
+  public Flux<ModelVersion> getModelVersions() {
+    return Flux.fromIterable(modelRegistry.getVersions());
+  }
+
+  @GetMapping("/models/routes")
+  public Mono<Map<String, String>> getModelRoutes() {
+    return Mono.just(modelRegistry.getRoutes());
+  }
+
+  @GetMapping("/models/cache")
+  public Mono<Map<String, Long>> getModelCacheUsage() {
+    return Mono.just(modelRegistry.getCacheUsage());
+  }
+
+  @GetMapping("/models/inference")
+  public Flux<InferencePoolStats> getModelInferenceStats() {
+    return Flux.fromIterable(modelRegistry.getInferenceStats());
+  }
+
+  @PostMapping("/models/{version}/promote")
+  public Mono<ModelVersion> promoteModelVersion(@PathVariable String version,
+                                                @RequestParam(required = false) String symbol,
+                                                @RequestParam(required = false) Integer horizon,
+                                                @RequestParam(defaultValue = "false") boolean live) {
+    log.info("Received {}model promotion: {} for {}@{}", live ? "live " : "", version, symbol, horizon);
+    ModelBundle bundle = modelRegistry.promote(version, symbol, horizon, live);
+    return Mono.just(ModelVersion.builder()
+        .version(bundle.getVersion())
+        .created(bundle.getCreated())
+        .config(bundle.getConfig())
+        .active(true)
+        .routes(List.of((live ? GEXModelRegistry.LIVE_ROUTE_PREFIX : "") + GEXModelRegistry.routeKey(symbol, horizon)))
+        .loaded(true)
+        .memoryBytes(bundle.getMemoryBytes())
+        .build());
   }
 
   @GetMapping("/predict/{symbol}")
@@ -45,6 +185,31 @@ class AIController {
     return Mono.just(prediction);
   }
 
+  @GetMapping("/predict/gbt/{symbol}")
+  public Mono<PricePrediction> predictBoostedTrees(@PathVariable String symbol, @RequestParam int minutesAhead) {
+    return Mono.just(treePredictor.predictLive(symbol, minutesAhead));
+  }
+
+  @PostMapping("/predict/ensemble/{symbol}")
+  public Mono<EnsemblePrediction> predictEnsemble(@PathVariable String symbol,
+                                                  @RequestParam int minutesAhead,
+                                                  @RequestBody(required = false) Map<String, Double> weights) {
+    return Mono.just(ensemblePredictor.predictLive(symbol, weights, minutesAhead));
+  }
+
+  @PostMapping("/predict/benchmark")
+  public Mono<InferenceBenchmarkResult> benchmarkInference(@RequestParam(required = false) String symbol,
+                                                           @RequestParam(defaultValue = "1,4,16,64") List<Integer> clients,
+                                                           @RequestParam(defaultValue = "200") int requests) {
+    log.info("Received inference benchmark request for {} with {} clients", symbol, clients);
+    return Mono.just(predictor.benchmarkInference(symbol, clients, requests));
+  }
+
+  @GetMapping("/predict/cache")
+  public Mono<PredictionCacheStats> getPredictionCacheStats() {
+    return Mono.just(predictionCache.getStats());
+  }
+
   @GetMapping("/predict/multi-horizon/{symbol}")
   public Mono<Map<Integer, PricePrediction>> predictMultiHorizon(@PathVariable String symbol) {
     List<GEXData> history = gexService.getGEXDataBySymbolBetweenStartAndEnd(
@@ -52,22 +217,17 @@ class AIController {
         LocalDateTime.now().minusDays(4),
         LocalDateTime.now()
     );
-    Map<Integer, PricePrediction> predictions = predictor.predictMultiHorizon(
-        history.getLast(),
-        history,
-        List.of(15, 30, 60)
-    );
+    Map<Integer, PricePrediction> predictions = predictor.predictLiveMultiHorizon(history, List.of(15, 30, 60));
     return Mono.just(predictions);
   }
 
   @GetMapping("/feature-importance/{symbol}")
-  public Mono<Map<String, Double>> getFeatureImportance(@PathVariable String symbol) {
+  public Flux<FeatureImportance> getFeatureImportance(@PathVariable String symbol) {
     List<GEXData> testData = gexService.getGEXDataBySymbolBetweenStartAndEnd(
         symbol,
         LocalDateTime.now().minusDays(7),
         LocalDateTime.now()
     );
-    Map<String, Double> importance = predictor.calculateFeatureImportance(testData, 60);
-    return Mono.just(importance);
+    return Flux.fromIterable(predictor.calculateFeatureImportance(testData, 60));
   }
 }
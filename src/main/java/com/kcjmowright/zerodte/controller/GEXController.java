@@ -7,12 +7,12 @@ import com.kcjmowright.zerodte.model.PredictionRequest;
 import com.kcjmowright.zerodte.model.PricePrediction;
 import com.kcjmowright.zerodte.model.TotalGEX;
 import com.kcjmowright.zerodte.model.TrainingConfig;
-import com.kcjmowright.zerodte.model.TrainingResult;
+import com.kcjmowright.zerodte.model.TrainingJob;
 import com.kcjmowright.zerodte.model.WalkForwardRequest;
 import com.kcjmowright.zerodte.service.GEXBackTester;
-import com.kcjmowright.zerodte.service.GEXModelTrainer;
 import com.kcjmowright.zerodte.service.GEXPricePredictor;
 import com.kcjmowright.zerodte.service.GEXService;
+import com.kcjmowright.zerodte.service.TrainingJobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.bind.DefaultValue;
@@ -40,7 +40,7 @@ public class GEXController {
   private final GEXService gexService;
   private final GEXPricePredictor predictor;
   private final GEXBackTester backtester;
-  private final GEXModelTrainer trainer;
+  private final TrainingJobService trainingJobService;
 
   @GetMapping("/vix/{symbol}")
   public Flux<GEXData> getTotalGexAndVIXBySymbolBetween(
@@ -92,10 +92,9 @@ public class GEXController {
   }
 
   @PostMapping("/train")
-  public Mono<TrainingResult> trainModel(@RequestBody TrainingConfig config) {
+  public Mono<TrainingJob> trainModel(@RequestBody TrainingConfig config) {
     log.info("Received training request: {}", config);
-    TrainingResult result = trainer.trainModel(config);
-    return Mono.just(result);
+    return Mono.just(trainingJobService.submit(config));
   }
 
   @PostMapping("/predict")
@@ -105,7 +104,7 @@ public class GEXController {
         LocalDateTime.now().minusDays(3),
         LocalDateTime.now()
     );
-    PricePrediction prediction = predictor.predict(history.getLast(), history, request.getMinutesAhead());
+    PricePrediction prediction = predictor.predictLive(history.getLast(), history, request.getMinutesAhead());
     return Mono.just(prediction);
   }
 
@@ -0,0 +1,38 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BoostedTreeResult {
+  private String version;
+  private String symbol;
+  private int predictionHorizon;
+  private int trees; // boosting rounds kept after early stopping
+  private int trainSamples;
+  private int validationSamples;
+  private int testSamples;
+  private long trainingMillis;
+  private double testMSE; // in percent price change squared
+  private double testMAE;
+  private double baselineMSE; // of always predicting the mean training target
+  private double directionAccuracy;
+  private LatencyStats predictionLatency; // single snapshot predictions over the test rows
+  private List<FeatureGain> featureGains;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @Builder
+  public static class FeatureGain {
+    private String feature;
+    private double gain; // share of the training loss reduction achieved by splits on the feature
+  }
+}
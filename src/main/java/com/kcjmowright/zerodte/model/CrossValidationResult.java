@@ -15,4 +15,6 @@ public class CrossValidationResult {
   private List<Double> foldScores;
   private double meanScore;
   private double stdScore;
+  private List<Long> foldMillis; // wall-clock time of each fold
+  private long elapsedMillis;
 }
\ No newline at end of file
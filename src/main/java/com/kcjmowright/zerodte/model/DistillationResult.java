@@ -0,0 +1,44 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DistillationResult {
+  private String teacherVersion;
+  private String studentVersion;
+  private boolean live; // whether the live path was routed to the student
+  private long teacherParameters;
+  private long studentParameters;
+  private int trainSamples;
+  private int validationSamples;
+  private int testSamples;
+  private int epochsTrained;
+  private double bestValidationLoss; // MSE against the teacher's normalized outputs
+  private List<HorizonAccuracy> horizons;
+  private LatencyStats teacherLatency; // single window forward passes over test windows
+  private LatencyStats studentLatency;
+  private double latencySpeedup; // teacher mean latency over student mean latency
+  private long elapsedMillis;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @Builder
+  public static class HorizonAccuracy {
+    private int horizon;
+    private int examples; // test examples whose actual outcome is known
+    private double teacherMSE; // against the actual percent price change
+    private double studentMSE;
+    private double agreementMSE; // between student and teacher predictions
+    private double teacherDirectionAccuracy;
+    private double studentDirectionAccuracy;
+  }
+}
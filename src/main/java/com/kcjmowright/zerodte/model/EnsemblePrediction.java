@@ -0,0 +1,36 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EnsemblePrediction {
+  private PricePrediction prediction; // of the weighted mean price change
+  private double priceChange; // weighted mean of the members, in percent
+  private double disagreement; // weighted standard deviation of the members' price changes, in percent
+  private double spread; // largest minus smallest member price change, in percent
+  private boolean directionConsensus; // whether every member predicts the same direction
+  private List<Member> members;
+  private double latencyMillis; // wall time of the whole ensemble
+  private double slowestMemberMillis;
+  private double totalMemberMillis; // what running the members one after another would take
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @Builder
+  public static class Member {
+    private String version;
+    private String modelType;
+    private double weight; // normalized, the weights of all members sum to one
+    private double priceChange;
+    private double latencyMillis;
+  }
+}
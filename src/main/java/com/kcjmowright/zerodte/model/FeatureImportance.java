@@ -0,0 +1,19 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FeatureImportance {
+  private String feature;
+  private double importance; // mean increase of the prediction MSE when the feature is shuffled
+  private double stdDeviation;
+  private double confidence95Lower;
+  private double confidence95Upper;
+  private int repetitions;
+}
@@ -16,11 +16,23 @@ public class HyperparameterResult {
   private List<Trial> trials;
   private Map<String, Object> bestParams;
   private double bestScore;
+  private long elapsedMillis;
+  private long computeMillis; // summed epoch time across all trials
+  private long estimatedFullGridMillis; // estimated compute time if every trial ran all of its epochs
+  private long computeTimeSavedMillis;
 
   @Data
+  @NoArgsConstructor
   @AllArgsConstructor
   public static class Trial {
     private Map<String, Object> params;
     private double score;
+    private int epochsTrained;
+    private int rung;
+    private boolean stoppedEarly;
+
+    public Trial(Map<String, Object> params, double score) {
+      this(params, score, 0, 0, false);
+    }
   }
 }
@@ -0,0 +1,34 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InferenceBenchmarkResult {
+  private String version;
+  private int replicas;
+  private int maxBatchItems;
+  private long maxBatchWaitMicros;
+  private int requestsPerClient;
+  private List<Point> points;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @Builder
+  public static class Point {
+    private int clients;
+    private double unbatchedRequestsPerSecond; // one forward pass per request
+    private double batchedRequestsPerSecond; // requests micro-batched into shared forward passes
+    private double speedup; // batched throughput relative to unbatched
+    private LatencyStats unbatchedLatency;
+    private LatencyStats batchedLatency;
+  }
+}
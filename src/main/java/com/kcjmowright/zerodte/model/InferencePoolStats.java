@@ -0,0 +1,20 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InferencePoolStats {
+  private String version;
+  private int maxReplicas;
+  private int replicas; // replicas created so far, they are created on demand
+  private int busy;
+  private int waiting; // callers waiting for a replica right now
+  private LatencyStats queueWait;
+  private LatencyStats execution;
+}
@@ -0,0 +1,22 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LatencyStats {
+  private long count;
+  private double meanMillis;
+  private double p50Millis; // percentiles are the upper bound of the histogram bucket holding them
+  private double p95Millis;
+  private double p99Millis;
+  private double maxMillis;
+  private Map<Double, Long> buckets; // upper bound in milliseconds -> samples, empty buckets omitted
+}
@@ -0,0 +1,23 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ModelVersion {
+  private String version;
+  private LocalDateTime created;
+  private TrainingConfig config;
+  private boolean active;
+  private List<String> routes; // symbols, symbol@horizon pairs or "default" served by this version
+  private boolean loaded;
+  private long memoryBytes;
+}
@@ -0,0 +1,27 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OnlineLearningStatus {
+  private String symbol;
+  private String liveVersion; // version the shadow model was copied from, or last promoted to
+  private LocalDateTime lastLabeled; // snapshot time of the newest example learned from
+  private long examples; // labeled examples both models were scored on
+  private long updates; // SGD steps applied to the shadow model
+  private long skippedUpdates; // examples left out once a minute's update budget was spent
+  private int windowSize; // examples in the rolling errors
+  private double liveRollingMSE; // normalized target MSE over the rolling window
+  private double shadowRollingMSE;
+  private int promotions;
+  private LocalDateTime lastPromotion;
+  private LatencyStats updateLatency; // wall time of each minute's update
+}
@@ -0,0 +1,35 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PrecisionResult {
+  private String modelType;
+  private int trainSamples;
+  private int validationSamples;
+  private int epochs;
+  private List<Point> points;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @Builder
+  public static class Point {
+    private String dataType;
+    private Double trainSamplesPerSecond; // null for inference only types
+    private Double trainSpeedup; // relative to DOUBLE
+    private Double validationLoss; // of the network trained in this type
+    private double inferenceSamplesPerSecond; // of the DOUBLE trained network converted to this type
+    private double inferenceSpeedup; // relative to DOUBLE
+    private double maxPredictionDifference; // largest deviation from the DOUBLE predictions, in percent price change
+    private long parameterBytes;
+  }
+}
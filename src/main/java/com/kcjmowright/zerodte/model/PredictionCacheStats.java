@@ -0,0 +1,19 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PredictionCacheStats {
+  private long hits;
+  private long misses;
+  private long coalesced; // misses that waited for a computation already running for the same key
+  private long invalidations;
+  private int size;
+  private double hitRate;
+}
@@ -0,0 +1,33 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScalingResult {
+  private String modelType;
+  private int trainSamples;
+  private int batchSize;
+  private int averagingFrequency;
+  private int epochs;
+  private List<Point> points;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @Builder
+  public static class Point {
+    private int workers;
+    private double samplesPerSecond;
+    private double speedup; // throughput relative to the first point
+    private double efficiency; // speedup per worker, relative to the first point
+    private double validationLoss;
+  }
+}
@@ -0,0 +1,30 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Early stopping counters and configuration of a training run as of its latest checkpoint
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TrainingCheckpoint {
+  private String runId;
+  private TrainingConfig config;
+  private int epoch;
+  private int bestEpoch;
+  private double bestValidationLoss;
+  private int patienceCounter;
+  private boolean stoppedEarly;
+  private long trainingMillis;
+  private List<Double> trainLosses;
+  private List<Double> validationLosses;
+  private LocalDateTime created;
+}
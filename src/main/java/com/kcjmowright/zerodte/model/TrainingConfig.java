@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -29,4 +30,13 @@ public class TrainingConfig {
   private Boolean useTimeSeries = Boolean.FALSE;
   private Integer sequenceLength;
   private Integer numSamples;
+  private Integer workers; // data-parallel replicas, 1 or unset trains a single network
+  private Integer averagingFrequency; // mini-batches between parameter averages of the replicas
+  private Boolean horizonSpecific; // serve the trained model only for its symbol and prediction horizon
+  private Double dropout; // probability of dropping an LSTM layer input, enables Monte Carlo dropout uncertainty
+  private List<Integer> horizons; // minutes ahead predicted at once by a "multihorizon" model, one output each
+  private String dataType; // FLOAT (default) or DOUBLE, precision of the network parameters and dataset tensors
+  private String teacherVersion; // model version a "student" model is distilled from, the routed model if unset
+  private Integer maxDepth; // depth of every tree of a "gbt" model, whose numEpochs are its boosting rounds
+  private Integer maxBins; // quantile bins per feature of a "gbt" model, at most 256
 }
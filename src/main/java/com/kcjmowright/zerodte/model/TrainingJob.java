@@ -0,0 +1,28 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class TrainingJob {
+  private String id;
+  private TrainingJobStatus status;
+  private TrainingConfig config;
+  private LocalDateTime submitted;
+  private LocalDateTime started;
+  private LocalDateTime finished;
+  private int currentEpoch;
+  private List<Double> trainLosses;
+  private List<Double> validationLosses;
+  private TrainingResult result;
+  private Object report; // outcome of a job that trains no servable model directly, e.g. a warm start or a benchmark
+  private String error;
+}
@@ -0,0 +1,9 @@
+package com.kcjmowright.zerodte.model;
+
+public enum TrainingJobStatus {
+  QUEUED,
+  RUNNING,
+  COMPLETED,
+  FAILED,
+  CANCELLED
+}
@@ -0,0 +1,16 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TrainingProgress {
+  private String jobId;
+  private TrainingJobStatus status;
+  private int epoch;
+  private Double trainLoss;
+  private Double validationLoss;
+}
@@ -0,0 +1,26 @@
+package com.kcjmowright.zerodte.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WarmStartResult {
+  private String symbol;
+  private List<LocalDate> newSessions;
+  private List<LocalDate> replaySessions;
+  private int trainSamples;
+  private int validationSamples;
+  private int epochsTrained;
+  private double baselineValidationLoss;
+  private double candidateValidationLoss;
+  private boolean promoted;
+  private long elapsedMillis;
+}
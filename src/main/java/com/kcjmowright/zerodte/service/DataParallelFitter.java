@@ -0,0 +1,141 @@
+package com.kcjmowright.zerodte.service;
+
+import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Synchronous data-parallel training of one network. Every mini-batch is split into one shard per replica,
+ * the replicas fit their shards concurrently, and every {@code averagingFrequency} mini-batches the parameters
+ * and updater state of the replicas are averaged, weighted by the examples each has seen, into the master
+ * network and copied back to every replica. Every pass over an iterator ends with an average, so the master
+ * holds the pass's result for validation and checkpoints while the replicas, their updater state and the worker
+ * threads are kept for the whole run. The master's iteration and epoch counts advance with the replicas', so
+ * updater bias correction and learning rate schedules behave as in single-network training.
+ */
+final class DataParallelFitter implements AutoCloseable {
+  private final MultiLayerNetwork master;
+  private final List<MultiLayerNetwork> replicas = new ArrayList<>();
+  private final int averagingFrequency;
+  private final long[] examplesSinceAverage;
+  private final ExecutorService pool;
+  private final Nd4jThreads.Limit threadLimit;
+  private int batches = 0;
+
+  DataParallelFitter(MultiLayerNetwork master, int workers, int averagingFrequency, int threadsPerWorker) {
+    this.master = master;
+    this.averagingFrequency = Math.max(1, averagingFrequency);
+    this.examplesSinceAverage = new long[workers];
+    // Make sure the master's updater state exists before it is cloned
+    master.getUpdater();
+    for (int i = 0; i < workers; i++) {
+      MultiLayerNetwork replica = master.clone();
+      replica.setListeners();
+      replicas.add(replica);
+    }
+    this.threadLimit = Nd4jThreads.limit(Nd4jThreads.perWorker(threadsPerWorker, workers));
+    this.pool = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("gex-data-parallel-", 0).factory());
+  }
+
+  /**
+   * Fit every mini-batch of {@code iterator}, each sharded across the replicas, and average the result into the
+   * master
+   */
+  void fit(DataSetIterator iterator) {
+    while (iterator.hasNext()) {
+      fit(iterator.next());
+    }
+    if (batches % averagingFrequency != 0) {
+      average();
+    }
+    batches = 0;
+    // What MultiLayerNetwork.fit(DataSetIterator) does, the replicas only fit single batches
+    master.incrementEpochCount();
+    for (MultiLayerNetwork replica : replicas) {
+      replica.setEpochCount(master.getEpochCount());
+    }
+  }
+
+  private void fit(DataSet batch) {
+    int numExamples = batch.numExamples();
+    int shards = Math.min(replicas.size(), numExamples);
+    List<CompletableFuture<Void>> futures = new ArrayList<>(shards);
+    int from = 0;
+    for (int i = 0; i < shards; i++) {
+      int to = from + numExamples / shards + (i < numExamples % shards ? 1 : 0);
+      DataSet shard = batch.getRange(from, to);
+      MultiLayerNetwork replica = replicas.get(i);
+      examplesSinceAverage[i] += to - from;
+      futures.add(CompletableFuture.runAsync(() -> replica.fit(shard), pool));
+      from = to;
+    }
+    futures.forEach(CompletableFuture::join);
+    if (++batches % averagingFrequency == 0) {
+      average();
+    }
+  }
+
+  /**
+   * Average parameters and updater state into the master, weighted by examples fitted since the last average,
+   * and broadcast the result back to the replicas
+   */
+  private void average() {
+    int iterations = master.getIterationCount();
+    for (MultiLayerNetwork replica : replicas) {
+      iterations = Math.max(iterations, replica.getIterationCount());
+    }
+    master.setIterationCount(iterations);
+    long total = 0L;
+    for (long examples : examplesSinceAverage) {
+      total += examples;
+    }
+    if (total == 0L) {
+      return;
+    }
+    averageInto(master.params(), MultiLayerNetwork::params, total);
+    Updater masterUpdater = master.getUpdater();
+    INDArray masterState = masterUpdater == null ? null : masterUpdater.getStateViewArray();
+    if (masterState != null) {
+      averageInto(masterState, replica -> replica.getUpdater().getStateViewArray(), total);
+    }
+    for (MultiLayerNetwork replica : replicas) {
+      replica.setIterationCount(iterations);
+      replica.params().assign(master.params());
+      if (masterState != null) {
+        replica.getUpdater().getStateViewArray().assign(masterState);
+      }
+    }
+    Arrays.fill(examplesSinceAverage, 0L);
+  }
+
+  private void averageInto(INDArray target, Function<MultiLayerNetwork, INDArray> view, long total) {
+    target.assign(0.0);
+    for (int i = 0; i < replicas.size(); i++) {
+      if (examplesSinceAverage[i] > 0) {
+        target.addi(view.apply(replicas.get(i)).mul((double) examplesSinceAverage[i] / total));
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      if (batches % averagingFrequency != 0) {
+        average();
+      }
+    } finally {
+      pool.shutdown();
+      threadLimit.close();
+    }
+  }
+}
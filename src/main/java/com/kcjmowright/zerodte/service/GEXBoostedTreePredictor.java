@@ -0,0 +1,230 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.exceptions.ResourceNotAvailableException;
+import com.kcjmowright.zerodte.model.BoostedTreeResult;
+import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.GEXFeatures;
+import com.kcjmowright.zerodte.model.PricePrediction;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gradient-boosted tree models over the raw feature rows of the preprocessor, a fast baseline to the networks for
+ * experimenting with features. A model trains in seconds and predicts a snapshot in microseconds, so models are
+ * kept in memory per symbol and horizon and simply retrained rather than versioned in the registry.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GEXBoostedTreePredictor implements PricePredictor {
+  private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+  private static final int MIN_SAMPLES_LEAF = 20;
+  private static final int LATENCY_SAMPLES = 1000;
+
+  private final GEXDataPreprocessor preprocessor;
+  private final GEXFeatureExtractor featureExtractor;
+  private final GEXService gexService;
+  private final GEXPredictor predictor;
+  private final PredictionCache predictionCache;
+  private final Map<String, TreeModel> models = new ConcurrentHashMap<>();
+
+  private record TreeModel(String version, GradientBoostedTrees trees) {
+  }
+
+  /**
+   * Train a model for the symbol and prediction horizon of {@code config} on its date range and serve it for them.
+   * {@code numEpochs} are boosting rounds, {@code learningRate} the shrinkage, {@code l2Regularization} the
+   * regularization of the leaf values and {@code workers} the threads finding splits.
+   */
+  public BoostedTreeResult train(TrainingConfig config) {
+    long start = System.currentTimeMillis();
+    List<GEXData> snapshots = gexService.getGEXDataBySymbolBetweenStartAndEnd(
+        config.getSymbol(),
+        config.getStartDate(),
+        config.getEndDate()
+    );
+    GEXFeatureStore store = GEXFeatureStore.extract(snapshots, featureExtractor, preprocessor);
+    int horizon = config.getPredictionHorizon();
+    double[][] rows = store.getFeatureRows();
+    double[] targets = preprocessor.createTargets(store, 0, store.size(), horizon);
+    int numSamples = targets.length;
+    if (numSamples < 3 * MIN_SAMPLES_LEAF) {
+      throw new IllegalArgumentException("Need more than %d snapshots to train trees".formatted(3 * MIN_SAMPLES_LEAF + horizon));
+    }
+
+    int trainSize = (int) (numSamples * (config.getTrainRatio() == null ? 0.7 : config.getTrainRatio()));
+    int validSize = (int) (numSamples * (config.getValidationRatio() == null ? 0.15 : config.getValidationRatio()));
+    GradientBoostedTrees.Params params = new GradientBoostedTrees.Params(
+        config.getNumEpochs() == null ? 300 : config.getNumEpochs(),
+        config.getLearningRate() == null ? 0.1 : config.getLearningRate(),
+        config.getMaxDepth() == null ? 6 : config.getMaxDepth(),
+        MIN_SAMPLES_LEAF,
+        config.getL2Regularization() == null ? 1.0 : config.getL2Regularization(),
+        config.getMaxBins() == null ? 255 : config.getMaxBins(),
+        config.getEarlyStoppingPatience() == null ? 20 : config.getEarlyStoppingPatience()
+    );
+    int parallelism = config.getWorkers() == null ? Runtime.getRuntime().availableProcessors() : config.getWorkers();
+    log.info("Training {} trees of depth {} on {} examples with {} threads", params.numTrees(), params.maxDepth(), trainSize, parallelism);
+    long trainingStart = System.currentTimeMillis();
+    GradientBoostedTrees trees = GradientBoostedTrees.fit(
+        Arrays.copyOfRange(rows, 0, trainSize),
+        Arrays.copyOfRange(targets, 0, trainSize),
+        Arrays.copyOfRange(rows, trainSize, trainSize + validSize),
+        Arrays.copyOfRange(targets, trainSize, trainSize + validSize),
+        params,
+        parallelism
+    );
+    long trainingMillis = System.currentTimeMillis() - trainingStart;
+
+    // Chronological test split after the validation examples
+    double mean = Arrays.stream(targets, 0, trainSize).average().orElse(0.0);
+    double squaredError = 0.0;
+    double absoluteError = 0.0;
+    double baselineError = 0.0;
+    int hits = 0;
+    LatencyHistogram latency = new LatencyHistogram();
+    for (int i = trainSize + validSize; i < numSamples; i++) {
+      long started = System.nanoTime();
+      double prediction = trees.predict(rows[i]);
+      if (i - trainSize - validSize < LATENCY_SAMPLES) {
+        latency.record(System.nanoTime() - started);
+      }
+      double error = prediction - targets[i];
+      squaredError += error * error;
+      absoluteError += Math.abs(error);
+      baselineError += (mean - targets[i]) * (mean - targets[i]);
+      hits += Math.signum(prediction) == Math.signum(targets[i]) ? 1 : 0;
+    }
+    int testSize = Math.max(1, numSamples - trainSize - validSize);
+
+    String version = "gbt-" + LocalDateTime.now().format(VERSION_FORMAT);
+    models.put(GEXModelRegistry.routeKey(config.getSymbol(), horizon), new TreeModel(version, trees));
+    log.info("Serving trees {} for {}@{}", version, config.getSymbol(), horizon);
+
+    return BoostedTreeResult.builder()
+        .version(version)
+        .symbol(config.getSymbol())
+        .predictionHorizon(horizon)
+        .trees(trees.size())
+        .trainSamples(trainSize)
+        .validationSamples(validSize)
+        .testSamples(numSamples - trainSize - validSize)
+        .trainingMillis(trainingMillis)
+        .testMSE(squaredError / testSize)
+        .testMAE(absoluteError / testSize)
+        .baselineMSE(baselineError / testSize)
+        .directionAccuracy((double) hits / testSize)
+        .predictionLatency(latency.snapshot())
+        .featureGains(featureGains(trees))
+        .build();
+  }
+
+  /**
+   * Whether trees were trained for {@code symbol} at {@code minutesAhead}
+   */
+  public boolean hasModel(String symbol, int minutesAhead) {
+    return models.containsKey(GEXModelRegistry.routeKey(symbol, minutesAhead));
+  }
+
+  @Override
+  public PricePrediction predict(GEXData currentSnapshot, List<GEXData> historicalSnapshots, int minutesAhead) {
+    return predict(requireModel(currentSnapshot.getSymbol(), minutesAhead), currentSnapshot, historicalSnapshots, minutesAhead);
+  }
+
+  /**
+   * Prediction for the latest snapshot of {@code symbol}, shared by every caller within the minute
+   */
+  public PricePrediction predictLive(String symbol, int minutesAhead) {
+    TreeModel model = requireModel(symbol, minutesAhead);
+    List<GEXData> history = gexService.getGEXDataBySymbolBetweenStartAndEnd(
+        symbol,
+        LocalDateTime.now().minusDays(4),
+        LocalDateTime.now().plusDays(1)
+    );
+    if (history.isEmpty()) {
+      throw new ResourceNotAvailableException("No snapshots of {} are available", symbol);
+    }
+    GEXData current = history.getLast();
+    return predictionCache.get(
+        symbol,
+        current.getCreated(),
+        minutesAhead,
+        model.version(),
+        horizon -> predict(model, current, history, horizon)
+    );
+  }
+
+  /**
+   * Predictions for every snapshot with enough history, features extracted once for the whole range
+   */
+  public List<PricePrediction> predictBatch(List<GEXData> snapshots, int minutesAhead) {
+    if (snapshots.isEmpty()) {
+      return List.of();
+    }
+    TreeModel model = requireModel(snapshots.getFirst().getSymbol(), minutesAhead);
+    List<GEXFeatures> features = new ArrayList<>(snapshots.size());
+    for (int i = 0; i < snapshots.size(); i++) {
+      features.add(featureExtractor.extractFeatures(
+          snapshots.get(i),
+          snapshots.subList(Math.max(0, i - GEXFeatureStore.HISTORY_WINDOW), i)
+      ));
+    }
+    double[][] rows = GEXFeatureStore.of(snapshots, features, preprocessor).getFeatureRows();
+    // Trees need no window, so predictions start at the 10th snapshot like those of networks whose sequences are
+    // at most 10 steps, networks with longer sequences start at their sequence length
+    List<PricePrediction> predictions = new ArrayList<>();
+    for (int i = 10; i < snapshots.size(); i++) {
+      double change = model.trees().predict(rows[i]);
+      predictions.add(predictor.toPrediction(snapshots.get(i), change, features.get(i), minutesAhead));
+    }
+    return predictions;
+  }
+
+  private PricePrediction predict(TreeModel model, GEXData currentSnapshot, List<GEXData> historicalSnapshots, int minutesAhead) {
+    // Features of the current snapshot from the snapshots before it, the way the training rows were extracted
+    int end = historicalSnapshots.size();
+    while (end > 0 && !historicalSnapshots.get(end - 1).getCreated().isBefore(currentSnapshot.getCreated())) {
+      end--;
+    }
+    GEXFeatures features = featureExtractor.extractFeatures(
+        currentSnapshot,
+        historicalSnapshots.subList(Math.max(0, end - GEXFeatureStore.HISTORY_WINDOW), end)
+    );
+    double change = model.trees().predict(preprocessor.extractFeatureVector(currentSnapshot, features));
+    return predictor.toPrediction(currentSnapshot, change, features, minutesAhead);
+  }
+
+  private TreeModel requireModel(String symbol, int minutesAhead) {
+    TreeModel model = models.get(GEXModelRegistry.routeKey(symbol, minutesAhead));
+    if (model == null) {
+      throw new ResourceNotAvailableException("No trees are trained for {}@{} yet", symbol, minutesAhead);
+    }
+    return model;
+  }
+
+  private List<BoostedTreeResult.FeatureGain> featureGains(GradientBoostedTrees trees) {
+    double[] gains = trees.getFeatureGains();
+    double total = Math.max(Arrays.stream(gains).sum(), Double.MIN_VALUE);
+    List<String> names = preprocessor.getFeatureNames();
+    List<BoostedTreeResult.FeatureGain> featureGains = new ArrayList<>(gains.length);
+    for (int f = 0; f < gains.length; f++) {
+      featureGains.add(BoostedTreeResult.FeatureGain.builder()
+          .feature(names.get(f))
+          .gain(gains[f] / total)
+          .build());
+    }
+    featureGains.sort(Comparator.comparingDouble(BoostedTreeResult.FeatureGain::getGain).reversed());
+    return featureGains;
+  }
+}
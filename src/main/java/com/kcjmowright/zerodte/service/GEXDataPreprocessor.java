@@ -7,6 +7,7 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
@@ -33,6 +34,8 @@ public class GEXDataPreprocessor {
   private NormalizerMinMaxScaler targetScaler = new NormalizerMinMaxScaler(0, 1);
   @Getter
   private boolean scalersFitted = false;
+  @Getter
+  private volatile ScalerParameters scalerParameters;
   private final Map<String, Integer> featureIndices = new HashMap<>();
 
   public GEXDataPreprocessor() {
@@ -83,105 +86,187 @@ public class GEXDataPreprocessor {
   public DataSet createDataSet(List<GEXData> snapshots,
                                List<GEXFeatures> features,
                                int predictionHorizonMinutes) {
+    GEXFeatureStore store = GEXFeatureStore.of(snapshots, features, this);
+    return createDataSet(store, 0, store.size(), predictionHorizonMinutes);
+  }
 
-    int numSamples = snapshots.size() - predictionHorizonMinutes;
-    int numFeatures = featureIndices.size();
+  /**
+   * Convert the snapshots in {@code [from, to)} of a feature store into a training dataset, fitting the scalers on it
+   */
+  public DataSet createDataSet(GEXFeatureStore store, int from, int to, int predictionHorizonMinutes) {
+    return createDataSet(store, from, to, predictionHorizonMinutes, true);
+  }
 
-    INDArray featureMatrix = Nd4j.create(numSamples, numFeatures);
-    INDArray labelVector = Nd4j.create(numSamples, 1);
+  /**
+   * Convert the snapshots in {@code [from, to)} of a feature store into a training dataset,
+   * keeping the current scalers unless {@code fitScalers} is set
+   */
+  public DataSet createDataSet(GEXFeatureStore store,
+                               int from,
+                               int to,
+                               int predictionHorizonMinutes,
+                               boolean fitScalers) {
+    DataSet dataSet = buildDataSet(store, from, to, predictionHorizonMinutes);
+    normalize(dataSet, fitScalers);
+    return dataSet;
+  }
 
-    for (int i = 0; i < numSamples; i++) {
-      GEXData currentGEXData = snapshots.get(i);
-      TotalGEX currentSnapshot = currentGEXData.getTotalGEX();
-      GEXFeatures currentFeatures = features.get(i);
-      TotalGEX futureSnapshot = snapshots.get(i + predictionHorizonMinutes).getTotalGEX();
+  /**
+   * Create time series dataset for LSTM - Using 3D labels with masking
+   */
+  public DataSet createTimeSeriesDataSet(List<GEXData> snapshots,
+                                         List<GEXFeatures> features,
+                                         int sequenceLength,
+                                         int predictionHorizon) {
+    GEXFeatureStore store = GEXFeatureStore.of(snapshots, features, this);
+    return createTimeSeriesDataSet(store, 0, store.size(), sequenceLength, predictionHorizon);
+  }
 
-      // Extract features
-      double[] featureVector = extractFeatureVector(currentGEXData, currentFeatures);
-      featureMatrix.putRow(i, Nd4j.create(featureVector));
+  /**
+   * Create a time series dataset from the snapshots in {@code [from, to)} of a feature store, fitting the scalers on it
+   */
+  public DataSet createTimeSeriesDataSet(GEXFeatureStore store,
+                                         int from,
+                                         int to,
+                                         int sequenceLength,
+                                         int predictionHorizon) {
+    return createTimeSeriesDataSet(store, from, to, sequenceLength, predictionHorizon, true);
+  }
 
-      // Target: percentage price change
-      double priceChange = calculatePriceChange(
-          currentSnapshot.getSpotPrice(),
-          futureSnapshot.getSpotPrice()
-      );
+  /**
+   * Create a time series dataset from the snapshots in {@code [from, to)} of a feature store,
+   * keeping the current scalers unless {@code fitScalers} is set
+   */
+  public DataSet createTimeSeriesDataSet(GEXFeatureStore store,
+                                         int from,
+                                         int to,
+                                         int sequenceLength,
+                                         int predictionHorizon,
+                                         boolean fitScalers) {
+    DataSet dataSet = buildTimeSeriesDataSet(store, from, to, sequenceLength, List.of(predictionHorizon));
+    normalize(dataSet, fitScalers);
+    return dataSet;
+  }
 
-      labelVector.putScalar(new int[]{i, 0}, priceChange);
+  /**
+   * Create a time series dataset from the snapshots in {@code [from, to)} of a feature store with one label
+   * per entry of {@code horizons}, keeping the current scalers unless {@code fitScalers} is set
+   */
+  public DataSet createMultiHorizonDataSet(GEXFeatureStore store,
+                                           int from,
+                                           int to,
+                                           int sequenceLength,
+                                           List<Integer> horizons,
+                                           boolean fitScalers) {
+    DataSet dataSet = buildTimeSeriesDataSet(store, from, to, sequenceLength, horizons);
+    normalize(dataSet, fitScalers);
+    return dataSet;
+  }
+
+  /**
+   * Raw percentage price change {@code predictionHorizonMinutes} ahead of every snapshot in {@code [from, to)} of
+   * a feature store that has a known outcome, the unnormalized labels of {@link #createDataSet}
+   */
+  public double[] createTargets(GEXFeatureStore store, int from, int to, int predictionHorizonMinutes) {
+    int numSamples = Math.max(0, to - from - predictionHorizonMinutes);
+    List<GEXData> snapshots = store.getSnapshots();
+    double[] targets = new double[numSamples];
+    for (int i = 0; i < numSamples; i++) {
+      int current = from + i;
+      targets[i] = calculatePriceChange(
+          snapshots.get(current).getTotalGEX().getSpotPrice(),
+          snapshots.get(current + predictionHorizonMinutes).getTotalGEX().getSpotPrice()
+      );
     }
+    return targets;
+  }
 
-    DataSet dataSet = new DataSet(featureMatrix, labelVector);
+  private DataSet buildDataSet(GEXFeatureStore store, int from, int to, int predictionHorizonMinutes) {
+    int numSamples = to - from - predictionHorizonMinutes;
+    int numFeatures = featureIndices.size();
+    double[][] featureRows = store.getFeatureRows();
+    double[] targets = createTargets(store, from, to, predictionHorizonMinutes);
 
-    // Fit scalers on training data
-    featureScaler.fit(dataSet);
-    targetScaler.fit(dataSet);
+    double[][] featureMatrix = new double[numSamples][];
+    double[][] labelVector = new double[numSamples][1];
 
-    // Transform data
-    featureScaler.transform(dataSet);
-    targetScaler.transform(dataSet);
+    for (int i = 0; i < numSamples; i++) {
+      featureMatrix[i] = featureRows[from + i];
 
-    scalersFitted = true;
+      // Target: percentage price change
+      labelVector[i][0] = targets[i];
+    }
 
-    return dataSet;
+    INDArray features = numSamples == 0 ? Nd4j.create(0, numFeatures) : Nd4j.create(featureMatrix);
+    return new DataSet(features, Nd4j.create(labelVector));
   }
 
-  /**
-   * Create time series dataset for LSTM - Using 3D labels with masking
-   */
-  public DataSet createTimeSeriesDataSet(List<GEXData> snapshots,
-                                         List<GEXFeatures> features,
+  private DataSet buildTimeSeriesDataSet(GEXFeatureStore store,
+                                         int from,
+                                         int to,
                                          int sequenceLength,
-                                         int predictionHorizon) {
-
-    int numSamples = snapshots.size() - sequenceLength - predictionHorizon;
+                                         List<Integer> horizons) {
+    int numHorizons = horizons.size();
+    int maxHorizon = horizons.stream().mapToInt(Integer::intValue).max().orElse(0);
+    int numSamples = Math.max(0, to - from - sequenceLength - maxHorizon);
     int numFeatures = featureIndices.size();
+    double[][] featureRows = store.getFeatureRows();
+    List<GEXData> snapshots = store.getSnapshots();
 
-    // Features: [samples, features, timeSteps]
-    INDArray featureTensor = Nd4j.create(numSamples, numFeatures, sequenceLength);
+    // Features: [samples, features, timeSteps] laid out in 'c' order
+    double[] featureData = new double[numSamples * numFeatures * sequenceLength];
 
-    // FIX: Create 3D labels matching RNN output [samples, outputs, timeSteps]
+    // 3D labels matching RNN output [samples, horizons, timeSteps]
     // But only the LAST time step has the actual label (others are masked)
-    INDArray labelTensor = Nd4j.create(numSamples, 1, sequenceLength);
+    double[] labelData = new double[numSamples * numHorizons * sequenceLength];
 
     // Create mask: only last time step is used
     INDArray labelMask = Nd4j.zeros(numSamples, sequenceLength);
 
     for (int i = 0; i < numSamples; i++) {
+      int sampleOffset = i * numFeatures * sequenceLength;
       // Get sequence of features
       for (int t = 0; t < sequenceLength; t++) {
-        GEXData snapshot = snapshots.get(i + t);
-        GEXFeatures feature = features.get(i + t);
-        double[] featureVector = extractFeatureVector(snapshot, feature);
-
+        double[] featureVector = featureRows[from + i + t];
         for (int f = 0; f < numFeatures; f++) {
-          featureTensor.putScalar(new int[]{ i, f, t }, featureVector[f]);
+          featureData[sampleOffset + f * sequenceLength + t] = featureVector[f];
         }
       }
 
-      // Target is price change after sequence
-      GEXData currentSnapshot = snapshots.get(i + sequenceLength - 1);
-      GEXData futureSnapshot = snapshots.get(i + sequenceLength + predictionHorizon);
-
-      double priceChange = calculatePriceChange(
-          currentSnapshot.getTotalGEX().getSpotPrice(),
-          futureSnapshot.getTotalGEX().getSpotPrice()
-      );
+      // Target is price change after sequence, one per horizon
+      GEXData currentSnapshot = snapshots.get(from + i + sequenceLength - 1);
+      for (int h = 0; h < numHorizons; h++) {
+        GEXData futureSnapshot = snapshots.get(from + i + sequenceLength + horizons.get(h));
 
-      // Only set label for LAST time step
-      labelTensor.putScalar(new int[]{ i, 0, sequenceLength - 1 }, priceChange);
+        // Only set label for LAST time step
+        labelData[(i * numHorizons + h) * sequenceLength + sequenceLength - 1] = calculatePriceChange(
+            currentSnapshot.getTotalGEX().getSpotPrice(),
+            futureSnapshot.getTotalGEX().getSpotPrice()
+        );
+      }
 
       // Only last time step is active in mask
-      labelMask.putScalar(new int[]{ i, sequenceLength - 1 }, 1.0);
+      labelMask.putScalar(i, sequenceLength - 1, 1.0);
     }
 
-    DataSet dataSet = new DataSet(featureTensor, labelTensor, null, labelMask);
+    INDArray featureTensor = Nd4j.create(featureData, new long[]{ numSamples, numFeatures, sequenceLength }, 'c');
+    INDArray labelTensor = Nd4j.create(labelData, new long[]{ numSamples, numHorizons, sequenceLength }, 'c');
+    return new DataSet(featureTensor, labelTensor, null, labelMask);
+  }
 
-    // Normalize
-    featureScaler.fit(dataSet);
-    targetScaler.fit(dataSet);
+  private void normalize(DataSet dataSet, boolean fitScalers) {
+    if (fitScalers) {
+      // Fit scalers on training data
+      featureScaler.fit(dataSet);
+      targetScaler.fit(dataSet);
+      refreshScalerParameters();
+    } else if (!scalersFitted) {
+      throw new IllegalStateException("Scalers must be fitted first");
+    }
+
+    // Transform data
     featureScaler.transform(dataSet);
     targetScaler.transform(dataSet);
-    scalersFitted = true;
-    return dataSet;
   }
 
   public double[] extractFeatureVector(GEXData GEXData, GEXFeatures features) {
@@ -244,23 +329,7 @@ public class GEXDataPreprocessor {
    * Inverse transform predictions back to original scale
    */
   public double denormalizePrediction(double normalizedValue) {
-    if (!scalersFitted) {
-      throw new IllegalStateException("Scalers must be fitted first");
-    }
-
-    // Create a 2D array for the label
-    INDArray normalizedArray = Nd4j.create(new double[][]{{ normalizedValue }});
-
-    // Create dataset with dummy features (same shape as training)
-    // The targetScaler only operates on labels, but needs a valid DataSet
-    INDArray dummyFeatures = Nd4j.create(1, 1);
-    DataSet tempDataset = new DataSet(dummyFeatures, normalizedArray);
-
-    // Revert modifies in-place
-    targetScaler.revert(tempDataset);
-
-    // Extract the denormalized value
-    return tempDataset.getLabels().getDouble(0, 0);
+    return requireScalerParameters().denormalizeTarget(normalizedValue);
   }
 
   /**
@@ -283,15 +352,41 @@ public class GEXDataPreprocessor {
    * Transform (normalize) a single prediction without fitting
    */
   public double normalizePrediction(double rawValue) {
-    if (!scalersFitted) {
+    return requireScalerParameters().normalizeTarget(rawValue);
+  }
+
+  /**
+   * Normalize a raw feature row using the fitted feature scaler
+   */
+  public double[] normalizeFeatureRow(double[] rawFeatures) {
+    double[] normalized = new double[rawFeatures.length];
+    requireScalerParameters().normalizeRow(rawFeatures, normalized);
+    return normalized;
+  }
+
+  /**
+   * Primitive scaler parameters for allocation-free normalization on the inference path
+   */
+  public ScalerParameters requireScalerParameters() {
+    ScalerParameters parameters = scalerParameters;
+    if (parameters == null) {
       throw new IllegalStateException("Scalers must be fitted first");
     }
+    return parameters;
+  }
 
-    INDArray rawArray = Nd4j.create(new double[][]{{ rawValue }});
-    INDArray dummyFeatures = Nd4j.create(1, 1);
-    DataSet tempDataset = new DataSet(dummyFeatures, rawArray);
-    targetScaler.transform(tempDataset);
-    return tempDataset.getLabels().getDouble(0, 0);
+  /**
+   * Use the scalers fitted by another preprocessor, e.g. the winning trial of a hyperparameter search
+   */
+  public void adoptScalers(GEXDataPreprocessor other) {
+    featureScaler = other.getFeatureScaler();
+    targetScaler = other.getTargetScaler();
+    refreshScalerParameters();
+  }
+
+  private void refreshScalerParameters() {
+    scalerParameters = ScalerParameters.of(featureScaler, targetScaler);
+    scalersFitted = true;
   }
 
   /**
@@ -319,20 +414,51 @@ public class GEXDataPreprocessor {
     return result;
   }
 
+  /**
+   * {@code dataSet} with features, labels and masks in {@code dataType}. Datasets are built and normalized in
+   * double precision, since raw features such as net GEX exceed what a float resolves, and only the normalized
+   * tensors are narrowed to the network's type.
+   */
+  static DataSet castDataSet(DataSet dataSet, DataType dataType) {
+    if (dataSet.getFeatures().dataType() == dataType) {
+      return dataSet;
+    }
+    return new DataSet(
+        dataSet.getFeatures().castTo(dataType),
+        dataSet.getLabels().castTo(dataType),
+        dataSet.getFeaturesMaskArray() == null ? null : dataSet.getFeaturesMaskArray().castTo(dataType),
+        dataSet.getLabelsMaskArray() == null ? null : dataSet.getLabelsMaskArray().castTo(dataType)
+    );
+  }
+
   public int getNumFeatures() {
     return featureIndices.size();
   }
 
+  /**
+   * Feature names in the order of the feature vector columns
+   */
+  public List<String> getFeatureNames() {
+    String[] names = new String[featureIndices.size()];
+    featureIndices.forEach((name, index) -> names[index] = name);
+    return List.of(names);
+  }
+
   /**
    * Save scalers to disk
    */
   public void saveScalers() {
+    saveScalers(new File(basePath + "_feature_scaler.bin"), new File(basePath + "_target_scaler.bin"));
+  }
+
+  /**
+   * Save scalers to the given files, e.g. those of a registered model version
+   */
+  public void saveScalers(File featureFile, File targetFile) {
     if (!scalersFitted) {
       throw new IllegalStateException("Scalers must be fitted before saving");
     }
 
-    File featureFile = new File(basePath + "_feature_scaler.bin");
-    File targetFile = new File(basePath + "_target_scaler.bin");
     try {
       NormalizerSerializer.getDefault().write(featureScaler, featureFile);
       NormalizerSerializer.getDefault().write(targetScaler, targetFile);
@@ -347,17 +473,21 @@ public class GEXDataPreprocessor {
    * Load scalers from disk
    */
   public void loadScalers() {
-    File featureFile = new File(basePath + "_feature_scaler.bin");
-    File targetFile = new File(basePath + "_target_scaler.bin");
+    loadScalers(new File(basePath + "_feature_scaler.bin"), new File(basePath + "_target_scaler.bin"));
+  }
 
+  /**
+   * Load scalers from the given files, e.g. those of a training checkpoint
+   */
+  public void loadScalers(File featureFile, File targetFile) {
     if (!featureFile.exists() || !targetFile.exists()) {
-      throw new IllegalStateException("Scaler files not found at: " + basePath);
+      throw new IllegalStateException("Scaler files not found at: " + featureFile.getParent());
     }
 
     try {
       featureScaler = NormalizerSerializer.getDefault().restore(featureFile);
       targetScaler = NormalizerSerializer.getDefault().restore(targetFile);
-      scalersFitted = true;
+      refreshScalerParameters();
       log.debug("Scalers loaded from {} and {}", featureFile, targetFile);
       log.info("Scalars successfully loaded");
     } catch (Exception e) {
@@ -0,0 +1,297 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.DistillationResult;
+import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.LatencyStats;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Knowledge distillation of a heavy sequence model into a small feed-forward student for the live path. The teacher
+ * labels every window of the historical feature store with its normalized outputs, and the student learns to
+ * reproduce them from the last feature row of the window alone. The student is normalized with the teacher's
+ * scalers, so both share one target scale and the student is registered with the teacher's scalers unchanged.
+ * Routing the student on the live path only leaves research predictions on the teacher.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GEXDistiller {
+  private static final int BATCH_SIZE = 512;
+  private static final int LATENCY_WARMUP = 10;
+  private static final int LATENCY_SAMPLES = 500;
+
+  private final GEXModelTrainer trainer;
+  private final GEXModelRegistry modelRegistry;
+
+  /**
+   * Distill the teacher of {@code config}, its {@code teacherVersion} or else the model serving its symbol and
+   * prediction horizon, into a student trained with the parameters of {@code config}, falling back to the
+   * teacher's for unset ones. If {@code live} the student then serves the live predictions of the symbol.
+   */
+  public DistillationResult distill(TrainingConfig config, boolean live) {
+    long start = System.currentTimeMillis();
+    String teacherVersion = config.getTeacherVersion() != null ?
+        config.getTeacherVersion() :
+        modelRegistry.getActive(config.getSymbol(), config.getPredictionHorizon()).getVersion();
+
+    log.info("1. Load teacher model version {}", teacherVersion);
+    // An independent copy, serving continues on the cached bundle
+    ModelBundle teacher = modelRegistry.load(teacherVersion);
+    TrainingConfig teacherConfig = teacher.getConfig();
+    if (teacherConfig == null) {
+      throw new IllegalStateException("Model version %s has no training config to distill".formatted(teacherVersion));
+    }
+    if (!GEXModelTrainer.isMultiHorizon(teacherConfig) && !Boolean.TRUE.equals(teacherConfig.getUseTimeSeries())) {
+      throw new IllegalArgumentException("Model version %s is not a sequence model, only sequence models are distilled"
+          .formatted(teacherVersion));
+    }
+    TrainingConfig studentConfig = studentConfig(config, teacher);
+    List<Integer> horizons = GEXModelTrainer.isMultiHorizon(studentConfig) ?
+        studentConfig.getHorizons() :
+        List.of(studentConfig.getPredictionHorizon());
+
+    log.info("2. Label the feature store of {} with the teacher's outputs", studentConfig.getSymbol());
+    GEXFeatureStore store = trainer.loadFeatureStore(studentConfig);
+    ScalerParameters scalers = teacher.getScalers();
+    double[][] rows = scalers.normalizeRows(store.getFeatureRows());
+    int first = teacher.getSequenceLength() - 1;
+    int numExamples = rows.length - first;
+    if (numExamples < 3) {
+      throw new IllegalArgumentException("Need more than %d snapshots to distill".formatted(first + 2));
+    }
+    double[][] soft = teacherOutputs(teacher, rows, first);
+
+    int trainSize = (int) (numExamples * studentConfig.getTrainRatio());
+    int validSize = Math.max(1, (int) (numExamples * studentConfig.getValidationRatio()));
+    DataType dataType = GEXModelTrainer.dataType(studentConfig);
+    DataSet trainSet = examples(rows, soft, first, 0, trainSize, dataType);
+    DataSet validSet = examples(rows, soft, first, trainSize, trainSize + validSize, dataType);
+    DataSet testSet = examples(rows, soft, first, trainSize + validSize, numExamples, dataType);
+
+    log.info("3. Train student on {} windows, validate on {}", trainSet.numExamples(), validSet.numExamples());
+    MultiLayerNetwork student = trainer.buildModel(studentConfig, scalers.getNumFeatures());
+    TrainingState state = trainer.startTraining(student);
+    trainer.trainEpochs(student, trainSet, validSet, studentConfig, state, studentConfig.getNumEpochs());
+    state.restoreBest(student);
+
+    log.info("4. Compare student and teacher on {} test windows", testSet.numExamples());
+    List<DistillationResult.HorizonAccuracy> accuracy = compare(
+        store.getSnapshots(),
+        horizons,
+        scalers,
+        soft,
+        lastStep(student.output(testSet.getFeatures())),
+        first,
+        trainSize + validSize
+    );
+    LatencyStats teacherLatency = measureLatency(teacher.getModel(), rows, first, trainSize + validSize, teacher.getSequenceLength());
+    LatencyStats studentLatency = measureLatency(student, rows, first, trainSize + validSize, 1);
+
+    log.info("5. Register student{}", live ? " and route the live path to it" : "");
+    String studentVersion = modelRegistry.register(student, teacher.getPreprocessor(), studentConfig);
+    if (live) {
+      Integer horizon = Boolean.TRUE.equals(studentConfig.getHorizonSpecific()) ? studentConfig.getPredictionHorizon() : null;
+      modelRegistry.promote(studentVersion, studentConfig.getSymbol(), horizon, true);
+    }
+
+    return DistillationResult.builder()
+        .teacherVersion(teacherVersion)
+        .studentVersion(studentVersion)
+        .live(live)
+        .teacherParameters(teacher.getModel().numParams())
+        .studentParameters(student.numParams())
+        .trainSamples(trainSet.numExamples())
+        .validationSamples(validSet.numExamples())
+        .testSamples(testSet.numExamples())
+        .epochsTrained(state.epoch)
+        .bestValidationLoss(state.bestValidLoss)
+        .horizons(accuracy)
+        .teacherLatency(teacherLatency)
+        .studentLatency(studentLatency)
+        .latencySpeedup(teacherLatency.getMeanMillis() / Math.max(studentLatency.getMeanMillis(), 1e-9))
+        .elapsedMillis(System.currentTimeMillis() - start)
+        .build();
+  }
+
+  /**
+   * Student training config: the symbol, range and training parameters of {@code config} where set, the teacher's
+   * otherwise, with a one step sequence and the teacher's outputs
+   */
+  private static TrainingConfig studentConfig(TrainingConfig config, ModelBundle teacher) {
+    TrainingConfig teacherConfig = teacher.getConfig();
+    return teacherConfig.toBuilder()
+        .symbol(orElse(config.getSymbol(), teacherConfig.getSymbol()))
+        .startDate(orElse(config.getStartDate(), teacherConfig.getStartDate()))
+        .endDate(orElse(config.getEndDate(), teacherConfig.getEndDate()))
+        .numEpochs(orElse(config.getNumEpochs(), teacherConfig.getNumEpochs()))
+        .batchSize(orElse(config.getBatchSize(), teacherConfig.getBatchSize()))
+        .learningRate(orElse(config.getLearningRate(), teacherConfig.getLearningRate()))
+        .l2Regularization(orElse(config.getL2Regularization(), teacherConfig.getL2Regularization()))
+        .seed(orElse(config.getSeed(), teacherConfig.getSeed()))
+        .trainRatio(orElse(config.getTrainRatio(), orElse(teacherConfig.getTrainRatio(), 0.7)))
+        .validationRatio(orElse(config.getValidationRatio(), orElse(teacherConfig.getValidationRatio(), 0.15)))
+        .earlyStoppingPatience(orElse(config.getEarlyStoppingPatience(), teacherConfig.getEarlyStoppingPatience()))
+        .workers(orElse(config.getWorkers(), teacherConfig.getWorkers()))
+        .dataType(orElse(config.getDataType(), teacherConfig.getDataType()))
+        .horizonSpecific(orElse(config.getHorizonSpecific(), teacherConfig.getHorizonSpecific()))
+        .modelType("student")
+        .teacherVersion(teacher.getVersion())
+        .useTimeSeries(true)
+        .sequenceLength(1)
+        .horizons(GEXModelTrainer.isMultiHorizon(teacherConfig) ? teacherConfig.getHorizons() : null)
+        .dropout(null)
+        .build();
+  }
+
+  private static <T> T orElse(T value, T fallback) {
+    return value == null ? fallback : value;
+  }
+
+  /**
+   * Normalized last step outputs of the teacher for every window ending at {@code first} or later,
+   * in batches of {@code BATCH_SIZE} windows
+   */
+  private static double[][] teacherOutputs(ModelBundle teacher, double[][] rows, int first) {
+    MultiLayerNetwork model = teacher.getModel();
+    int sequenceLength = teacher.getSequenceLength();
+    int numFeatures = teacher.getScalers().getNumFeatures();
+    double[][] outputs = new double[rows.length - first][];
+    for (int chunkStart = 0; chunkStart < outputs.length; chunkStart += BATCH_SIZE) {
+      int chunk = Math.min(BATCH_SIZE, outputs.length - chunkStart);
+      double[] data = new double[chunk * numFeatures * sequenceLength];
+      for (int k = 0; k < chunk; k++) {
+        // The window ending at first + chunkStart + k starts at chunkStart + k
+        for (int t = 0; t < sequenceLength; t++) {
+          double[] row = rows[chunkStart + k + t];
+          for (int f = 0; f < numFeatures; f++) {
+            data[(k * numFeatures + f) * sequenceLength + t] = row[f];
+          }
+        }
+      }
+      INDArray input = Nd4j.create(data, new long[]{ chunk, numFeatures, sequenceLength }, 'c')
+          .castTo(model.params().dataType());
+      double[][] last = lastStep(model.output(input));
+      System.arraycopy(last, 0, outputs, chunkStart, chunk);
+    }
+    return outputs;
+  }
+
+  /**
+   * One step student examples for the windows {@code [from, to)}: the window's last row as features,
+   * the teacher's outputs as labels
+   */
+  private static DataSet examples(double[][] rows, double[][] soft, int first, int from, int to, DataType dataType) {
+    int numExamples = Math.max(0, to - from);
+    int numFeatures = rows[0].length;
+    int numOutputs = soft[0].length;
+    double[] features = new double[numExamples * numFeatures];
+    double[] labels = new double[numExamples * numOutputs];
+    for (int k = 0; k < numExamples; k++) {
+      System.arraycopy(rows[first + from + k], 0, features, k * numFeatures, numFeatures);
+      System.arraycopy(soft[from + k], 0, labels, k * numOutputs, numOutputs);
+    }
+    return GEXDataPreprocessor.castDataSet(new DataSet(
+        Nd4j.create(features, new long[]{ numExamples, numFeatures, 1 }, 'c'),
+        Nd4j.create(labels, new long[]{ numExamples, numOutputs, 1 }, 'c')
+    ), dataType);
+  }
+
+  /**
+   * Accuracy of teacher and student against the actual price change of every test window with a known outcome,
+   * and their agreement, per horizon in percent price change
+   */
+  private static List<DistillationResult.HorizonAccuracy> compare(List<GEXData> snapshots,
+                                                                  List<Integer> horizons,
+                                                                  ScalerParameters scalers,
+                                                                  double[][] soft,
+                                                                  double[][] studentOutputs,
+                                                                  int first,
+                                                                  int testFrom) {
+    List<DistillationResult.HorizonAccuracy> accuracy = new ArrayList<>();
+    for (int o = 0; o < horizons.size(); o++) {
+      int horizon = horizons.get(o);
+      int examples = 0;
+      double teacherError = 0.0;
+      double studentError = 0.0;
+      double disagreement = 0.0;
+      int teacherHits = 0;
+      int studentHits = 0;
+      for (int k = 0; k < studentOutputs.length; k++) {
+        int current = first + testFrom + k;
+        if (current + horizon >= snapshots.size()) {
+          break;
+        }
+        double currentPrice = snapshots.get(current).getTotalGEX().getSpotPrice().doubleValue();
+        double futurePrice = snapshots.get(current + horizon).getTotalGEX().getSpotPrice().doubleValue();
+        double actual = (futurePrice - currentPrice) / currentPrice * 100.0;
+        double teacher = scalers.denormalizeTarget(o, soft[testFrom + k][o]);
+        double student = scalers.denormalizeTarget(o, studentOutputs[k][o]);
+        examples++;
+        teacherError += (teacher - actual) * (teacher - actual);
+        studentError += (student - actual) * (student - actual);
+        disagreement += (student - teacher) * (student - teacher);
+        teacherHits += Math.signum(teacher) == Math.signum(actual) ? 1 : 0;
+        studentHits += Math.signum(student) == Math.signum(actual) ? 1 : 0;
+      }
+      int n = Math.max(1, examples);
+      accuracy.add(DistillationResult.HorizonAccuracy.builder()
+          .horizon(horizon)
+          .examples(examples)
+          .teacherMSE(teacherError / n)
+          .studentMSE(studentError / n)
+          .agreementMSE(disagreement / n)
+          .teacherDirectionAccuracy((double) teacherHits / n)
+          .studentDirectionAccuracy((double) studentHits / n)
+          .build());
+      log.info("{} minutes: teacher MSE {}, student MSE {}, agreement MSE {}", horizon,
+          String.format("%.6f", teacherError / n), String.format("%.6f", studentError / n), String.format("%.6f", disagreement / n));
+    }
+    return accuracy;
+  }
+
+  /**
+   * Latency of single window forward passes of {@code model} over the test windows, the way live inference calls it
+   */
+  private static LatencyStats measureLatency(MultiLayerNetwork model, double[][] rows, int first, int testFrom, int sequenceLength) {
+    int numFeatures = rows[0].length;
+    int windows = Math.min(LATENCY_SAMPLES, rows.length - first - testFrom);
+    LatencyHistogram latency = new LatencyHistogram();
+    for (int k = -Math.min(LATENCY_WARMUP, windows); k < windows; k++) {
+      int end = first + testFrom + Math.max(0, k);
+      double[] data = new double[numFeatures * sequenceLength];
+      for (int t = 0; t < sequenceLength; t++) {
+        double[] row = rows[end - sequenceLength + 1 + t];
+        for (int f = 0; f < numFeatures; f++) {
+          data[f * sequenceLength + t] = row[f];
+        }
+      }
+      long started = System.nanoTime();
+      model.output(Nd4j.create(data, new long[]{ 1, numFeatures, sequenceLength }, 'c').castTo(model.params().dataType()));
+      if (k >= 0) {
+        latency.record(System.nanoTime() - started);
+      }
+    }
+    return latency.snapshot();
+  }
+
+  /**
+   * {@code [examples, outputs]} values of the last time step of a 3D output
+   */
+  private static double[][] lastStep(INDArray output) {
+    return output.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(output.size(2) - 1))
+        .castTo(DataType.DOUBLE)
+        .toDoubleMatrix();
+  }
+}
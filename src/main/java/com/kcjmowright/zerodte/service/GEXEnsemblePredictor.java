@@ -0,0 +1,259 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.exceptions.ResourceNotAvailableException;
+import com.kcjmowright.zerodte.model.EnsemblePrediction;
+import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.GEXFeatures;
+import com.kcjmowright.zerodte.model.PricePrediction;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.factory.Nd4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Weighted ensembles of registered model versions of any architecture, e.g. a feed-forward, an LSTM and an attention
+ * network. Feature rows are extracted once for the longest sequence any member needs, then every member normalizes
+ * them with its own scalers and runs on its own slot of a shared executor, so an ensemble answers in about the
+ * latency of its slowest member instead of the sum of all of them. The weighted spread of the members' predictions
+ * is reported next to the combined prediction as an uncertainty signal.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GEXEnsemblePredictor implements PricePredictor {
+  private final GEXModelRegistry modelRegistry;
+  private final GEXPredictor predictor;
+  private final GEXFeatureExtractor featureExtractor;
+  private final GEXService gexService;
+  private ExecutorService executor;
+
+  // Members of the default ensemble as version=weight pairs
+  @Value("${zerodte.prediction.ensemble.members:}")
+  private List<String> members;
+
+  @Value("${zerodte.prediction.ensemble.parallelism:0}")
+  private int parallelism;
+
+  /**
+   * Denormalized price change one member predicted and the time it took
+   */
+  record MemberResult(String version, String modelType, double priceChange, long nanos) {
+  }
+
+  @PostConstruct
+  public void start() {
+    int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    executor = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("gex-ensemble-", 0).factory());
+  }
+
+  @PreDestroy
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Prediction of the default ensemble configured by {@code zerodte.prediction.ensemble.members}
+   */
+  @Override
+  public PricePrediction predict(GEXData currentSnapshot, List<GEXData> historicalSnapshots, int minutesAhead) {
+    return predict(currentSnapshot, historicalSnapshots, Map.of(), minutesAhead).getPrediction();
+  }
+
+  /**
+   * Ensemble prediction for the latest snapshot of {@code symbol}
+   */
+  public EnsemblePrediction predictLive(String symbol, Map<String, Double> weights, int minutesAhead) {
+    List<GEXData> history = gexService.getGEXDataBySymbolBetweenStartAndEnd(
+        symbol,
+        LocalDateTime.now().minusDays(4),
+        LocalDateTime.now().plusDays(1)
+    );
+    if (history.isEmpty()) {
+      throw new ResourceNotAvailableException("No snapshots of {} are available", symbol);
+    }
+    return predict(history.getLast(), history, weights, minutesAhead);
+  }
+
+  /**
+   * Prediction of the ensemble of the model versions in {@code weights}, or of the default ensemble if empty,
+   * combined by their weights
+   */
+  public EnsemblePrediction predict(GEXData currentSnapshot,
+                                    List<GEXData> historicalSnapshots,
+                                    Map<String, Double> weights,
+                                    int minutesAhead) {
+    long start = System.nanoTime();
+    Map<String, Double> normalized = normalizeWeights(weights == null || weights.isEmpty() ? configuredWeights() : weights);
+    List<ModelBundle> bundles = normalized.keySet().stream().map(modelRegistry::getBundle).toList();
+    bundles.forEach(bundle -> requireHorizon(bundle, minutesAhead));
+
+    // One feature extraction shared by every member
+    int sequenceLength = bundles.stream()
+        .mapToInt(bundle -> bundle.isSequenceModel() ? bundle.getSequenceLength() : 1)
+        .max()
+        .orElse(1);
+    if (historicalSnapshots.size() < sequenceLength) {
+      throw new IllegalArgumentException("Need at least %d historical snapshots".formatted(sequenceLength));
+    }
+    double[][] rows = predictor.extractSequenceRows(historicalSnapshots, sequenceLength);
+    GEXFeatures lastFeatures = featureExtractor.extractFeatures(currentSnapshot, historicalSnapshots);
+
+    EnsemblePrediction ensemble = combine(predictMembers(bundles, rows, minutesAhead), normalized);
+    ensemble.setPrediction(predictor.toPrediction(currentSnapshot, ensemble.getPriceChange(), lastFeatures, minutesAhead));
+    ensemble.setLatencyMillis((System.nanoTime() - start) / 1_000_000.0);
+    log.debug("Ensemble of {} members predicted {} with disagreement {}",
+        bundles.size(), ensemble.getPriceChange(), ensemble.getDisagreement());
+    return ensemble;
+  }
+
+  /**
+   * Every member's prediction from the shared raw feature {@code rows}, each member on its own executor thread
+   */
+  List<MemberResult> predictMembers(List<ModelBundle> bundles, double[][] rows, int minutesAhead) {
+    List<CompletableFuture<MemberResult>> futures = bundles.stream()
+        .map(bundle -> CompletableFuture.supplyAsync(() -> predictMember(bundle, rows, minutesAhead), executor))
+        .toList();
+    List<MemberResult> results = new ArrayList<>(futures.size());
+    try {
+      futures.forEach(future -> results.add(future.join()));
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+    return results;
+  }
+
+  /**
+   * Weighted mean of the members' predictions, with their weighted standard deviation, spread and direction
+   * consensus. {@code weights} are normalized and keyed by version.
+   */
+  static EnsemblePrediction combine(List<MemberResult> results, Map<String, Double> weights) {
+    double mean = 0.0;
+    for (MemberResult result : results) {
+      mean += weights.get(result.version()) * result.priceChange();
+    }
+    double variance = 0.0;
+    double min = Double.MAX_VALUE;
+    double max = -Double.MAX_VALUE;
+    long slowest = 0L;
+    long total = 0L;
+    List<EnsemblePrediction.Member> members = new ArrayList<>(results.size());
+    for (MemberResult result : results) {
+      double weight = weights.get(result.version());
+      variance += weight * (result.priceChange() - mean) * (result.priceChange() - mean);
+      min = Math.min(min, result.priceChange());
+      max = Math.max(max, result.priceChange());
+      slowest = Math.max(slowest, result.nanos());
+      total += result.nanos();
+      members.add(EnsemblePrediction.Member.builder()
+          .version(result.version())
+          .modelType(result.modelType())
+          .weight(weight)
+          .priceChange(result.priceChange())
+          .latencyMillis(result.nanos() / 1_000_000.0)
+          .build());
+    }
+    boolean consensus = results.stream().mapToDouble(result -> Math.signum(result.priceChange())).distinct().count() == 1;
+
+    return EnsemblePrediction.builder()
+        .priceChange(mean)
+        .disagreement(Math.sqrt(variance))
+        .spread(max - min)
+        .directionConsensus(consensus)
+        .members(members)
+        .slowestMemberMillis(slowest / 1_000_000.0)
+        .totalMemberMillis(total / 1_000_000.0)
+        .build();
+  }
+
+  /**
+   * Denormalized price change one member predicts from the trailing rows of the shared raw feature {@code rows}
+   */
+  static MemberResult predictMember(ModelBundle bundle, double[][] rows, int minutesAhead) {
+    long start = System.nanoTime();
+    double[] outputs;
+    if (bundle.isSequenceModel()) {
+      outputs = bundle.predictWindow(GEXPredictor.normalizeWindow(bundle, rows));
+    } else {
+      // Feed-forward networks take the newest row alone
+      double[] row = new double[bundle.getScalers().getNumFeatures()];
+      bundle.getScalers().normalizeRow(rows[rows.length - 1], row);
+      outputs = bundle.infer(model -> model.output(Nd4j.create(row, new long[]{ 1, row.length }, 'c')
+          .castTo(model.params().dataType())).toDoubleVector());
+    }
+    int output = bundle.outputIndex(minutesAhead);
+    double priceChange = bundle.getScalers().denormalizeTarget(output, outputs[output]);
+    String modelType = bundle.getConfig() == null ? null : bundle.getConfig().getModelType();
+    return new MemberResult(bundle.getVersion(), modelType, priceChange, System.nanoTime() - start);
+  }
+
+  /**
+   * Fail for a member not trained to predict {@code minutesAhead}, averaging it in would mix horizons
+   */
+  static void requireHorizon(ModelBundle bundle, int minutesAhead) {
+    TrainingConfig config = bundle.getConfig();
+    boolean trained = config != null && (GEXModelTrainer.isMultiHorizon(config) ?
+        config.getHorizons().contains(minutesAhead) :
+        Objects.equals(config.getPredictionHorizon(), minutesAhead));
+    if (!trained) {
+      throw new IllegalArgumentException("Model version %s is not trained to predict %d minutes ahead"
+          .formatted(bundle.getVersion(), minutesAhead));
+    }
+  }
+
+  private Map<String, Double> configuredWeights() {
+    Map<String, Double> weights = new LinkedHashMap<>();
+    for (String member : members) {
+      if (member.isBlank()) {
+        continue;
+      }
+      String[] parts = member.split("=");
+      try {
+        weights.put(parts[0].trim(), parts.length > 1 ? Double.parseDouble(parts[1].trim()) : 1.0);
+      } catch (NumberFormatException e) {
+        throw new IllegalStateException("Invalid ensemble member %s due to %s".formatted(member, e.getMessage()), e);
+      }
+    }
+    return weights;
+  }
+
+  /**
+   * Positive weights scaled to sum to one, members weighted zero are left out
+   */
+  static Map<String, Double> normalizeWeights(Map<String, Double> weights) {
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("No ensemble members, pass weights by model version or configure zerodte.prediction.ensemble.members");
+    }
+    double sum = 0.0;
+    for (Map.Entry<String, Double> entry : weights.entrySet()) {
+      if (entry.getValue() == null || entry.getValue() < 0.0 || !Double.isFinite(entry.getValue())) {
+        throw new IllegalArgumentException("Weight of model version %s must be a non-negative number".formatted(entry.getKey()));
+      }
+      sum += entry.getValue();
+    }
+    if (sum <= 0.0) {
+      throw new IllegalArgumentException("At least one ensemble member needs a positive weight");
+    }
+    Map<String, Double> normalized = new LinkedHashMap<>();
+    for (Map.Entry<String, Double> entry : weights.entrySet()) {
+      if (entry.getValue() > 0.0) {
+        normalized.put(entry.getKey(), entry.getValue() / sum);
+      }
+    }
+    return normalized;
+  }
+}
@@ -0,0 +1,87 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.GEXFeatures;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Raw (unnormalized) feature rows for a range of snapshots, extracted once and shared read-only
+ * between the datasets built from it.
+ */
+@Getter
+public final class GEXFeatureStore {
+  /**
+   * Number of prior snapshots handed to the feature extractor, matching the live prediction history window.
+   */
+  public static final int HISTORY_WINDOW = 60;
+
+  private final List<GEXData> snapshots;
+  private final double[][] featureRows;
+
+  private GEXFeatureStore(List<GEXData> snapshots, double[][] featureRows) {
+    this.snapshots = snapshots;
+    this.featureRows = featureRows;
+  }
+
+  /**
+   * Extract features for every snapshot using the preceding {@link #HISTORY_WINDOW} snapshots as history.
+   */
+  public static GEXFeatureStore extract(List<GEXData> snapshots,
+                                        GEXFeatureExtractor extractor,
+                                        GEXDataPreprocessor preprocessor) {
+    List<GEXFeatures> features = new ArrayList<>(snapshots.size());
+    for (int i = 0; i < snapshots.size(); i++) {
+      List<GEXData> history = snapshots.subList(Math.max(0, i - HISTORY_WINDOW), i);
+      features.add(extractor.extractFeatures(snapshots.get(i), history));
+    }
+    return of(snapshots, features, preprocessor);
+  }
+
+  /**
+   * Build a store from features that were already extracted for {@code snapshots}.
+   */
+  public static GEXFeatureStore of(List<GEXData> snapshots,
+                                   List<GEXFeatures> features,
+                                   GEXDataPreprocessor preprocessor) {
+    double[][] rows = new double[snapshots.size()][];
+    for (int i = 0; i < snapshots.size(); i++) {
+      rows[i] = preprocessor.extractFeatureVector(snapshots.get(i), features.get(i));
+    }
+    return new GEXFeatureStore(List.copyOf(snapshots), rows);
+  }
+
+  /**
+   * Build a store from feature rows that were already extracted for {@code snapshots}, e.g. row by row as
+   * snapshots arrive.
+   */
+  static GEXFeatureStore ofRows(List<GEXData> snapshots, double[][] featureRows) {
+    if (snapshots.size() != featureRows.length) {
+      throw new IllegalArgumentException("%d feature rows for %d snapshots".formatted(featureRows.length, snapshots.size()));
+    }
+    return new GEXFeatureStore(List.copyOf(snapshots), featureRows);
+  }
+
+  /**
+   * Extract the feature row of snapshot {@code index} using the preceding {@link #HISTORY_WINDOW} snapshots as history,
+   * the row {@link #extract} builds for it.
+   */
+  static double[] extractRow(List<GEXData> snapshots,
+                             int index,
+                             GEXFeatureExtractor extractor,
+                             GEXDataPreprocessor preprocessor) {
+    GEXData snapshot = snapshots.get(index);
+    List<GEXData> history = snapshots.subList(Math.max(0, index - HISTORY_WINDOW), index);
+    return preprocessor.extractFeatureVector(snapshot, extractor.extractFeatures(snapshot, history));
+  }
+
+  public int size() {
+    return featureRows.length;
+  }
+
+  public int getNumFeatures() {
+    return featureRows.length == 0 ? 0 : featureRows[0].length;
+  }
+}
@@ -0,0 +1,461 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.GEXFeatures;
+import com.kcjmowright.zerodte.model.HyperparameterResult;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.dataset.DataSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hyperparameter search that featurizes the data range once and trains the trials concurrently.
+ * Every trial gets its own preprocessor and network so trials never share scaler or model state;
+ * only the winning model and its scalers are persisted. Besides the full grid, trials can be scheduled with
+ * asynchronous successive halving to stop clearly losing configurations after a few epochs.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GEXHyperparameterTuner {
+  private final GEXModelTrainer trainer;
+  private final GEXDataPreprocessor preprocessor;
+  private final GEXModelRegistry modelRegistry;
+
+  @Value("${zerodte.tuning.parallelism:2}")
+  private int parallelism;
+
+  /**
+   * ND4J/BLAS threads available to each trial, 0 divides the available cores between the concurrent trials.
+   */
+  @Value("${zerodte.tuning.threadsPerTrial:0}")
+  private int threadsPerTrial;
+
+  @Value("${zerodte.tuning.asha.minEpochs:5}")
+  private int ashaMinEpochs;
+
+  @Value("${zerodte.tuning.asha.reductionFactor:3}")
+  private int ashaReductionFactor;
+
+  /**
+   * Hyperparameter tuning using grid search over the symbol and date range of {@code baseConfig}
+   */
+  public HyperparameterResult tuneHyperparameters(TrainingConfig baseConfig, Map<String, List<Object>> hyperparamGrid) {
+    return tuneHyperparameters(baseConfig, trainer.loadFeatureStore(baseConfig), hyperparamGrid);
+  }
+
+  /**
+   * Hyperparameter tuning using grid search over already loaded snapshots and features
+   */
+  public HyperparameterResult tuneHyperparameters(TrainingConfig baseConfig,
+                                                  List<GEXData> snapshots,
+                                                  List<GEXFeatures> features,
+                                                  Map<String, List<Object>> hyperparamGrid) {
+    return tuneHyperparameters(baseConfig, GEXFeatureStore.of(snapshots, features, preprocessor), hyperparamGrid);
+  }
+
+  /**
+   * Hyperparameter tuning using grid search over a shared feature store
+   */
+  public HyperparameterResult tuneHyperparameters(TrainingConfig baseConfig,
+                                                  GEXFeatureStore store,
+                                                  Map<String, List<Object>> hyperparamGrid) {
+    long start = System.currentTimeMillis();
+    List<TrialRun> trials = createTrials(baseConfig, hyperparamGrid);
+    int workers = Math.max(1, Math.min(parallelism, trials.size()));
+    log.info("Starting hyperparameter tuning: {} trials on {} workers", trials.size(), workers);
+
+    Nd4jThreads.Limit threadLimit = limitNd4jThreads(workers);
+    try (ExecutorService pool = newTrialPool(workers)) {
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+      for (TrialRun trial : trials) {
+        futures.add(CompletableFuture.runAsync(() -> {
+          log.info("Trial {}/{}: {}", trial.index + 1, trials.size(), trial.params);
+          train(trial, store, trial.config.getNumEpochs());
+        }, pool));
+      }
+      futures.forEach(CompletableFuture::join);
+    } finally {
+      threadLimit.close();
+    }
+    return completeSearch(trials, start);
+  }
+
+  /**
+   * Asynchronous successive halving (ASHA) over the grid using the configured minimum epochs and reduction factor
+   */
+  public HyperparameterResult tuneWithSuccessiveHalving(TrainingConfig baseConfig,
+                                                        List<GEXData> snapshots,
+                                                        List<GEXFeatures> features,
+                                                        Map<String, List<Object>> hyperparamGrid) {
+    return tuneWithSuccessiveHalving(baseConfig, GEXFeatureStore.of(snapshots, features, preprocessor), hyperparamGrid,
+        ashaMinEpochs, ashaReductionFactor);
+  }
+
+  /**
+   * Asynchronous successive halving (ASHA) over the grid using the configured minimum epochs and reduction factor,
+   * loading the symbol and date range of {@code baseConfig}
+   */
+  public HyperparameterResult tuneWithSuccessiveHalving(TrainingConfig baseConfig,
+                                                        Map<String, List<Object>> hyperparamGrid) {
+    return tuneWithSuccessiveHalving(baseConfig, trainer.loadFeatureStore(baseConfig), hyperparamGrid,
+        ashaMinEpochs, ashaReductionFactor);
+  }
+
+  /**
+   * Asynchronous successive halving (ASHA) over the grid.
+   * Every configuration starts with a budget of {@code minEpochs}. Whenever a worker frees up, a trial in the
+   * top {@code 1 / reductionFactor} of its rung is promoted to the next rung with {@code reductionFactor} times
+   * the epochs, otherwise a new configuration is started. Trials that are never promoted stop early.
+   */
+  public HyperparameterResult tuneWithSuccessiveHalving(TrainingConfig baseConfig,
+                                                        GEXFeatureStore store,
+                                                        Map<String, List<Object>> hyperparamGrid,
+                                                        int minEpochs,
+                                                        int reductionFactor) {
+    if (minEpochs < 1 || reductionFactor < 2) {
+      throw new IllegalArgumentException("ASHA requires minEpochs >= 1 and reductionFactor >= 2");
+    }
+    long start = System.currentTimeMillis();
+    List<TrialRun> trials = createTrials(baseConfig, hyperparamGrid);
+    int workers = Math.max(1, Math.min(parallelism, trials.size()));
+    log.info("Starting ASHA tuning: {} trials on {} workers, min epochs {}, reduction factor {}",
+        trials.size(), workers, minEpochs, reductionFactor);
+
+    Nd4jThreads.Limit threadLimit = limitNd4jThreads(workers);
+    try {
+      successiveHalving(trials, workers, minEpochs, reductionFactor, (trial, untilEpoch) -> train(trial, store, untilEpoch));
+    } finally {
+      threadLimit.close();
+    }
+    return completeSearch(trials, start);
+  }
+
+  /**
+   * Run the ASHA schedule over {@code trials} on {@code workers} threads, training each scheduled rung with
+   * {@code trainer}
+   */
+  static void successiveHalving(List<TrialRun> trials,
+                                int workers,
+                                int minEpochs,
+                                int reductionFactor,
+                                TrialTrainer trainer) {
+    AshaScheduler scheduler = new AshaScheduler(trials, minEpochs, reductionFactor);
+    try (ExecutorService pool = newTrialPool(workers)) {
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < workers; i++) {
+        futures.add(CompletableFuture.runAsync(() -> {
+          TrialRun trial;
+          while ((trial = scheduler.next()) != null) {
+            int budget = scheduler.budget(trial, trial.rung);
+            log.info("Trial {}/{} rung {} training to {} epochs: {}",
+                trial.index + 1, trials.size(), trial.rung, budget, trial.params);
+            trainer.train(trial, budget);
+            scheduler.completed(trial);
+          }
+        }, pool));
+      }
+      futures.forEach(CompletableFuture::join);
+    }
+  }
+
+  private List<TrialRun> createTrials(TrainingConfig baseConfig, Map<String, List<Object>> hyperparamGrid) {
+    List<Map<String, Object>> combinations = generateCombinations(hyperparamGrid);
+    List<TrialRun> trials = new ArrayList<>(combinations.size());
+    for (int i = 0; i < combinations.size(); i++) {
+      Map<String, Object> params = combinations.get(i);
+      trials.add(new TrialRun(i, params, createConfigFromParams(baseConfig, params)));
+    }
+    return trials;
+  }
+
+  private static ExecutorService newTrialPool(int workers) {
+    return Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("gex-tuning-", 0).factory());
+  }
+
+  /**
+   * Evaluate every trial on its test set, persist the best model and scalers and summarize the search
+   */
+  private HyperparameterResult completeSearch(List<TrialRun> trials, long start) {
+    TrialRun best = null;
+    for (TrialRun trial : trials) {
+      double score = finish(trial);
+      if (!Double.isNaN(score) && (best == null || score < best.score)) {
+        best = trial;
+      }
+    }
+
+    if (best == null) {
+      throw new IllegalStateException("No hyperparameter trial completed successfully");
+    }
+
+    log.info("Best trial {} with score {}, registering model and scalars", best.params, best.score);
+    modelRegistry.publish(best.model, best.preprocessor, best.config);
+    return summarize(trials, best, start);
+  }
+
+  /**
+   * Summarize evaluated trials, with the compute saved by the epochs trials did not train
+   */
+  static HyperparameterResult summarize(List<TrialRun> trials, TrialRun best, long start) {
+    List<HyperparameterResult.Trial> results = new ArrayList<>(trials.size());
+    long computeMillis = 0L;
+    long epochsTrained = 0L;
+    long fullGridEpochs = 0L;
+    for (TrialRun trial : trials) {
+      int epochs = trial.state == null ? 0 : trial.state.epoch;
+      computeMillis += trial.state == null ? 0L : trial.state.trainingMillis;
+      epochsTrained += epochs;
+      fullGridEpochs += trial.config.getNumEpochs();
+      results.add(new HyperparameterResult.Trial(
+          trial.params,
+          trial.score,
+          epochs,
+          trial.rung,
+          epochs < trial.config.getNumEpochs()));
+    }
+
+    // Extrapolate the measured time per epoch to every trial running all of its epochs
+    long estimatedFullGridMillis = epochsTrained == 0 ? 0L : computeMillis * fullGridEpochs / epochsTrained;
+    long savedMillis = Math.max(0L, estimatedFullGridMillis - computeMillis);
+    log.info("Tuning trained {} of {} grid epochs, saving an estimated {} ms of compute",
+        epochsTrained, fullGridEpochs, savedMillis);
+
+    return HyperparameterResult.builder()
+        .trials(results)
+        .bestParams(best.params)
+        .bestScore(best.score)
+        .elapsedMillis(System.currentTimeMillis() - start)
+        .computeMillis(computeMillis)
+        .estimatedFullGridMillis(estimatedFullGridMillis)
+        .computeTimeSavedMillis(savedMillis)
+        .build();
+  }
+
+  private Nd4jThreads.Limit limitNd4jThreads(int workers) {
+    int threads = Nd4jThreads.perWorker(threadsPerTrial, workers);
+    log.info("Limiting ND4J to {} threads per trial", threads);
+    return Nd4jThreads.limit(threads);
+  }
+
+  private List<Map<String, Object>> generateCombinations(Map<String, List<Object>> grid) {
+
+    List<Map<String, Object>> results = new ArrayList<>();
+    results.add(new HashMap<>());
+
+    for (Map.Entry<String, List<Object>> entry : grid.entrySet()) {
+      String key = entry.getKey();
+      List<Object> values = entry.getValue();
+
+      List<Map<String, Object>> newResults = new ArrayList<>();
+      for (Map<String, Object> result : results) {
+        for (Object value : values) {
+          Map<String, Object> newResult = new HashMap<>(result);
+          newResult.put(key, value);
+          newResults.add(newResult);
+        }
+      }
+      results = newResults;
+    }
+
+    return results;
+  }
+
+  private TrainingConfig createConfigFromParams(TrainingConfig baseConfig, Map<String, Object> params) {
+    return baseConfig.toBuilder()
+        .learningRate(number(params, "learningRate", baseConfig.getLearningRate(), 0.001).doubleValue())
+        .numEpochs(number(params, "numEpochs", baseConfig.getNumEpochs(), 100).intValue())
+        .batchSize(number(params, "batchSize", baseConfig.getBatchSize(), 32).intValue())
+        .l2Regularization(number(params, "l2", baseConfig.getL2Regularization(), 0.0001).doubleValue())
+        .modelType((String) params.getOrDefault("modelType", baseConfig.getModelType()))
+        .build();
+  }
+
+  private Number number(Map<String, Object> params, String key, Number baseValue, Number defaultValue) {
+    Object value = params.get(key);
+    if (value instanceof Number number) {
+      return number;
+    }
+    return baseValue != null ? baseValue : defaultValue;
+  }
+
+  /**
+   * Train {@code trial} until {@code untilEpoch} epochs in total, preparing its data and network on first use
+   */
+  private void train(TrialRun trial, GEXFeatureStore store, int untilEpoch) {
+    if (trial.failed) {
+      return;
+    }
+    try {
+      if (trial.model == null) {
+        trial.preprocessor = new GEXDataPreprocessor();
+        trial.splits = trainer.prepareSplits(trial.preprocessor, store, trial.config);
+        trial.model = trainer.buildModel(trial.config, trial.preprocessor.getNumFeatures());
+        trial.state = trainer.startTraining(trial.model);
+      }
+      trainer.trainEpochs(trial.model, trial.splits.get("train"), trial.splits.get("validation"), trial.config,
+          trial.state, untilEpoch);
+    } catch (Exception e) {
+      log.error("Trial {} failed for {}", trial.index + 1, trial.params, e);
+      trial.failed = true;
+    }
+  }
+
+  /**
+   * Restore the trial's best weights and score them on its test set
+   */
+  private double finish(TrialRun trial) {
+    if (!trial.failed && trial.model != null) {
+      try {
+        trial.score = trainer.finishTraining(trial.model, trial.splits.get("test"), trial.state).getTestMSE();
+      } catch (Exception e) {
+        log.error("Trial {} evaluation failed for {}", trial.index + 1, trial.params, e);
+        trial.failed = true;
+      }
+    }
+    return trial.score;
+  }
+
+  /**
+   * Trains a trial until a number of epochs in total, recording its progress in the trial's state
+   */
+  @FunctionalInterface
+  interface TrialTrainer {
+    void train(TrialRun trial, int untilEpoch);
+  }
+
+  /**
+   * One configuration of the search with its own preprocessor, datasets, network and early stopping state
+   */
+  static final class TrialRun {
+    final int index;
+    final Map<String, Object> params;
+    final TrainingConfig config;
+    GEXDataPreprocessor preprocessor;
+    Map<String, DataSet> splits;
+    MultiLayerNetwork model;
+    TrainingState state;
+    int rung = 0;
+    boolean failed = false;
+    double score = Double.NaN;
+
+    TrialRun(int index, Map<String, Object> params, TrainingConfig config) {
+      this.index = index;
+      this.params = params;
+      this.config = config;
+    }
+
+    private boolean canContinue(int untilEpoch) {
+      return !failed && state != null && state.canContinue(untilEpoch);
+    }
+
+    private double validationLoss() {
+      return failed || state == null ? Double.MAX_VALUE : state.bestValidLoss;
+    }
+  }
+
+  /**
+   * Hands out ASHA work: promotions from the highest rung first, otherwise the next unstarted configuration
+   */
+  private static final class AshaScheduler {
+    private final Deque<TrialRun> pending;
+    private final List<List<RungResult>> rungs = new ArrayList<>();
+    private final int minEpochs;
+    private final int reductionFactor;
+    private int running = 0;
+
+    private AshaScheduler(List<TrialRun> trials, int minEpochs, int reductionFactor) {
+      this.pending = new ArrayDeque<>(trials);
+      this.minEpochs = minEpochs;
+      this.reductionFactor = reductionFactor;
+    }
+
+    /**
+     * Total epochs a trial trains for at {@code rung}, capped at its configured number of epochs
+     */
+    private int budget(TrialRun trial, int rung) {
+      double epochs = minEpochs * Math.pow(reductionFactor, rung);
+      return (int) Math.min(epochs, trial.config.getNumEpochs());
+    }
+
+    private synchronized TrialRun next() {
+      while (true) {
+        TrialRun promotion = findPromotion();
+        if (promotion != null) {
+          promotion.rung++;
+          running++;
+          return promotion;
+        }
+        if (!pending.isEmpty()) {
+          running++;
+          return pending.removeFirst();
+        }
+        if (running == 0) {
+          return null;
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return null;
+        }
+      }
+    }
+
+    private synchronized void completed(TrialRun trial) {
+      running--;
+      while (rungs.size() <= trial.rung) {
+        rungs.add(new ArrayList<>());
+      }
+      // The trial is idle until promoted, so its loss is read while no worker updates it
+      rungs.get(trial.rung).add(new RungResult(trial, trial.validationLoss()));
+      notifyAll();
+    }
+
+    private TrialRun findPromotion() {
+      for (int rung = rungs.size() - 1; rung >= 0; rung--) {
+        List<RungResult> members = new ArrayList<>(rungs.get(rung));
+        members.sort(Comparator.comparingDouble(RungResult::validationLoss));
+        for (RungResult candidate : members.subList(0, members.size() / reductionFactor)) {
+          if (!candidate.promoted && candidate.trial.canContinue(budget(candidate.trial, rung + 1))) {
+            candidate.promoted = true;
+            return candidate.trial;
+          }
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Best validation loss of a trial when it completed a rung, ranked against the rung's other trials
+   */
+  private static final class RungResult {
+    private final TrialRun trial;
+    private final double validationLoss;
+    private boolean promoted;
+
+    private RungResult(TrialRun trial, double validationLoss) {
+      this.trial = trial;
+      this.validationLoss = validationLoss;
+    }
+
+    private double validationLoss() {
+      return validationLoss;
+    }
+  }
+}
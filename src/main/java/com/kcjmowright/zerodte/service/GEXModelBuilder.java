@@ -10,9 +10,12 @@ import org.deeplearning4j.nn.conf.layers.LSTM;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
 import org.deeplearning4j.nn.conf.layers.recurrent.Bidirectional;
+import org.deeplearning4j.nn.conf.preprocessor.FeedForwardToRnnPreProcessor;
+import org.deeplearning4j.nn.conf.preprocessor.RnnToFeedForwardPreProcessor;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
 import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 import org.springframework.stereotype.Component;
@@ -21,6 +24,18 @@ import org.springframework.stereotype.Component;
 @Component
 public class GEXModelBuilder {
 
+  /**
+   * {@code model} with parameters, activations and updater state in {@code dataType}, converted only if it
+   * is not already in that type
+   */
+  static MultiLayerNetwork withDataType(MultiLayerNetwork model, DataType dataType) {
+    if (model.params().dataType() == dataType) {
+      return model;
+    }
+    log.info("Converting network from {} to {}", model.params().dataType(), dataType);
+    return model.convertDataType(dataType);
+  }
+
   /**
    * Simple Feed-Forward Neural Network
    * Best for: Basic price prediction without temporal dependencies
@@ -75,8 +90,21 @@ public class GEXModelBuilder {
    * Best for: Capturing temporal patterns in GEX data
    */
   public MultiLayerNetwork buildLSTMNetwork(int numInputs, int sequenceLength, int seed, double learningRate, double l2) {
-    log.info("Building LSTM Network with {} inputs, sequence length {}",
-        numInputs, sequenceLength);
+    return buildLSTMNetwork(numInputs, sequenceLength, seed, learningRate, l2, 0.0);
+  }
+
+  /**
+   * LSTM Network dropping each layer input with probability {@code dropout}, which also enables
+   * Monte Carlo dropout uncertainty estimates
+   */
+  public MultiLayerNetwork buildLSTMNetwork(int numInputs,
+                                            int sequenceLength,
+                                            int seed,
+                                            double learningRate,
+                                            double l2,
+                                            double dropout) {
+    log.info("Building LSTM Network with {} inputs, sequence length {}, dropout {}",
+        numInputs, sequenceLength, dropout);
 
     MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
         .seed(seed)
@@ -89,12 +117,14 @@ public class GEXModelBuilder {
             .nIn(numInputs)
             .nOut(64)
             .activation(Activation.TANH)
+            .dropOut(retainProbability(dropout))
             .build())
         // LSTM layer 2
         .layer(new LSTM.Builder()
             .nIn(64)
             .nOut(32)
             .activation(Activation.TANH)
+            .dropOut(retainProbability(dropout))
             .build())
         // Convert RNN output to feed-forward
         .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE)
@@ -111,6 +141,95 @@ public class GEXModelBuilder {
     return model;
   }
 
+  /**
+   * Multi-horizon LSTM
+   * Best for: Predicting several horizons from one shared sequence encoding in a single forward pass.
+   * Output unit {@code h} predicts the price change for the {@code h}-th configured horizon.
+   */
+  public MultiLayerNetwork buildMultiHorizonLSTM(int numInputs,
+                                                 int numHorizons,
+                                                 int seed,
+                                                 double learningRate,
+                                                 double l2,
+                                                 double dropout) {
+    log.info("Building Multi-Horizon LSTM with {} inputs, {} horizons and dropout {}", numInputs, numHorizons, dropout);
+
+    MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
+        .seed(seed)
+        .weightInit(WeightInit.XAVIER)
+        .updater(new Adam(learningRate))
+        .l2(l2)
+        .list()
+        // Shared LSTM encoder
+        .layer(new LSTM.Builder()
+            .nIn(numInputs)
+            .nOut(64)
+            .activation(Activation.TANH)
+            .dropOut(retainProbability(dropout))
+            .build())
+        .layer(new LSTM.Builder()
+            .nIn(64)
+            .nOut(32)
+            .activation(Activation.TANH)
+            .dropOut(retainProbability(dropout))
+            .build())
+        // One regression output per horizon
+        .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE)
+            .nIn(32)
+            .nOut(numHorizons)
+            .activation(Activation.IDENTITY)
+            .build())
+        .build();
+
+    MultiLayerNetwork model = new MultiLayerNetwork(config);
+    model.init();
+
+    log.info("Multi-Horizon LSTM parameters: {}", model.numParams());
+    return model;
+  }
+
+  /**
+   * Small feed-forward student distilled from a larger model. Dense layers are applied to every time step on
+   * their own, so the student takes the same {@code [examples, features, timeSteps]} input and gives the same
+   * {@code [examples, outputs, timeSteps]} output as the recurrent teachers while only looking at one row.
+   * Best for: Low-latency live inference trained with sequence length 1
+   */
+  public MultiLayerNetwork buildStudentNetwork(int numInputs, int numOutputs, int seed, double learningRate, double l2) {
+    log.info("Building Student Network with {} inputs and {} outputs", numInputs, numOutputs);
+
+    MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
+        .seed(seed)
+        .weightInit(WeightInit.XAVIER)
+        .updater(new Adam(learningRate))
+        .l2(l2)
+        .list()
+        .layer(new DenseLayer.Builder()
+            .nIn(numInputs)
+            .nOut(32)
+            .activation(Activation.RELU)
+            .build())
+        .layer(new DenseLayer.Builder()
+            .nIn(32)
+            .nOut(16)
+            .activation(Activation.RELU)
+            .build())
+        .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE)
+            .nIn(16)
+            .nOut(numOutputs)
+            .activation(Activation.IDENTITY)
+            .build())
+        // Time steps become examples for the dense layers and are restored for the output
+        .inputPreProcessor(0, new RnnToFeedForwardPreProcessor())
+        .inputPreProcessor(2, new FeedForwardToRnnPreProcessor())
+        .build();
+
+    MultiLayerNetwork model = new MultiLayerNetwork(config);
+    model.init();
+
+    log.info("Student parameters: {}", model.numParams());
+    return model;
+  }
+
   /**
    * Deep Feed-Forward with Batch Normalization
    * Best for: Complex non-linear GEX relationships
@@ -312,6 +431,13 @@ public class GEXModelBuilder {
     return model;
   }
 
+  /**
+   * DL4J's {@code dropOut} takes the probability of retaining an activation and treats 0.0 as no dropout
+   */
+  private static double retainProbability(double dropout) {
+    return dropout > 0.0 ? 1.0 - dropout : 0.0;
+  }
+
   /**
    * Get recommended model based on data characteristics
    */
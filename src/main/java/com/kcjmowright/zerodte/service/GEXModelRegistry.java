@@ -0,0 +1,422 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.exceptions.ResourceNotAvailableException;
+import com.kcjmowright.zerodte.model.InferencePoolStats;
+import com.kcjmowright.zerodte.model.ModelVersion;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Versioned store of trained models. Each version lives in {@code <basePath>/models/<version>/} with its network,
+ * scalers and training config. {@code <basePath>/models/routes.json} maps a symbol, a {@code symbol@horizon} pair
+ * or {@code default} to the version serving it; predictions use the most specific route that exists. The same keys
+ * prefixed with {@code live:} route the live path separately, e.g. to a distilled student, while research
+ * predictions keep using the unprefixed routes.
+ * Routed versions are preloaded in the background once the application is ready and pinned in memory, other
+ * versions are loaded on demand on the requesting thread into a memory-bounded LRU cache. Promotion loads the
+ * version fully before swapping the route table in a single reference update, so routed predictions never block
+ * on loading or observe a half-loaded model.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GEXModelRegistry {
+  public static final String DEFAULT_ROUTE = "default";
+  public static final String LIVE_ROUTE_PREFIX = "live:";
+  private static final String MODELS = "models";
+  private static final String ROUTES_FILE = "routes.json";
+  private static final String LEGACY_ACTIVE_FILE = "active";
+  private static final String MODEL_FILE = "model.bin";
+  private static final String FEATURE_SCALER_FILE = "feature_scaler.bin";
+  private static final String TARGET_SCALER_FILE = "target_scaler.bin";
+  private static final String VERSION_FILE = "version.json";
+  private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+  private final JsonMapper mapper;
+  private final PredictionCache predictionCache;
+  private final AtomicReference<Map<String, String>> routes = new AtomicReference<>(Map.of());
+  // Routes being preloaded, pinned before they take effect
+  private volatile Map<String, String> preloading = Map.of();
+  private ModelCache cache;
+
+  @Value("${zerodte.model.basePath:./data/}")
+  private String basePath;
+
+  @Value("${zerodte.model.cacheBytes:536870912}")
+  private long cacheBytes;
+
+  @Value("${zerodte.prediction.replicas:0}")
+  private int replicas;
+
+  @Value("${zerodte.prediction.microBatch.maxItems:32}")
+  private int microBatchItems;
+
+  @Value("${zerodte.prediction.microBatch.maxWaitMicros:2000}")
+  private long microBatchWaitMicros;
+
+  @Value("${zerodte.prediction.dataType:}")
+  private String inferenceDataType;
+
+  @PostConstruct
+  public void start() {
+    cache = new ModelCache(
+        cacheBytes,
+        version -> load(version, false),
+        version -> routes.get().containsValue(version) || preloading.containsValue(version)
+    );
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void preload() {
+    Thread.ofPlatform().name("gex-model-preload").daemon(true).start(() -> {
+      try {
+        Map<String, String> stored = readRoutes();
+        if (stored.isEmpty()) {
+          String legacy = importLegacyModel();
+          stored = legacy == null ? Map.of() : Map.of(DEFAULT_ROUTE, legacy);
+        }
+        if (stored.isEmpty()) {
+          log.info("No model routed yet");
+          return;
+        }
+        preloading = stored;
+        for (String version : new LinkedHashSet<>(stored.values())) {
+          cache.get(version);
+        }
+        // A promotion that finished while preloading wins
+        if (routes.compareAndSet(Map.of(), Map.copyOf(stored))) {
+          log.info("Preloaded model routes {}", stored);
+        }
+      } catch (Exception e) {
+        log.error("Unable to preload the routed models", e);
+      } finally {
+        preloading = Map.of();
+      }
+    });
+  }
+
+  /**
+   * The bundle serving the default route
+   */
+  public ModelBundle getActive() {
+    return getActive(null, null);
+  }
+
+  /**
+   * The bundle serving {@code symbol} at {@code horizon} minutes, falling back to the symbol's model
+   * and then to the default model. Either argument may be {@code null}.
+   */
+  public ModelBundle getActive(String symbol, Integer horizon) {
+    String version = resolve(routes.get(), symbol, horizon);
+    if (version == null) {
+      throw new ResourceNotAvailableException("No model is loaded for {} yet", symbol == null ? DEFAULT_ROUTE : symbol);
+    }
+    return cache.get(version);
+  }
+
+  /**
+   * The bundle serving live predictions of {@code symbol} at {@code horizon}, resolved over the live routes like
+   * {@link #getActive(String, Integer)} and falling back to the active model if no live route applies
+   */
+  public ModelBundle getLive(String symbol, Integer horizon) {
+    Map<String, String> live = new HashMap<>();
+    routes.get().forEach((route, version) -> {
+      if (route.startsWith(LIVE_ROUTE_PREFIX)) {
+        live.put(route.substring(LIVE_ROUTE_PREFIX.length()), version);
+      }
+    });
+    String version = resolve(live, symbol, horizon);
+    return version == null ? getActive(symbol, horizon) : cache.get(version);
+  }
+
+  /**
+   * Whether any model, specific or default, live or not, serves {@code symbol}
+   */
+  public boolean hasModel(String symbol) {
+    return routes.get().keySet().stream()
+        .map(route -> route.startsWith(LIVE_ROUTE_PREFIX) ? route.substring(LIVE_ROUTE_PREFIX.length()) : route)
+        .anyMatch(route -> route.equals(DEFAULT_ROUTE) || route.equals(symbol) || route.startsWith(symbol + "@"));
+  }
+
+  public Map<String, String> getRoutes() {
+    return routes.get();
+  }
+
+  /**
+   * Bytes held by the loaded versions and the cache budget
+   */
+  public Map<String, Long> getCacheUsage() {
+    return Map.of("usedBytes", cache.getUsedBytes(), "budgetBytes", cache.getBudgetBytes());
+  }
+
+  /**
+   * Replica usage and latency histograms of every loaded version's inference pool
+   */
+  public List<InferencePoolStats> getInferenceStats() {
+    return cache.getLoadedBundles().stream().map(ModelBundle::getInferenceStats).toList();
+  }
+
+  /**
+   * Register a trained model with the scalers of {@code preprocessor} as a new version and route its symbol
+   * (and horizon, for horizon specific models) to it. The first model registered also becomes the default.
+   */
+  public synchronized ModelBundle publish(MultiLayerNetwork model, GEXDataPreprocessor preprocessor, TrainingConfig config) {
+    String version = register(model, preprocessor, config);
+    String symbol = config == null ? null : config.getSymbol();
+    Integer horizon = config != null && Boolean.TRUE.equals(config.getHorizonSpecific()) ? config.getPredictionHorizon() : null;
+    ModelBundle bundle = promote(version, symbol, horizon);
+    if (symbol != null && !routes.get().containsKey(DEFAULT_ROUTE)) {
+      promote(version, null, null);
+    }
+    return bundle;
+  }
+
+  /**
+   * Register a retrained copy of {@code previous} as a new version and move every route served by
+   * {@code previous} to it in a single reference swap
+   */
+  public synchronized ModelBundle supersede(String previous,
+                                            MultiLayerNetwork model,
+                                            GEXDataPreprocessor preprocessor,
+                                            TrainingConfig config) {
+    String version = register(model, preprocessor, config);
+    ModelBundle bundle = cache.get(version);
+    Map<String, String> updated = new HashMap<>(routes.get());
+    updated.replaceAll((route, served) -> served.equals(previous) ? version : served);
+    writeRoutes(updated);
+    routes.set(Map.copyOf(updated));
+    predictionCache.invalidateAll();
+    log.info("Model version {} supersedes {}", version, previous);
+    return bundle;
+  }
+
+  /**
+   * Persist a trained model with the scalers of {@code preprocessor} as a new, unrouted version
+   */
+  public synchronized String register(MultiLayerNetwork model, GEXDataPreprocessor preprocessor, TrainingConfig config) {
+    LocalDateTime created = LocalDateTime.now();
+    String version = created.format(VERSION_FORMAT);
+    Path directory = Paths.get(basePath, MODELS, version);
+    try {
+      Files.createDirectories(directory);
+      ModelSerializer.writeModel(model, directory.resolve(MODEL_FILE).toFile(), true);
+      preprocessor.saveScalers(
+          directory.resolve(FEATURE_SCALER_FILE).toFile(),
+          directory.resolve(TARGET_SCALER_FILE).toFile()
+      );
+      mapper.writeValue(directory.resolve(VERSION_FILE).toFile(), ModelVersion.builder()
+          .version(version)
+          .created(created)
+          .config(config)
+          .build());
+      log.info("Registered model version {}", version);
+      return version;
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to register model due to %s".formatted(e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Load {@code version} fully, then route {@code symbol} at {@code horizon} to it in a single reference swap.
+   * A {@code null} symbol promotes the default route.
+   */
+  public synchronized ModelBundle promote(String version, String symbol, Integer horizon) {
+    return promote(version, symbol, horizon, false);
+  }
+
+  /**
+   * Like {@link #promote(String, String, Integer)}, routing only the live path to {@code version} if {@code live}
+   */
+  public synchronized ModelBundle promote(String version, String symbol, Integer horizon, boolean live) {
+    ModelBundle bundle = cache.get(version);
+    String route = (live ? LIVE_ROUTE_PREFIX : "") + routeKey(symbol, horizon);
+    Map<String, String> updated = new HashMap<>(routes.get());
+    String previous = updated.put(route, version);
+    writeRoutes(updated);
+    routes.set(Map.copyOf(updated));
+    predictionCache.invalidateAll();
+    log.info("Routed {} to model version {} replacing {}", route, version, previous == null ? "none" : previous);
+    return bundle;
+  }
+
+  /**
+   * The shared, cached bundle of {@code version}, whether routed or not, loading it if needed
+   */
+  public ModelBundle getBundle(String version) {
+    return cache.get(version);
+  }
+
+  /**
+   * Load a fresh, independent copy of {@code version} from disk, including its updater state, e.g. to fine-tune it
+   */
+  public ModelBundle load(String version) {
+    return load(version, true);
+  }
+
+  /**
+   * Every registered version, newest first, with the routes it serves
+   */
+  public List<ModelVersion> getVersions() {
+    Path root = Paths.get(basePath, MODELS);
+    if (!Files.isDirectory(root)) {
+      return List.of();
+    }
+    Map<String, String> current = routes.get();
+    Map<String, Long> loaded = cache.getLoaded();
+    List<ModelVersion> versions = new ArrayList<>();
+    try (Stream<Path> directories = Files.list(root)) {
+      for (Path directory : directories.filter(Files::isDirectory).toList()) {
+        File file = directory.resolve(VERSION_FILE).toFile();
+        if (file.exists()) {
+          ModelVersion version = mapper.readValue(file, ModelVersion.class);
+          List<String> served = current.entrySet().stream()
+              .filter(entry -> entry.getValue().equals(version.getVersion()))
+              .map(Map.Entry::getKey)
+              .sorted()
+              .toList();
+          version.setRoutes(served);
+          version.setActive(!served.isEmpty());
+          version.setLoaded(loaded.containsKey(version.getVersion()));
+          version.setMemoryBytes(loaded.getOrDefault(version.getVersion(), 0L));
+          versions.add(version);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to list model versions due to %s".formatted(e.getMessage()), e);
+    }
+    versions.sort(Comparator.comparing(ModelVersion::getVersion).reversed());
+    return versions;
+  }
+
+  public static String routeKey(String symbol, Integer horizon) {
+    if (symbol == null) {
+      return DEFAULT_ROUTE;
+    }
+    return horizon == null ? symbol : symbol + "@" + horizon;
+  }
+
+  private static String resolve(Map<String, String> routes, String symbol, Integer horizon) {
+    String version = null;
+    if (symbol != null && horizon != null) {
+      version = routes.get(routeKey(symbol, horizon));
+    }
+    if (version == null && symbol != null) {
+      version = routes.get(symbol);
+    }
+    return version == null ? routes.get(DEFAULT_ROUTE) : version;
+  }
+
+  private ModelBundle load(String version, boolean loadUpdater) {
+    Path directory = Paths.get(basePath, MODELS, version);
+    if (!Files.isDirectory(directory)) {
+      throw new IllegalArgumentException("Unknown model version " + version);
+    }
+    try {
+      ModelVersion metadata = mapper.readValue(directory.resolve(VERSION_FILE).toFile(), ModelVersion.class);
+      MultiLayerNetwork model = ModelSerializer.restoreMultiLayerNetwork(directory.resolve(MODEL_FILE).toFile(), loadUpdater);
+      // Serving may run in a narrower type than training, models loaded for fine-tuning keep theirs
+      if (!loadUpdater && !inferenceDataType.isBlank()) {
+        model = GEXModelBuilder.withDataType(model, DataType.valueOf(inferenceDataType.trim().toUpperCase()));
+      }
+      GEXDataPreprocessor preprocessor = new GEXDataPreprocessor();
+      preprocessor.loadScalers(
+          directory.resolve(FEATURE_SCALER_FILE).toFile(),
+          directory.resolve(TARGET_SCALER_FILE).toFile()
+      );
+      log.debug("Loaded model version {} from {}", version, directory);
+      return new ModelBundle(version, model, preprocessor, metadata.getConfig(), metadata.getCreated(), serving());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to load model version %s due to %s".formatted(version, e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Configured inference settings of a loaded version, by default half the cores as replicas so concurrent
+   * replicas still get BLAS threads of their own
+   */
+  private ModelBundle.Serving serving() {
+    return new ModelBundle.Serving(
+        replicas > 0 ? replicas : Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+        microBatchItems,
+        microBatchWaitMicros
+    );
+  }
+
+  private Map<String, String> readRoutes() throws IOException {
+    Path file = Paths.get(basePath, MODELS, ROUTES_FILE);
+    if (Files.exists(file)) {
+      return mapper.readValue(file.toFile(), new TypeReference<Map<String, String>>() {});
+    }
+    // Registries written before routing kept a single active version
+    Path legacy = Paths.get(basePath, MODELS, LEGACY_ACTIVE_FILE);
+    return Files.exists(legacy) ?
+        Map.of(DEFAULT_ROUTE, Files.readString(legacy, StandardCharsets.UTF_8).trim()) :
+        Map.of();
+  }
+
+  private void writeRoutes(Map<String, String> updated) {
+    Path file = Paths.get(basePath, MODELS, ROUTES_FILE);
+    Path temp = Paths.get(basePath, MODELS, ROUTES_FILE + ".tmp");
+    try {
+      Files.createDirectories(file.getParent());
+      mapper.writeValue(temp.toFile(), updated);
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write model routes due to %s".formatted(e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Register the single {@code model.bin} and scalers written before the registry existed as the default version
+   */
+  private String importLegacyModel() {
+    File modelFile = new File(basePath + "model.bin");
+    File featureFile = new File(basePath + "_feature_scaler.bin");
+    File targetFile = new File(basePath + "_target_scaler.bin");
+    if (!modelFile.exists() || !featureFile.exists() || !targetFile.exists()) {
+      return null;
+    }
+    try {
+      log.info("Importing legacy model {} into the registry", modelFile);
+      GEXDataPreprocessor preprocessor = new GEXDataPreprocessor();
+      preprocessor.loadScalers(featureFile, targetFile);
+      MultiLayerNetwork model = ModelSerializer.restoreMultiLayerNetwork(modelFile, true);
+      File configFile = new File(basePath + "model_config.json");
+      TrainingConfig config = configFile.exists() ? mapper.readValue(configFile, TrainingConfig.class) : null;
+      String version = register(model, preprocessor, config);
+      writeRoutes(Map.of(DEFAULT_ROUTE, version));
+      return version;
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to import legacy model due to %s".formatted(e.getMessage()), e);
+    }
+  }
+}
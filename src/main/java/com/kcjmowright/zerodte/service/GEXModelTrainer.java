@@ -3,23 +3,36 @@ package com.kcjmowright.zerodte.service;
 import com.kcjmowright.zerodte.model.CrossValidationResult;
 import com.kcjmowright.zerodte.model.GEXData;
 import com.kcjmowright.zerodte.model.GEXFeatures;
-import com.kcjmowright.zerodte.model.HyperparameterResult;
+import com.kcjmowright.zerodte.model.PrecisionResult;
+import com.kcjmowright.zerodte.model.ScalingResult;
 import com.kcjmowright.zerodte.model.TrainingConfig;
 import com.kcjmowright.zerodte.model.TrainingResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator;
 import org.deeplearning4j.datasets.iterator.IteratorDataSetIterator;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
 import org.nd4j.evaluation.regression.RegressionEvaluation;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.ViewIterator;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @Service
@@ -28,7 +41,17 @@ public class GEXModelTrainer {
   private final GEXDataPreprocessor preprocessor;
   private final GEXModelBuilder modelBuilder;
   private final GEXService gexService;
+  private final TrainingCheckpointer checkpointer;
+  private final GEXModelRegistry modelRegistry;
   private static final int BATCH_SIZE = /* number of minutes in trading week */ 1950;
+  private static final int PREFETCH_BATCHES = 4;
+  private static final int INFERENCE_PASSES = 5;
+
+  @Value("${zerodte.training.threadsPerWorker:0}")
+  private int threadsPerWorker;
+
+  @Value("${zerodte.training.crossValidation.parallelism:2}")
+  private int crossValidationParallelism;
 
   /**
    * Train model with early stopping and validation
@@ -37,68 +60,216 @@ public class GEXModelTrainer {
    * @return the training result
    */
   public TrainingResult trainModel(TrainingConfig config) {
-    log.info("Starting model training with config: {}", config);
+    return trainModel(config, TrainingProgressListener.NONE);
+  }
+
+  /**
+   * Train model with early stopping and validation, reporting the losses of every epoch to {@code listener}.
+   * Interrupting the training thread cancels the run at the next epoch boundary.
+   *
+   * @param config training parameters
+   * @param listener receives per-epoch progress
+   * @return the training result
+   */
+  public TrainingResult trainModel(TrainingConfig config, TrainingProgressListener listener) {
+    return trainModel(config, listener, UUID.randomUUID().toString());
+  }
+
+  /**
+   * Train model with early stopping and validation, checkpointing the run under {@code runId}
+   * so it can be continued with {@link #resumeTraining} if it is interrupted.
+   *
+   * @param config training parameters
+   * @param listener receives per-epoch progress
+   * @param runId identifies the run's checkpoints
+   * @return the training result
+   */
+  public TrainingResult trainModel(TrainingConfig config, TrainingProgressListener listener, String runId) {
+    log.info("Starting model training run {} with config: {}", runId, config);
     log.info("1. Load and prepare data");
+    GEXFeatureStore store = loadFeatureStore(config);
+
+    log.info("2. Create dataset and split data");
+    // Scalers of this run only, concurrent jobs fit their own
+    GEXDataPreprocessor runPreprocessor = new GEXDataPreprocessor();
+    Map<String, DataSet> splits = prepareSplits(runPreprocessor, store, config);
+
+    log.info("3. Build model");
+    MultiLayerNetwork model = buildModel(config, runPreprocessor.getNumFeatures());
+
+    log.info("4. Training loop with early stopping");
+    TrainingState state = startTraining(model, listener);
+    return completeRun(runId, model, runPreprocessor, splits, config, state);
+  }
+
+  /**
+   * Continue an interrupted run from its latest checkpoint, restoring the network and updater state,
+   * the early stopping counters and the scalers the run was normalized with
+   *
+   * @param runId the run to resume
+   * @param listener receives per-epoch progress
+   * @return the training result
+   */
+  public TrainingResult resumeTraining(String runId, TrainingProgressListener listener) {
+    log.info("1. Restore checkpoint of training run {}", runId);
+    GEXDataPreprocessor runPreprocessor = new GEXDataPreprocessor();
+    TrainingCheckpointer.Restored restored = checkpointer.restore(runId, runPreprocessor);
+    TrainingConfig config = restored.checkpoint().getConfig();
+    GEXFeatureStore store = loadFeatureStore(config);
+
+    log.info("2. Create dataset and split data");
+    Map<String, DataSet> splits = prepareSplits(runPreprocessor, store, config, false);
+
+    log.info("4. Resume training loop at epoch {}", restored.checkpoint().getEpoch() + 1);
+    TrainingState state = startTraining(restored.model(), listener);
+    restored.applyTo(state);
+    return completeRun(runId, restored.model(), runPreprocessor, splits, config, state);
+  }
+
+  private TrainingResult completeRun(String runId,
+                                     MultiLayerNetwork model,
+                                     GEXDataPreprocessor runPreprocessor,
+                                     Map<String, DataSet> splits,
+                                     TrainingConfig config,
+                                     TrainingState state) {
+    DataSet trainSet = splits.get("train");
+    DataSet validSet = splits.get("validation");
+    DataSet testSet = splits.get("test");
+
+    log.info("Train samples: {}, Valid samples: {}, Test samples: {}",
+        trainSet.numExamples(), validSet.numExamples(), testSet.numExamples());
+
+    state.checkpoints = checkpointer.open(runId, config, runPreprocessor);
+    log.info("Training for {} epochs", config.getNumEpochs());
+    trainEpochs(model, trainSet, validSet, config, state, config.getNumEpochs());
+    TrainingResult result = finishTraining(model, testSet, state);
+
+    log.info("5. Register and activate model and scalars");
+    modelRegistry.publish(model, runPreprocessor, config);
+    checkpointer.delete(runId);
+    return result;
+  }
+
+  /**
+   * Load the snapshots for the configured symbol and date range and extract their features once
+   */
+  public GEXFeatureStore loadFeatureStore(TrainingConfig config) {
     List<GEXData> snapshots = gexService.getGEXDataBySymbolBetweenStartAndEnd(
         config.getSymbol(),
         config.getStartDate(),
         config.getEndDate()
     );
+    return GEXFeatureStore.extract(snapshots, new GEXFeatureExtractor(), preprocessor);
+  }
 
-    GEXFeatureExtractor extractor = new GEXFeatureExtractor();
-    List<GEXFeatures> features = new ArrayList<>(snapshots.size());
-    for (int i = 0; i < snapshots.size(); i++) {
-      List<GEXData> history = snapshots.subList(Math.max(0, i - 60), i);
-      features.add(extractor.extractFeatures(snapshots.get(i), history));
-    }
-
-    log.info("2. Create dataset");
-    DataSet fullDataSet = config.getUseTimeSeries() ?
-        preprocessor.createTimeSeriesDataSet(
-            snapshots,
-            features,
-            config.getSequenceLength(),
-            config.getPredictionHorizon()
-        ) :
-        preprocessor.createDataSet(
-            snapshots,
-            features,
-            config.getPredictionHorizon()
-        );
+  /**
+   * Create the dataset for {@code config} from a feature store, fitting the scalers of {@code target},
+   * and split it into train/validation/test sets
+   */
+  Map<String, DataSet> prepareSplits(GEXDataPreprocessor target, GEXFeatureStore store, TrainingConfig config) {
+    return prepareSplits(target, store, config, true);
+  }
 
-    log.info("3. Split data");
-    Map<String, DataSet> splits = preprocessor.splitDataSet(
+  /**
+   * Create and split the dataset for {@code config}, reusing the scalers of {@code target} unless {@code fitScalers}
+   */
+  Map<String, DataSet> prepareSplits(GEXDataPreprocessor target,
+                                     GEXFeatureStore store,
+                                     TrainingConfig config,
+                                     boolean fitScalers) {
+    DataSet fullDataSet = createDataSet(target, store, 0, store.size(), config, fitScalers);
+    return target.splitDataSet(
         fullDataSet,
         config.getTrainRatio(),
         config.getValidationRatio()
     );
+  }
 
-    DataSet trainSet = splits.get("train");
-    DataSet validSet = splits.get("validation");
-    DataSet testSet = splits.get("test");
+  /**
+   * Create the feed-forward, time series or multi-horizon dataset for {@code config} from the snapshots
+   * in {@code [from, to)}
+   */
+  DataSet createDataSet(GEXDataPreprocessor target,
+                        GEXFeatureStore store,
+                        int from,
+                        int to,
+                        TrainingConfig config,
+                        boolean fitScalers) {
+    return GEXDataPreprocessor.castDataSet(createDoubleDataSet(target, store, from, to, config, fitScalers), dataType(config));
+  }
 
-    log.info("Train samples: {}, Valid samples: {}, Test samples: {}",
-        trainSet.numExamples(), validSet.numExamples(), testSet.numExamples());
+  private DataSet createDoubleDataSet(GEXDataPreprocessor target,
+                                      GEXFeatureStore store,
+                                      int from,
+                                      int to,
+                                      TrainingConfig config,
+                                      boolean fitScalers) {
+    if (isMultiHorizon(config)) {
+      return target.createMultiHorizonDataSet(
+          store,
+          from,
+          to,
+          config.getSequenceLength(),
+          config.getHorizons(),
+          fitScalers
+      );
+    }
+    return Boolean.TRUE.equals(config.getUseTimeSeries()) ?
+        target.createTimeSeriesDataSet(
+            store,
+            from,
+            to,
+            config.getSequenceLength(),
+            config.getPredictionHorizon(),
+            fitScalers
+        ) :
+        target.createDataSet(
+            store,
+            from,
+            to,
+            config.getPredictionHorizon(),
+            fitScalers
+        );
+  }
 
-    log.info("4. Build model");
-    MultiLayerNetwork model = buildModel(config, preprocessor.getNumFeatures());
+  /**
+   * Whether {@code config} trains one network predicting every configured horizon from one forward pass,
+   * a multi-horizon model or a student distilled from one
+   */
+  static boolean isMultiHorizon(TrainingConfig config) {
+    return config != null &&
+        ("multihorizon".equals(config.getModelType()) || isStudent(config)) &&
+        config.getHorizons() != null &&
+        !config.getHorizons().isEmpty();
+  }
 
-    log.info("5. Training loop with early stopping");
-    TrainingResult result = trainWithEarlyStopping(
-        model,
-        trainSet,
-        validSet,
-        testSet,
-        config
-    );
+  /**
+   * Whether {@code config} describes a feed-forward student distilled from a teacher model
+   */
+  static boolean isStudent(TrainingConfig config) {
+    return config != null && "student".equals(config.getModelType());
+  }
 
-    log.info("6. Save model and scalars");
-    preprocessor.saveModel(model);
-    preprocessor.saveScalers();
-    return result;
+  /**
+   * Precision {@code config} trains in, FLOAT unless set. HALF is too coarse for stable gradient updates and is
+   * only offered for inference through {@code zerodte.prediction.dataType}.
+   */
+  static DataType dataType(TrainingConfig config) {
+    if (config == null || config.getDataType() == null || config.getDataType().isBlank()) {
+      return DataType.FLOAT;
+    }
+    DataType dataType = DataType.valueOf(config.getDataType().trim().toUpperCase());
+    if (dataType != DataType.FLOAT && dataType != DataType.DOUBLE) {
+      throw new IllegalArgumentException("Training supports FLOAT or DOUBLE precision, not %s".formatted(dataType));
+    }
+    return dataType;
+  }
+
+  MultiLayerNetwork buildModel(TrainingConfig config, int numFeatures) {
+    return GEXModelBuilder.withDataType(buildNetwork(config, numFeatures), dataType(config));
   }
 
-  private MultiLayerNetwork buildModel(TrainingConfig config, int numFeatures) {
+  private MultiLayerNetwork buildNetwork(TrainingConfig config, int numFeatures) {
     return switch (config.getModelType()) {
       case "feedforward" -> modelBuilder.buildFeedForwardNetwork(
           numFeatures,
@@ -110,7 +281,8 @@ public class GEXModelTrainer {
           config.getSequenceLength(),
           config.getSeed(),
           config.getLearningRate(),
-          config.getL2Regularization());
+          config.getL2Regularization(),
+          config.getDropout() == null ? 0.0 : config.getDropout());
       case "deep" -> modelBuilder.buildDeepNetwork(
           numFeatures,
           config.getSeed(),
@@ -121,6 +293,19 @@ public class GEXModelTrainer {
           config.getSeed(),
           config.getLearningRate(),
           config.getL2Regularization());
+      case "multihorizon" -> modelBuilder.buildMultiHorizonLSTM(
+          numFeatures,
+          config.getHorizons().size(),
+          config.getSeed(),
+          config.getLearningRate(),
+          config.getL2Regularization(),
+          config.getDropout() == null ? 0.0 : config.getDropout());
+      case "student" -> modelBuilder.buildStudentNetwork(
+          numFeatures,
+          isMultiHorizon(config) ? config.getHorizons().size() : 1,
+          config.getSeed(),
+          config.getLearningRate(),
+          config.getL2Regularization());
       case "attention" -> modelBuilder.buildAttentionNetwork(
           numFeatures,
           config.getSeed(),
@@ -137,56 +322,108 @@ public class GEXModelTrainer {
     };
   }
 
-  private TrainingResult trainWithEarlyStopping(MultiLayerNetwork model,
-                                                DataSet trainSet,
-                                                DataSet validSet,
-                                                DataSet testSet,
-                                                TrainingConfig config) {
+  TrainingResult trainWithEarlyStopping(MultiLayerNetwork model,
+                                        DataSet trainSet,
+                                        DataSet validSet,
+                                        DataSet testSet,
+                                        TrainingConfig config) {
+    return trainWithEarlyStopping(model, trainSet, validSet, testSet, config, TrainingProgressListener.NONE);
+  }
+
+  TrainingResult trainWithEarlyStopping(MultiLayerNetwork model,
+                                        DataSet trainSet,
+                                        DataSet validSet,
+                                        DataSet testSet,
+                                        TrainingConfig config,
+                                        TrainingProgressListener listener) {
     log.debug("Train Set:\n{}", trainSet);
     log.debug("Valid Set:\n{}", validSet);
     log.debug("Test Set:\n{}", testSet);
     log.debug("Config:\n{}", config);
-    model.setListeners(new ScoreIterationListener(10));
 
-    List<Double> trainLosses = new ArrayList<>();
-    List<Double> validLosses = new ArrayList<>();
+    TrainingState state = startTraining(model, listener);
+    log.info("Starting training for {} epochs", config.getNumEpochs());
+    trainEpochs(model, trainSet, validSet, config, state, config.getNumEpochs());
+    return finishTraining(model, testSet, state);
+  }
 
-    double bestValidLoss = Double.MAX_VALUE;
-    int patienceCounter = 0;
-    int bestEpoch = 0;
-    MultiLayerNetwork bestModel = model.clone();
+  /**
+   * Prepare {@code model} for a run that is trained with {@link #trainEpochs} and completed with {@link #finishTraining}
+   */
+  TrainingState startTraining(MultiLayerNetwork model) {
+    return startTraining(model, TrainingProgressListener.NONE);
+  }
 
-    log.info("Starting training for {} epochs", config.getNumEpochs());
+  TrainingState startTraining(MultiLayerNetwork model, TrainingProgressListener listener) {
+    model.setListeners(new ScoreIterationListener(10));
+    return new TrainingState(model, listener);
+  }
+
+  /**
+   * Train until the run has completed {@code untilEpoch} epochs in total or early stopping triggers.
+   * A data-parallel run keeps one set of replicas for all of these epochs.
+   */
+  void trainEpochs(MultiLayerNetwork model,
+                   DataSet trainSet,
+                   DataSet validSet,
+                   TrainingConfig config,
+                   TrainingState state,
+                   int untilEpoch) {
+    try (DataParallelFitter fitter = openFitter(model, config)) {
+      trainEpochs(model, fitter, trainSet, validSet, config, state, untilEpoch);
+    }
+  }
+
+  private void trainEpochs(MultiLayerNetwork model,
+                           DataParallelFitter fitter,
+                           DataSet trainSet,
+                           DataSet validSet,
+                           TrainingConfig config,
+                           TrainingState state,
+                           int untilEpoch) {
+    while (state.canContinue(untilEpoch)) {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new CancellationException("Training cancelled after %d epochs".formatted(state.epoch));
+      }
+      int epoch = state.epoch;
+      long epochStart = System.currentTimeMillis();
 
-    for (int epoch = 0; epoch < config.getNumEpochs(); epoch++) {
-      // Train
-      model.fit(trainSet);
+      // Train on mini-batches
+      fitEpoch(model, fitter, trainSet, config, epoch);
+      double samplesPerSecond = trainSet.numExamples() * 1000.0 / Math.max(1L, System.currentTimeMillis() - epochStart);
 
       // Evaluate on training set
       double trainLoss = model.score(trainSet);
-      trainLosses.add(trainLoss);
+      state.trainLosses.add(trainLoss);
 
       // Evaluate on validation set
-      INDArray validPredictions = model.output(validSet.getFeatures());
-      double validLoss = calculateMSE(validPredictions, validSet.getLabels());
-      validLosses.add(validLoss);
+      double validLoss = validationLoss(model, validSet);
+      state.validLosses.add(validLoss);
 
-      log.info("Epoch {}: Train Loss = {}, Valid Loss = {}", epoch + 1, trainLoss, validLoss);
+      log.info("Epoch {}: Train Loss = {}, Valid Loss = {}, Throughput = {} samples/s",
+          epoch + 1, trainLoss, validLoss, String.format("%.1f", samplesPerSecond));
 
       // Early stopping check
-      if (validLoss < bestValidLoss) {
-        bestValidLoss = validLoss;
-        bestEpoch = epoch;
-        bestModel = model.clone();
-        patienceCounter = 0;
+      if (validLoss < state.bestValidLoss) {
+        state.bestValidLoss = validLoss;
+        state.bestEpoch = epoch;
+        state.recordBest(model);
+        state.patienceCounter = 0;
       } else {
-        patienceCounter++;
+        state.patienceCounter++;
       }
+      state.epoch = epoch + 1;
+      state.trainingMillis += System.currentTimeMillis() - epochStart;
+      state.listener.onEpoch(epoch + 1, trainLoss, validLoss);
 
-      if (patienceCounter >= config.getEarlyStoppingPatience()) {
+      if (state.patienceCounter >= config.getEarlyStoppingPatience()) {
         log.info("Early stopping triggered at epoch {}", epoch + 1);
+        state.stoppedEarly = true;
         break;
       }
+      if (state.checkpoints != null) {
+        state.checkpoints.afterEpoch(model, state);
+      }
 
       // Learning rate decay
       if (config.getUseLearningRateDecay() && epoch % 10 == 0 && epoch > 0) {
@@ -195,9 +432,246 @@ public class GEXModelTrainer {
         // Note: In practice, you'd update the updater here
       }
     }
+  }
+
+  /**
+   * Data-parallel fitter over {@code model} for a run of more than one {@code config.workers}, or null when
+   * the run trains the network directly. One fitter serves every epoch of the run.
+   */
+  private DataParallelFitter openFitter(MultiLayerNetwork model, TrainingConfig config) {
+    int workers = config.getWorkers() == null ? 1 : config.getWorkers();
+    if (workers <= 1) {
+      return null;
+    }
+    int averagingFrequency = config.getAveragingFrequency() == null ? 1 : config.getAveragingFrequency();
+    return new DataParallelFitter(model, workers, averagingFrequency, threadsPerWorker);
+  }
+
+  /**
+   * Fit one epoch in mini-batches of {@code config.batchSize}, prefetched on a background thread.
+   * Feed-forward samples are fitted in an order drawn from {@code config.seed} and the epoch alone, so every
+   * epoch's order is reproducible without the previous epochs. Time series samples keep their chronological order.
+   * With a {@code fitter} every mini-batch is sharded across its data-parallel replicas.
+   */
+  private void fitEpoch(MultiLayerNetwork model, DataParallelFitter fitter, DataSet trainSet, TrainingConfig config, int epoch) {
+    int numExamples = trainSet.numExamples();
+    int batchSize = config.getBatchSize() == null || config.getBatchSize() <= 0 ?
+        numExamples :
+        Math.min(config.getBatchSize(), numExamples);
+    DataSet epochSet = trainSet;
+    if (trainSet.getFeatures().rank() == 2) {
+      int[] permutation = epochPermutation(numExamples, (config.getSeed() == null ? 0L : config.getSeed()) + epoch);
+      epochSet = new DataSet(trainSet.getFeatures().getRows(permutation), trainSet.getLabels().getRows(permutation));
+    }
+    AsyncDataSetIterator iterator = new AsyncDataSetIterator(new ViewIterator(epochSet, batchSize), PREFETCH_BATCHES);
+    try {
+      if (fitter != null) {
+        fitter.fit(iterator);
+      } else {
+        model.fit(iterator);
+      }
+    } finally {
+      iterator.shutdown();
+    }
+  }
 
-    // Use best model
-    model = bestModel;
+  /**
+   * Random permutation of {@code 0..examples-1} determined by {@code seed} alone
+   */
+  static int[] epochPermutation(int examples, long seed) {
+    Random random = new Random(seed);
+    int[] permutation = new int[examples];
+    for (int k = 0; k < examples; k++) {
+      permutation[k] = k;
+    }
+    for (int k = examples - 1; k > 0; k--) {
+      int j = random.nextInt(k + 1);
+      int swap = permutation[k];
+      permutation[k] = permutation[j];
+      permutation[j] = swap;
+    }
+    return permutation;
+  }
+
+  /**
+   * Measure data-parallel training throughput of {@code config} for each worker count over the same data,
+   * starting every measurement from a freshly built network
+   *
+   * @param config training parameters, {@code numEpochs} epochs are timed per worker count
+   * @param workerCounts the worker counts to compare, the first is the baseline for speedup and efficiency
+   * @return throughput, speedup and scaling efficiency per worker count
+   */
+  public ScalingResult measureScaling(TrainingConfig config, List<Integer> workerCounts) {
+    GEXFeatureStore store = loadFeatureStore(config);
+    GEXDataPreprocessor scalingPreprocessor = new GEXDataPreprocessor();
+    Map<String, DataSet> splits = prepareSplits(scalingPreprocessor, store, config);
+    DataSet trainSet = splits.get("train");
+    DataSet validSet = splits.get("validation");
+
+    List<ScalingResult.Point> points = new ArrayList<>();
+    for (int workers : workerCounts) {
+      TrainingConfig workerConfig = config.toBuilder().workers(workers).build();
+      MultiLayerNetwork model = buildModel(workerConfig, scalingPreprocessor.getNumFeatures());
+      long start = System.nanoTime();
+      try (DataParallelFitter fitter = openFitter(model, workerConfig)) {
+        for (int epoch = 0; epoch < config.getNumEpochs(); epoch++) {
+          fitEpoch(model, fitter, trainSet, workerConfig, epoch);
+        }
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      double samplesPerSecond = (double) trainSet.numExamples() * config.getNumEpochs() / seconds;
+      double speedup = points.isEmpty() ? 1.0 : samplesPerSecond / points.getFirst().getSamplesPerSecond();
+      double baselineWorkers = points.isEmpty() ? workers : points.getFirst().getWorkers();
+      ScalingResult.Point point = ScalingResult.Point.builder()
+          .workers(workers)
+          .samplesPerSecond(samplesPerSecond)
+          .speedup(speedup)
+          .efficiency(speedup * baselineWorkers / workers)
+          .validationLoss(validationLoss(model, validSet))
+          .build();
+      log.info("{} workers: {} samples/s, speedup {}, efficiency {}", workers,
+          String.format("%.1f", samplesPerSecond), String.format("%.2f", point.getSpeedup()),
+          String.format("%.2f", point.getEfficiency()));
+      points.add(point);
+    }
+    return ScalingResult.builder()
+        .modelType(config.getModelType())
+        .trainSamples(trainSet.numExamples())
+        .batchSize(config.getBatchSize() == null ? trainSet.numExamples() : config.getBatchSize())
+        .averagingFrequency(config.getAveragingFrequency() == null ? 1 : config.getAveragingFrequency())
+        .epochs(config.getNumEpochs())
+        .points(points)
+        .build();
+  }
+
+  /**
+   * Measure training and inference throughput of {@code config} in each of {@code dataTypes} over the same data.
+   * A DOUBLE network is trained first as the reference: every type's inference runs that network converted to
+   * the type, so throughput and prediction differences compare identical weights. FLOAT and DOUBLE additionally
+   * train a fresh network in their own type.
+   *
+   * @param config training parameters, {@code numEpochs} epochs are timed per type
+   * @param dataTypes DOUBLE, FLOAT and HALF, HALF is measured for inference only
+   * @return throughput and speedup over DOUBLE, validation loss and prediction parity per type
+   */
+  public PrecisionResult measurePrecision(TrainingConfig config, List<String> dataTypes) {
+    GEXFeatureStore store = loadFeatureStore(config);
+    GEXDataPreprocessor precisionPreprocessor = new GEXDataPreprocessor();
+    TrainingConfig doubleConfig = config.toBuilder().dataType(DataType.DOUBLE.name()).build();
+    Map<String, DataSet> splits = prepareSplits(precisionPreprocessor, store, doubleConfig);
+    DataSet trainSet = splits.get("train");
+    DataSet validSet = splits.get("validation");
+    ScalerParameters scalers = precisionPreprocessor.requireScalerParameters();
+
+    MultiLayerNetwork reference = buildModel(doubleConfig, precisionPreprocessor.getNumFeatures());
+    double referenceTrainRate = timeTraining(reference, trainSet, doubleConfig);
+    double[][] referencePredictions = denormalizedPredictions(reference.output(validSet.getFeatures()), scalers);
+    double referenceInferenceRate = timeInference(reference, validSet.getFeatures());
+
+    List<PrecisionResult.Point> points = new ArrayList<>();
+    for (String name : dataTypes) {
+      DataType dataType = DataType.valueOf(name.trim().toUpperCase());
+      PrecisionResult.Point.PointBuilder point = PrecisionResult.Point.builder().dataType(dataType.name());
+
+      if (dataType == DataType.DOUBLE) {
+        point.trainSamplesPerSecond(referenceTrainRate).trainSpeedup(1.0).validationLoss(validationLoss(reference, validSet));
+      } else if (dataType == DataType.FLOAT) {
+        TrainingConfig typeConfig = config.toBuilder().dataType(dataType.name()).build();
+        MultiLayerNetwork model = buildModel(typeConfig, precisionPreprocessor.getNumFeatures());
+        DataSet typeTrainSet = GEXDataPreprocessor.castDataSet(trainSet, dataType);
+        double trainRate = timeTraining(model, typeTrainSet, typeConfig);
+        point.trainSamplesPerSecond(trainRate)
+            .trainSpeedup(trainRate / referenceTrainRate)
+            .validationLoss(validationLoss(model, GEXDataPreprocessor.castDataSet(validSet, dataType)));
+      }
+
+      MultiLayerNetwork converted = GEXModelBuilder.withDataType(reference, dataType);
+      INDArray features = validSet.getFeatures().castTo(dataType);
+      double inferenceRate = dataType == DataType.DOUBLE ? referenceInferenceRate : timeInference(converted, features);
+      double[][] predictions = denormalizedPredictions(converted.output(features), scalers);
+      double maxDifference = 0.0;
+      for (int i = 0; i < predictions.length; i++) {
+        for (int o = 0; o < predictions[i].length; o++) {
+          maxDifference = Math.max(maxDifference, Math.abs(predictions[i][o] - referencePredictions[i][o]));
+        }
+      }
+      point.inferenceSamplesPerSecond(inferenceRate)
+          .inferenceSpeedup(inferenceRate / referenceInferenceRate)
+          .maxPredictionDifference(maxDifference)
+          .parameterBytes(converted.params().length() * dataType.width());
+      log.info("{}: {} inference samples/s, max prediction difference {}", dataType,
+          String.format("%.1f", inferenceRate), String.format("%.6f", maxDifference));
+      points.add(point.build());
+    }
+    return PrecisionResult.builder()
+        .modelType(config.getModelType())
+        .trainSamples(trainSet.numExamples())
+        .validationSamples(validSet.numExamples())
+        .epochs(config.getNumEpochs())
+        .points(points)
+        .build();
+  }
+
+  /**
+   * Training samples per second of {@code config.numEpochs} epochs
+   */
+  private double timeTraining(MultiLayerNetwork model, DataSet trainSet, TrainingConfig config) {
+    long start = System.nanoTime();
+    try (DataParallelFitter fitter = openFitter(model, config)) {
+      for (int epoch = 0; epoch < config.getNumEpochs(); epoch++) {
+        fitEpoch(model, fitter, trainSet, config, epoch);
+      }
+    }
+    return (double) trainSet.numExamples() * config.getNumEpochs() / ((System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * Inference samples per second over {@code INFERENCE_PASSES} passes of {@code features} in batches of
+   * {@code BATCH_SIZE}, after one warm-up pass
+   */
+  private double timeInference(MultiLayerNetwork model, INDArray features) {
+    long numExamples = features.size(0);
+    long start = 0L;
+    for (int pass = 0; pass <= INFERENCE_PASSES; pass++) {
+      if (pass == 1) {
+        start = System.nanoTime();
+      }
+      for (long from = 0; from < numExamples; from += BATCH_SIZE) {
+        INDArrayIndex[] batch = new INDArrayIndex[features.rank()];
+        batch[0] = NDArrayIndex.interval(from, Math.min(from + BATCH_SIZE, numExamples));
+        for (int d = 1; d < batch.length; d++) {
+          batch[d] = NDArrayIndex.all();
+        }
+        model.output(features.get(batch));
+      }
+    }
+    return (double) numExamples * INFERENCE_PASSES / ((System.nanoTime() - start) / 1e9);
+  }
+
+  /**
+   * Denormalized {@code [examples, outputs]} predictions of a 2D output, or of the last time step of a 3D output
+   */
+  private static double[][] denormalizedPredictions(INDArray output, ScalerParameters scalers) {
+    INDArray last = output.rank() == 3 ?
+        output.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(output.size(2) - 1)) :
+        output;
+    double[][] predictions = last.castTo(DataType.DOUBLE).toDoubleMatrix();
+    for (double[] row : predictions) {
+      for (int o = 0; o < row.length; o++) {
+        row[o] = scalers.denormalizeTarget(o, row[o]);
+      }
+    }
+    return predictions;
+  }
+
+  /**
+   * Restore the best weights into {@code model} and evaluate it on the test set
+   */
+  TrainingResult finishTraining(MultiLayerNetwork model, DataSet testSet, TrainingState state) {
+    // Use best model, restoring its weights in place so callers persist what was evaluated
+    state.restoreBest(model);
+    log.info("Best model: epoch {}, {} snapshots of {} parameters took {} µs in total",
+        state.bestEpoch + 1, state.bestSnapshots, state.bestParams.length(), state.bestSnapshotNanos / 1_000L);
 
     // Final evaluation on test set
     RegressionEvaluation testEval = model.evaluateRegression(
@@ -207,10 +681,10 @@ public class GEXModelTrainer {
     log.info("Test set evaluation:\n{}", testEval.stats());
 
     return TrainingResult.builder()
-        .bestEpoch(bestEpoch)
-        .bestValidationLoss(bestValidLoss)
-        .trainLosses(trainLosses)
-        .validationLosses(validLosses)
+        .bestEpoch(state.bestEpoch)
+        .bestValidationLoss(state.bestValidLoss)
+        .trainLosses(state.trainLosses)
+        .validationLosses(state.validLosses)
         .testMSE(testEval.meanSquaredError(0))
         .testMAE(testEval.meanAbsoluteError(0))
         .testRMSE(testEval.rootMeanSquaredError(0))
@@ -218,6 +692,13 @@ public class GEXModelTrainer {
         .build();
   }
 
+  /**
+   * Mean squared error of {@code model} on {@code validSet}, the loss early stopping compares
+   */
+  double validationLoss(MultiLayerNetwork model, DataSet validSet) {
+    return calculateMSE(model.output(validSet.getFeatures()), validSet.getLabels());
+  }
+
   private double calculateMSE(INDArray predictions, INDArray actual) {
     INDArray diff = predictions.sub(actual);
     INDArray squared = diff.mul(diff);
@@ -225,50 +706,7 @@ public class GEXModelTrainer {
   }
 
   /**
-   * Hyperparameter tuning using grid search
-   */
-  public HyperparameterResult tuneHyperparameters(
-      List<GEXData> snapshots,
-      List<GEXFeatures> features,
-      Map<String, List<Object>> hyperparamGrid) {
-
-    log.info("Starting hyperparameter tuning");
-
-    List<HyperparameterResult.Trial> trials = new ArrayList<>();
-    double bestScore = Double.MAX_VALUE;
-    Map<String, Object> bestParams = null;
-
-    // Generate all combinations
-    List<Map<String, Object>> combinations = generateCombinations(hyperparamGrid);
-
-    for (int i = 0; i < combinations.size(); i++) {
-      Map<String, Object> params = combinations.get(i);
-      log.info("Trial {}/{}: {}", i + 1, combinations.size(), params);
-
-      // Create config with these parameters
-      TrainingConfig config = createConfigFromParams(params);
-
-      // Train model
-      TrainingResult result = trainModel(config);
-
-      double score = result.getTestMSE();
-      trials.add(new HyperparameterResult.Trial(params, score));
-
-      if (score < bestScore) {
-        bestScore = score;
-        bestParams = params;
-      }
-    }
-
-    return HyperparameterResult.builder()
-        .trials(trials)
-        .bestParams(bestParams)
-        .bestScore(bestScore)
-        .build();
-  }
-
-  /**
-   * Cross-validation for robust model evaluation
+   * Cross-validation for robust model evaluation over already loaded snapshots
    */
   public CrossValidationResult crossValidate(
       String symbol,
@@ -276,39 +714,66 @@ public class GEXModelTrainer {
       List<GEXFeatures> features,
       int numFolds,
       TrainingConfig baseConfig) {
+    GEXFeatureStore store = GEXFeatureStore.of(snapshots, features, preprocessor);
+    return crossValidate(store, numFolds, baseConfig.toBuilder().symbol(symbol).build());
+  }
 
-    log.info("Starting {}-fold cross-validation", numFolds);
-
-    int foldSize = snapshots.size() / numFolds;
-    List<Double> foldScores = new ArrayList<>();
-
-    for (int fold = 0; fold < numFolds; fold++) {
-      log.info("Processing fold {}/{}", fold + 1, numFolds);
-
-      // Split data for this fold
-      int testStart = fold * foldSize;
-      int testEnd = (fold + 1) * foldSize;
-
-      List<GEXData> trainSnaps = new ArrayList<>();
-      // List<GEXFeatures> trainFeats = new ArrayList<>();
-
-      trainSnaps.addAll(snapshots.subList(0, testStart));
-      trainSnaps.addAll(snapshots.subList(testEnd, snapshots.size()));
-
-//      trainFeats.addAll(features.subList(0, testStart));
-//      trainFeats.addAll(features.subList(testEnd, features.size()));
+  /**
+   * Cross-validation for robust model evaluation, loading and featurizing the configured range once
+   */
+  public CrossValidationResult crossValidate(TrainingConfig baseConfig, int numFolds) {
+    return crossValidate(loadFeatureStore(baseConfig), numFolds, baseConfig);
+  }
 
-      // Create temporary config for this fold
-      TrainingConfig foldConfig = baseConfig.toBuilder()
-          .startDate(trainSnaps.getFirst().getCreated())
-          .endDate(trainSnaps.getLast().getCreated())
-          .build();
+  /**
+   * Purged walk-forward cross-validation over a shared feature store, training the folds concurrently.
+   * The store is cut into {@code numFolds + 1} chronological blocks; fold {@code k} tests on block {@code k + 1}
+   * after training on everything before it, holding out the tail of that range for early stopping.
+   * Every range is turned into its own dataset, so no sample's look-ahead label reaches into a later range,
+   * and each fold fits its own scalers on its training range only.
+   */
+  public CrossValidationResult crossValidate(GEXFeatureStore store, int numFolds, TrainingConfig baseConfig) {
+    TrainingConfig config = baseConfig.toBuilder()
+        .earlyStoppingPatience(baseConfig.getEarlyStoppingPatience() == null ?
+            baseConfig.getNumEpochs() :
+            baseConfig.getEarlyStoppingPatience())
+        .build();
+    int blockSize = store.size() / (numFolds + 1);
+    double validationRatio = config.getValidationRatio() == null ? 0.15 : config.getValidationRatio();
+    int required = config.getPredictionHorizon() +
+        (Boolean.TRUE.equals(config.getUseTimeSeries()) ? config.getSequenceLength() : 0);
+    if ((int) (blockSize * validationRatio) <= required) {
+      throw new IllegalArgumentException("%d snapshots are not enough for %d folds".formatted(store.size(), numFolds));
+    }
 
-      // Train and evaluate
-      TrainingResult result = trainModel(foldConfig);
-      foldScores.add(result.getTestMSE());
+    log.info("Starting {}-fold purged walk-forward cross-validation over {} snapshots", numFolds, store.size());
+    long start = System.currentTimeMillis();
+    int workers = Math.max(1, Math.min(crossValidationParallelism, numFolds));
+    double[] scores = new double[numFolds];
+    long[] millis = new long[numFolds];
+    Nd4jThreads.Limit threadLimit = Nd4jThreads.limit(Nd4jThreads.perWorker(threadsPerWorker, workers));
+    try (ExecutorService pool = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("gex-cv-", 0).factory())) {
+      List<CompletableFuture<Void>> futures = new ArrayList<>(numFolds);
+      for (int fold = 0; fold < numFolds; fold++) {
+        int testFrom = (fold + 1) * blockSize;
+        int testTo = fold == numFolds - 1 ? store.size() : testFrom + blockSize;
+        int validFrom = testFrom - (int) (testFrom * validationRatio);
+        int index = fold;
+        futures.add(CompletableFuture.runAsync(() -> {
+          long foldStart = System.currentTimeMillis();
+          log.info("Processing fold {}/{}: train [0, {}), validation [{}, {}), test [{}, {})",
+              index + 1, numFolds, validFrom, validFrom, testFrom, testFrom, testTo);
+          scores[index] = trainFold(store, config, validFrom, testFrom, testTo);
+          millis[index] = System.currentTimeMillis() - foldStart;
+          log.info("Fold {}/{} test MSE {} in {} ms", index + 1, numFolds, scores[index], millis[index]);
+        }, pool));
+      }
+      futures.forEach(CompletableFuture::join);
+    } finally {
+      threadLimit.close();
     }
 
+    List<Double> foldScores = Arrays.stream(scores).boxed().toList();
     double meanScore = foldScores.stream()
         .mapToDouble(Double::doubleValue)
         .average()
@@ -320,39 +785,24 @@ public class GEXModelTrainer {
         .foldScores(foldScores)
         .meanScore(meanScore)
         .stdScore(stdScore)
+        .foldMillis(Arrays.stream(millis).boxed().toList())
+        .elapsedMillis(System.currentTimeMillis() - start)
         .build();
   }
 
-  private List<Map<String, Object>> generateCombinations(Map<String, List<Object>> grid) {
-
-    List<Map<String, Object>> results = new ArrayList<>();
-    results.add(new HashMap<>());
-
-    for (Map.Entry<String, List<Object>> entry : grid.entrySet()) {
-      String key = entry.getKey();
-      List<Object> values = entry.getValue();
-
-      List<Map<String, Object>> newResults = new ArrayList<>();
-      for (Map<String, Object> result : results) {
-        for (Object value : values) {
-          Map<String, Object> newResult = new HashMap<>(result);
-          newResult.put(key, value);
-          newResults.add(newResult);
-        }
-      }
-      results = newResults;
-    }
-
-    return results;
-  }
-
-  private TrainingConfig createConfigFromParams(Map<String, Object> params) {
-    return TrainingConfig.builder()
-        .learningRate((Double) params.getOrDefault("learningRate", 0.001))
-        .numEpochs((Integer) params.getOrDefault("numEpochs", 100))
-        .batchSize((Integer) params.getOrDefault("batchSize", 32))
-        .l2Regularization((Double) params.getOrDefault("l2", 0.0001))
-        .build();
+  /**
+   * Train one fold with its own scalers and network and return its test MSE
+   */
+  private double trainFold(GEXFeatureStore store, TrainingConfig config, int validFrom, int testFrom, int testTo) {
+    GEXDataPreprocessor foldPreprocessor = new GEXDataPreprocessor();
+    DataSet trainSet = createDataSet(foldPreprocessor, store, 0, validFrom, config, true);
+    DataSet validSet = createDataSet(foldPreprocessor, store, validFrom, testFrom, config, false);
+    DataSet testSet = createDataSet(foldPreprocessor, store, testFrom, testTo, config, false);
+
+    MultiLayerNetwork model = buildModel(config, foldPreprocessor.getNumFeatures());
+    TrainingState state = startTraining(model);
+    trainEpochs(model, trainSet, validSet, config, state, config.getNumEpochs());
+    return finishTraining(model, testSet, state).getTestMSE();
   }
 
   private double calculateStandardDeviation(List<Double> values) {
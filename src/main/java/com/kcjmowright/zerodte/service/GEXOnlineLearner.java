@@ -0,0 +1,412 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.OnlineLearningStatus;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Online learning between retrains. Every minute, the examples of the current session whose label became known
+ * since the last run, i.e. whose prediction horizon has passed, are first scored by the live model and by a shadow
+ * copy of it, then learned by the shadow only, one small SGD step over the most recent examples each. Updates run
+ * on a dedicated thread, away from the scheduler's data capture, and load and extract only the snapshots that
+ * arrived since the last run. The minute's time budget covers the whole update, work left when it is spent resumes
+ * or is skipped the next minute. The shadow is registered and routed for its symbol only when its rolling
+ * error over the recent examples beats the live model's by a margin, so a bad session cannot degrade predictions.
+ * The live model is the one serving the symbol at its model's prediction horizon, so when a horizon-specific route
+ * serves that horizon, that route's model is learned and replaced.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GEXOnlineLearner {
+  private final GEXModelTrainer trainer;
+  private final GEXModelRegistry modelRegistry;
+  private final GEXService gexService;
+  private final GEXFeatureExtractor featureExtractor;
+  private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+  private ExecutorService executor;
+  private Future<?> scheduled;
+
+  @Value("${zerodte.training.online.enabled:false}")
+  private boolean enabled;
+
+  @Value("${zerodte.training.online.symbols:SPY}")
+  private List<String> symbols;
+
+  @Value("${zerodte.training.online.updateBudgetMillis:250}")
+  private long updateBudgetMillis;
+
+  @Value("${zerodte.training.online.batchSize:16}")
+  private int batchSize;
+
+  @Value("${zerodte.training.online.learningRateScale:0.1}")
+  private double learningRateScale;
+
+  @Value("${zerodte.training.online.window:60}")
+  private int window;
+
+  @Value("${zerodte.training.online.promotionMargin:0.05}")
+  private double promotionMargin;
+
+  @PostConstruct
+  public void start() {
+    executor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("gex-online-learner").factory());
+  }
+
+  @PreDestroy
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  @Scheduled(cron = "${zerodte.training.online.cron:30 */1 8-16 * * MON-FRI}")
+  public void scheduledUpdate() {
+    if (!enabled) {
+      return;
+    }
+    if (scheduled != null && !scheduled.isDone()) {
+      log.warn("Previous online update still running, skipping this one");
+      return;
+    }
+    scheduled = executor.submit(() -> {
+      for (String symbol : symbols) {
+        try {
+          learnNow(symbol);
+        } catch (Exception e) {
+          log.error("Online update of {} failed", symbol, e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Score and learn from the examples of {@code symbol} labeled since its last update, promoting the shadow model
+   * if it now beats the live one. The update runs after any update in progress.
+   */
+  public CompletableFuture<OnlineLearningStatus> learn(String symbol) {
+    return CompletableFuture.supplyAsync(() -> learnNow(symbol), executor);
+  }
+
+  private OnlineLearningStatus learnNow(String symbol) {
+    long start = System.nanoTime();
+    Integer horizon = servedHorizonRoute(symbol);
+    ModelBundle live = modelRegistry.getActive(symbol, horizon);
+    // A version promoted by anything else, e.g. a retrain, starts a new shadow
+    Session session = sessions.compute(symbol, (key, existing) ->
+        existing != null && existing.liveVersion.equals(live.getVersion()) && Objects.equals(existing.horizon, horizon) ?
+            existing :
+            newSession(symbol, horizon, live.getVersion()));
+    synchronized (session) {
+      update(session, live, start);
+      return session.status();
+    }
+  }
+
+  /**
+   * Status of every symbol learned online
+   */
+  public List<OnlineLearningStatus> getStatus() {
+    return sessions.values().stream()
+        .map(session -> {
+          synchronized (session) {
+            return session.status();
+          }
+        })
+        .sorted(Comparator.comparing(OnlineLearningStatus::getSymbol))
+        .toList();
+  }
+
+  /**
+   * Horizon of the route serving predictions of {@code symbol} at its model's prediction horizon, {@code null} for
+   * the symbol's own route. A multi-horizon model is learned only while no horizon-specific route shadows any of its
+   * horizons, it would otherwise be compared against predictions partly served by other models.
+   */
+  private Integer servedHorizonRoute(String symbol) {
+    TrainingConfig config = modelRegistry.getActive(symbol, null).getConfig();
+    Map<String, String> routes = modelRegistry.getRoutes();
+    if (config == null) {
+      return null;
+    }
+    if (GEXModelTrainer.isMultiHorizon(config)) {
+      for (Integer horizon : config.getHorizons()) {
+        if (routes.containsKey(GEXModelRegistry.routeKey(symbol, horizon))) {
+          throw new IllegalStateException("A horizon-specific route serves %s@%d, not learning its multi-horizon model online"
+              .formatted(symbol, horizon));
+        }
+      }
+      return null;
+    }
+    Integer horizon = config.getPredictionHorizon();
+    return horizon != null && routes.containsKey(GEXModelRegistry.routeKey(symbol, horizon)) ? horizon : null;
+  }
+
+  private Session newSession(String symbol, Integer horizon, String version) {
+    log.info("Start online learning of {} on a shadow copy of {}", GEXModelRegistry.routeKey(symbol, horizon), version);
+    // An independent copy with its updater, serving continues on the live bundle
+    ModelBundle shadow = modelRegistry.load(version);
+    if (shadow.getConfig() == null) {
+      throw new IllegalStateException("Model version %s has no training config to learn online with".formatted(version));
+    }
+    shadow.getModel().setLearningRate(shadow.getConfig().getLearningRate() * learningRateScale);
+    return new Session(symbol, horizon, version, shadow, window);
+  }
+
+  private void update(Session session, ModelBundle live, long start) {
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(updateBudgetMillis);
+    TrainingConfig config = session.shadow.getConfig();
+    LocalDateTime now = LocalDateTime.now();
+    LocalDate today = now.toLocalDate();
+    if (!today.equals(session.day)) {
+      session.day = today;
+      session.processed = 0;
+      session.snapshots.clear();
+      session.featureRows.clear();
+    }
+
+    List<GEXData> snapshots = loadSnapshots(session, now);
+    boolean multiHorizon = GEXModelTrainer.isMultiHorizon(config);
+    boolean timeSeries = multiHorizon || Boolean.TRUE.equals(config.getUseTimeSeries());
+    int horizon = multiHorizon ? Collections.max(config.getHorizons()) : config.getPredictionHorizon();
+    int sequenceLength = timeSeries ? session.shadow.getSequenceLength() : 0;
+    int total = snapshots.size() - horizon - sequenceLength;
+    if (total <= session.processed) {
+      log.debug("No newly labeled examples of {}", session.symbol);
+      return;
+    }
+    // After a restart mid-session only the newest examples are worth learning
+    int from = Math.max(session.processed, total - batchSize);
+    // Oldest example of the first new example's mini-batch, no earlier feature row is needed
+    int first = Math.max(0, from + 1 - batchSize);
+    if (!extractFeatureRows(session, first, deadline)) {
+      log.info("Online update budget of {} ms spent extracting features of {}, resuming next run", updateBudgetMillis, session.symbol);
+      return;
+    }
+    GEXFeatureStore store = GEXFeatureStore.ofRows(
+        snapshots.subList(first, snapshots.size()),
+        session.featureRows.subList(first, snapshots.size()).toArray(double[][]::new)
+    );
+    // Example e of the session is example e - first of this dataset
+    DataSet examples = trainer.createDataSet(session.shadow.getPreprocessor(), store, 0, store.size(), config, false);
+
+    // Score both models on the new examples before the shadow learns them
+    DataSet fresh = examples.getRange(from - first, total - first);
+    MultiLayerNetwork shadow = session.shadow.getModel();
+    session.liveErrors.addAll(squaredErrors(live.infer(model -> model.output(fresh.getFeatures().castTo(model.params().dataType()))), fresh));
+    session.shadowErrors.addAll(squaredErrors(shadow.output(fresh.getFeatures()), fresh));
+    session.examples += total - from;
+
+    for (int e = from; e < total; e++) {
+      if (System.nanoTime() > deadline) {
+        session.skippedUpdates += total - e;
+        log.info("Online update budget of {} ms spent, skipping {} examples of {}", updateBudgetMillis, total - e, session.symbol);
+        break;
+      }
+      shadow.fit(examples.getRange(Math.max(0, e + 1 - batchSize) - first, e + 1 - first));
+      session.updates++;
+    }
+    session.updateLatency.record(System.nanoTime() - start);
+    session.processed = total;
+    session.lastLabeled = snapshots.get(total - 1 + Math.max(0, sequenceLength - 1)).getCreated();
+
+    double liveError = session.liveErrors.mean();
+    double shadowError = session.shadowErrors.mean();
+    log.debug("Rolling MSE of {}: live {}, shadow {}", session.symbol, liveError, shadowError);
+    if (shadowWins(session.liveErrors, session.shadowErrors, promotionMargin)) {
+      promote(session, now);
+    }
+  }
+
+  /**
+   * The session's snapshots of today, loading only those created since the last load
+   */
+  private List<GEXData> loadSnapshots(Session session, LocalDateTime now) {
+    if (session.snapshots.isEmpty()) {
+      session.snapshots.addAll(gexService.getGEXDataBySymbolBetweenStartAndEnd(session.symbol, session.day.atStartOfDay(), now));
+    } else {
+      LocalDateTime last = session.snapshots.getLast().getCreated();
+      gexService.getGEXDataBySymbolBetweenStartAndEnd(session.symbol, last, now).stream()
+          .filter(snapshot -> snapshot.getCreated().isAfter(last))
+          .forEach(session.snapshots::add);
+    }
+    while (session.featureRows.size() < session.snapshots.size()) {
+      session.featureRows.add(null);
+    }
+    return session.snapshots;
+  }
+
+  /**
+   * Extract the feature rows of the session's snapshots from {@code first} on that are not extracted yet, each
+   * with its trailing history, returning false once {@code deadline} passes. The rows extracted so far are kept.
+   */
+  private boolean extractFeatureRows(Session session, int first, long deadline) {
+    for (int i = first; i < session.snapshots.size(); i++) {
+      if (session.featureRows.get(i) != null) {
+        continue;
+      }
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      session.featureRows.set(i, GEXFeatureStore.extractRow(session.snapshots, i, featureExtractor, session.shadow.getPreprocessor()));
+    }
+    return true;
+  }
+
+  /**
+   * Whether the shadow's rolling error over a full window beats the live model's by at least {@code margin}
+   */
+  static boolean shadowWins(RollingError liveErrors, RollingError shadowErrors, double margin) {
+    return shadowErrors.isFull() && shadowErrors.mean() < liveErrors.mean() * (1.0 - margin);
+  }
+
+  /**
+   * Register a copy of the shadow and route the session's symbol to it
+   */
+  private void promote(Session session, LocalDateTime now) {
+    TrainingConfig config = session.shadow.getConfig();
+    MultiLayerNetwork model = session.shadow.getModel().clone();
+    model.setLearningRate(config.getLearningRate());
+    String version = modelRegistry.register(model, session.shadow.getPreprocessor(), config.toBuilder().endDate(now).build());
+    log.info("Shadow of {} beats the live model {} with rolling MSE {} against {}, promoting it as {}",
+        session.symbol, session.liveVersion, session.shadowErrors.mean(), session.liveErrors.mean(), version);
+    modelRegistry.promote(version, session.symbol, session.horizon);
+    session.liveVersion = version;
+    // Both are the same model now, the shadow has to beat it anew
+    session.liveErrors.copyFrom(session.shadowErrors);
+    session.promotions++;
+    session.lastPromotion = now;
+  }
+
+  /**
+   * Mean squared error of every example over its outputs at the last time step, in normalized target units
+   */
+  private static double[] squaredErrors(INDArray output, DataSet examples) {
+    INDArray labels = examples.getLabels();
+    if (output.rank() == 3) {
+      output = output.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(output.size(2) - 1));
+      labels = labels.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(labels.size(2) - 1));
+    }
+    INDArray difference = output.castTo(DataType.DOUBLE).sub(labels.castTo(DataType.DOUBLE));
+    return difference.muli(difference).mean(1).toDoubleVector();
+  }
+
+  /**
+   * Online learning state of one symbol
+   */
+  private static final class Session {
+    private final String symbol;
+    private final Integer horizon; // of the route learned, null for the symbol's own route
+    private final ModelBundle shadow;
+    private final RollingError liveErrors;
+    private final RollingError shadowErrors;
+    private final LatencyHistogram updateLatency = new LatencyHistogram();
+    private final List<GEXData> snapshots = new ArrayList<>(); // of the day, in order of creation
+    private final List<double[]> featureRows = new ArrayList<>(); // of the snapshots, null until extracted
+    private String liveVersion;
+    private LocalDate day;
+    private int processed;
+    private LocalDateTime lastLabeled;
+    private long examples;
+    private long updates;
+    private long skippedUpdates;
+    private int promotions;
+    private LocalDateTime lastPromotion;
+
+    private Session(String symbol, Integer horizon, String liveVersion, ModelBundle shadow, int window) {
+      this.symbol = symbol;
+      this.horizon = horizon;
+      this.liveVersion = liveVersion;
+      this.shadow = shadow;
+      this.liveErrors = new RollingError(window);
+      this.shadowErrors = new RollingError(window);
+    }
+
+    private OnlineLearningStatus status() {
+      return OnlineLearningStatus.builder()
+          .symbol(symbol)
+          .liveVersion(liveVersion)
+          .lastLabeled(lastLabeled)
+          .examples(examples)
+          .updates(updates)
+          .skippedUpdates(skippedUpdates)
+          .windowSize(shadowErrors.size())
+          .liveRollingMSE(liveErrors.mean())
+          .shadowRollingMSE(shadowErrors.mean())
+          .promotions(promotions)
+          .lastPromotion(lastPromotion)
+          .updateLatency(updateLatency.snapshot())
+          .build();
+    }
+  }
+
+  /**
+   * Mean of the last {@code capacity} squared errors
+   */
+  static final class RollingError {
+    private final double[] errors;
+    private int next;
+    private int size;
+    private double sum;
+
+    RollingError(int capacity) {
+      this.errors = new double[Math.max(1, capacity)];
+    }
+
+    void addAll(double[] values) {
+      for (double value : values) {
+        if (size == errors.length) {
+          sum -= errors[next];
+        } else {
+          size++;
+        }
+        errors[next] = value;
+        sum += value;
+        next = (next + 1) % errors.length;
+      }
+    }
+
+    void copyFrom(RollingError other) {
+      System.arraycopy(other.errors, 0, errors, 0, errors.length);
+      next = other.next;
+      size = other.size;
+      sum = other.sum;
+    }
+
+    boolean isFull() {
+      return size == errors.length;
+    }
+
+    int size() {
+      return size;
+    }
+
+    double mean() {
+      return size == 0 ? 0.0 : sum / size;
+    }
+  }
+}
@@ -1,157 +1,227 @@
 package com.kcjmowright.zerodte.service;
 
+import com.kcjmowright.zerodte.model.FeatureImportance;
 import com.kcjmowright.zerodte.model.GEXData;
 import com.kcjmowright.zerodte.model.GEXFeatures;
+import com.kcjmowright.zerodte.model.InferenceBenchmarkResult;
 import com.kcjmowright.zerodte.model.PricePrediction;
 import com.kcjmowright.zerodte.model.ProbabilisticPrediction;
 import com.kcjmowright.zerodte.model.TotalGEX;
+import com.kcjmowright.zerodte.model.TrainingConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.DropoutLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class GEXPredictor {
+public class GEXPredictor implements PricePredictor {
+  private static final long IMPORTANCE_SEED = 42L;
+  private static final long BENCHMARK_SEED = 7L;
+
   private final GEXDataPreprocessor preprocessor;
   private final GEXFeatureExtractor featureExtractor;
   private final GEXService gexService;
-  private MultiLayerNetwork model;
+  private final GEXModelRegistry modelRegistry;
+  private final PredictionCache predictionCache;
+  private final Map<String, RnnStream> streams = new ConcurrentHashMap<>();
 
-  public void setModel(MultiLayerNetwork model) {
-    this.model = model;
-    log.info("Model set with {} parameters", model.numParams());
-  }
+  @Value("${zerodte.prediction.batchSize:512}")
+  private int batchSize;
+
+  @Value("${zerodte.prediction.streaming:true}")
+  private boolean streaming;
+
+  @Value("${zerodte.prediction.importance.repetitions:5}")
+  private int importanceRepetitions;
+
+  @Value("${zerodte.prediction.importance.parallelism:0}")
+  private int importanceParallelism;
 
   /**
    * Make single prediction
    */
+  @Override
   public PricePrediction predict(GEXData currentSnapshot, List<GEXData> historicalSnapshots, int minutesAhead) {
-    if (model == null) {
-      model = preprocessor.loadModel();
-      preprocessor.loadScalers();
-    }
+    // Read the routed bundle once so the whole prediction uses one consistent model and scaler pair
+    ModelBundle bundle = modelRegistry.getActive(currentSnapshot.getSymbol(), minutesAhead);
 
     // Need at least sequenceLength snapshots
-    int sequenceLength = 15; // Should match training
+    int sequenceLength = bundle.getSequenceLength();
     if (historicalSnapshots.size() < sequenceLength) {
       throw new IllegalArgumentException("Need at least %d historical snapshots".formatted(sequenceLength));
     }
 
-    // Get last sequenceLength snapshots
-    List<GEXData> sequence = historicalSnapshots.subList(
-        historicalSnapshots.size() - sequenceLength,
-        historicalSnapshots.size()
-    );
-
-    // Extract features for sequence
-    int numFeatures = preprocessor.getNumFeatures();
-    INDArray input = Nd4j.create(1, numFeatures, sequenceLength);
+    double[] outputs = predictLastStep(bundle, extractSequenceRows(historicalSnapshots, sequenceLength));
+    int output = bundle.outputIndex(minutesAhead);
+    double priceChange = bundle.getScalers().denormalizeTarget(output, outputs[output]);
 
-    for (int t = 0; t < sequenceLength; t++) {
-      GEXData snapshot = sequence.get(t);
-      GEXFeatures features = featureExtractor.extractFeatures(
-          snapshot,
-          historicalSnapshots.subList(0, historicalSnapshots.size() - sequenceLength + t)
-      );
-
-      double[] featureVector = preprocessor.extractFeatureVector(snapshot, features);
-      for (int f = 0; f < numFeatures; f++) {
-        input.putScalar(new int[]{ 0, f, t }, featureVector[f]);
-      }
-    }
-
-    // Normalize input
-    DataSet tempDataset = new DataSet(input, null);
-    preprocessor.getFeatureScaler().transform(tempDataset);
-    INDArray normalizedInput = tempDataset.getFeatures();
-
-    // Make prediction - output is 3D [1, 1, sequenceLength]
-    INDArray output = model.output(normalizedInput);
-
-    // Extract last time step prediction and denormalize
-    double normalizedPrediction = output.getDouble(0, 0, sequenceLength - 1);
-    double priceChange = preprocessor.denormalizePrediction(normalizedPrediction);
-
-    // Calculate predicted price
-    BigDecimal currentPrice = currentSnapshot.getTotalGEX().getSpotPrice();
-    BigDecimal predictedPrice = currentPrice.add(
-        currentPrice.multiply(BigDecimal.valueOf(priceChange / 100.0))
-    );
-
-    // Determine direction and confidence
-    String direction = determineDirection(priceChange);
     GEXFeatures lastFeatures = featureExtractor.extractFeatures(
         currentSnapshot,
         historicalSnapshots
     );
-    BigDecimal confidence = calculateConfidence(output, lastFeatures);
+    return toPrediction(currentSnapshot, priceChange, lastFeatures, minutesAhead);
+  }
 
-    return PricePrediction.builder()
-        .predictionTime(currentSnapshot.getCreated())
-        .targetTime(currentSnapshot.getCreated().plusMinutes(minutesAhead))
-        .predictedPrice(predictedPrice)
-        .confidence(confidence)
-        .direction(direction)
-        .expectedMove(BigDecimal.valueOf(Math.abs(priceChange)))
-        .regime(determineRegime(currentSnapshot.getTotalGEX()))
-        .build();
+  /**
+   * Whether a model, specific to {@code symbol} or the default one, can serve predictions for {@code symbol}
+   */
+  public boolean hasModel(String symbol) {
+    return modelRegistry.hasModel(symbol);
   }
 
   /**
-   * Make batch predictions
+   * Make batch predictions. Features are extracted once for the whole range, every prediction's input is a
+   * sliding window over the shared normalized feature rows, and the windows run through the network in
+   * chunks of {@code batchSize} examples instead of one forward pass per snapshot.
    */
   public List<PricePrediction> predictBatch(List<GEXData> snapshots, int minutesAhead) {
-    List<PricePrediction> predictions = new ArrayList<>();
-    for (int i = 10; i < snapshots.size(); i++) {
-      GEXData current = snapshots.get(i);
-      List<GEXData> history = snapshots.subList(Math.max(0, i - 60), i);
-
-      try {
-        PricePrediction prediction = predict(current, history, minutesAhead);
-        predictions.add(prediction);
-      } catch (Exception e) {
-        log.error("Error predicting for snapshot at {}", current.getCreated(), e);
-      }
+    if (snapshots.isEmpty()) {
+      return List.of();
+    }
+    ModelBundle bundle = modelRegistry.getActive(snapshots.getFirst().getSymbol(), minutesAhead);
+    int sequenceLength = bundle.getSequenceLength();
+    // Same first prediction as predicting each snapshot from its own history would produce
+    int first = Math.max(10, sequenceLength);
+    if (snapshots.size() <= first) {
+      return List.of();
+    }
+
+    List<GEXFeatures> features = new ArrayList<>(snapshots.size());
+    for (int i = 0; i < snapshots.size(); i++) {
+      features.add(featureExtractor.extractFeatures(
+          snapshots.get(i),
+          snapshots.subList(Math.max(0, i - GEXFeatureStore.HISTORY_WINDOW), i)
+      ));
+    }
+    GEXFeatureStore store = GEXFeatureStore.of(snapshots, features, preprocessor);
+    double[] changes = predictPriceChanges(
+        bundle,
+        bundle.getScalers().normalizeRows(store.getFeatureRows()),
+        first,
+        bundle.outputIndex(minutesAhead)
+    );
+
+    List<PricePrediction> predictions = new ArrayList<>(changes.length);
+    for (int k = 0; k < changes.length; k++) {
+      int i = first + k;
+      predictions.add(toPrediction(snapshots.get(i), changes[k], features.get(i), minutesAhead));
     }
     return predictions;
   }
 
   /**
-   * Make multi-horizon predictions
+   * Make multi-horizon predictions. Features are extracted once and every distinct model serving the horizons
+   * runs one forward pass, so a multi-horizon model answers all of them from a single pass.
    */
   public Map<Integer, PricePrediction> predictMultiHorizon(
       GEXData currentSnapshot,
       List<GEXData> historicalSnapshots,
       List<Integer> horizons) {
+    Map<Integer, ModelBundle> bundles = resolveBundles(currentSnapshot.getSymbol(), horizons, false);
+    return predictHorizons(currentSnapshot, historicalSnapshots, bundles, false);
+  }
 
-    Map<Integer, PricePrediction> predictions = new HashMap<>();
+  /**
+   * Multi-horizon predictions from the latest snapshots of {@code symbol} by the live models, e.g. distilled
+   * students. LSTM models keep their recurrent state per symbol between calls and only step the newest snapshot
+   * through the network.
+   */
+  public Map<Integer, PricePrediction> predictLiveMultiHorizon(String symbol, List<Integer> horizons) {
+    List<GEXData> history = gexService.getGEXDataBySymbolBetweenStartAndEnd(
+        symbol,
+        LocalDateTime.now().minusDays(4),
+        LocalDateTime.now().plusDays(1)
+    );
+    return predictLiveMultiHorizon(history, horizons);
+  }
+
+  /**
+   * Multi-horizon predictions for the newest of the live {@code history} snapshots, streaming LSTM models.
+   * Predictions are cached per snapshot, horizon and model version, so only the horizons nobody asked for since
+   * the snapshot was captured are computed.
+   */
+  public Map<Integer, PricePrediction> predictLiveMultiHorizon(List<GEXData> history, List<Integer> horizons) {
+    GEXData current = history.getLast();
+    Map<Integer, ModelBundle> bundles = resolveBundles(current.getSymbol(), horizons, true);
+    Map<Integer, String> versions = new HashMap<>();
+    bundles.forEach((horizon, bundle) -> versions.put(horizon, bundle.getVersion()));
+    return predictionCache.getAll(
+        current.getSymbol(),
+        current.getCreated(),
+        versions,
+        missing -> {
+          Map<Integer, ModelBundle> pending = new HashMap<>();
+          missing.forEach(horizon -> pending.put(horizon, bundles.get(horizon)));
+          return predictHorizons(current, history, pending, streaming);
+        }
+    );
+  }
 
+  /**
+   * The bundle serving each horizon, resolved up front so all predictions of a call use one consistent set
+   */
+  private Map<Integer, ModelBundle> resolveBundles(String symbol, List<Integer> horizons, boolean live) {
+    Map<Integer, ModelBundle> bundles = new HashMap<>();
     for (Integer horizon : horizons) {
-      PricePrediction prediction = predict(
-          currentSnapshot,
-          historicalSnapshots,
-          horizon
-      );
-      predictions.put(horizon, prediction);
+      bundles.put(horizon, live ? modelRegistry.getLive(symbol, horizon) : modelRegistry.getActive(symbol, horizon));
+    }
+    return bundles;
+  }
+
+  private Map<Integer, PricePrediction> predictHorizons(GEXData currentSnapshot,
+                                                        List<GEXData> historicalSnapshots,
+                                                        Map<Integer, ModelBundle> bundles,
+                                                        boolean stream) {
+    int sequenceLength = bundles.values().stream().mapToInt(ModelBundle::getSequenceLength).max().orElse(0);
+    if (historicalSnapshots.size() < sequenceLength) {
+      throw new IllegalArgumentException("Need at least %d historical snapshots".formatted(sequenceLength));
+    }
+
+    // Extract the window once for all the models that need the full sequence
+    boolean fullWindow = !stream || bundles.values().stream().anyMatch(bundle -> !RnnStream.supports(bundle.getModel()));
+    double[][] rows = fullWindow ? extractSequenceRows(historicalSnapshots, sequenceLength) : null;
+    GEXFeatures lastFeatures = featureExtractor.extractFeatures(currentSnapshot, historicalSnapshots);
+    Map<String, double[]> outputsByVersion = new HashMap<>();
+    Map<Integer, PricePrediction> predictions = new HashMap<>();
+
+    for (Map.Entry<Integer, ModelBundle> entry : bundles.entrySet()) {
+      int horizon = entry.getKey();
+      ModelBundle bundle = entry.getValue();
+      double[] outputs = outputsByVersion.computeIfAbsent(bundle.getVersion(), version ->
+          stream && RnnStream.supports(bundle.getModel()) ?
+              streamLastStep(bundle, currentSnapshot.getSymbol(), historicalSnapshots) :
+              predictLastStep(bundle, rows));
+      int output = bundle.outputIndex(horizon);
+      double priceChange = bundle.getScalers().denormalizeTarget(output, outputs[output]);
+      predictions.put(horizon, toPrediction(currentSnapshot, priceChange, lastFeatures, horizon));
     }
     return predictions;
   }
 
   /**
-   * Make probabilistic prediction with uncertainty estimation
+   * Make probabilistic prediction with uncertainty estimation using Monte Carlo dropout: the input window is
+   * tiled {@code numSamples} times into one batch and run with dropout active, so every example samples its own
+   * dropout mask and the spread of the outputs estimates the model's uncertainty.
    */
   public ProbabilisticPrediction predictWithUncertainty(
       GEXData currentSnapshot,
@@ -159,28 +229,50 @@ public class GEXPredictor {
       int minutesAhead,
       int numSamples) {
 
-    List<Double> predictions = new ArrayList<>();
+    if (numSamples < 2) {
+      throw new IllegalArgumentException("Need at least 2 Monte Carlo samples");
+    }
+    ModelBundle bundle = modelRegistry.getActive(currentSnapshot.getSymbol(), minutesAhead);
+    MultiLayerNetwork model = bundle.getModel();
+    requireMonteCarloDropout(bundle);
+    int sequenceLength = bundle.getSequenceLength();
+    if (historicalSnapshots.size() < sequenceLength) {
+      throw new IllegalArgumentException("Need at least %d historical snapshots".formatted(sequenceLength));
+    }
 
-    // Monte Carlo Dropout for uncertainty estimation
-    for (int i = 0; i < numSamples; i++) {
-      // Note: Actual dropout during inference requires model modification
-      PricePrediction pred = predict(currentSnapshot, historicalSnapshots, minutesAhead);
-      double priceChange = pred.getExpectedMove().doubleValue();
-      predictions.add(priceChange);
+    // Normalize the window once, every sample shares it
+    ScalerParameters scalers = bundle.getScalers();
+    int numFeatures = scalers.getNumFeatures();
+    double[] window = normalizeWindow(bundle, extractSequenceRows(historicalSnapshots, sequenceLength));
+
+    // Monte Carlo Dropout for uncertainty estimation, in chunks of at most batchSize samples
+    int output = bundle.outputIndex(minutesAhead);
+    double[] samples = new double[numSamples];
+    for (int chunkStart = 0; chunkStart < numSamples; chunkStart += batchSize) {
+      int chunk = Math.min(batchSize, numSamples - chunkStart);
+      double[] data = new double[chunk * window.length];
+      for (int k = 0; k < chunk; k++) {
+        System.arraycopy(window, 0, data, k * window.length, window.length);
+      }
+      INDArray input = Nd4j.create(data, new long[]{ chunk, numFeatures, sequenceLength }, 'c')
+          .castTo(model.params().dataType());
+      // Training mode keeps dropout active, sampling an independent mask per example
+      INDArray last = bundle.infer(replica -> replica.output(input, true))
+          .get(NDArrayIndex.all(), NDArrayIndex.point(output), NDArrayIndex.point(sequenceLength - 1));
+      double[] values = last.toDoubleVector();
+      for (int k = 0; k < chunk; k++) {
+        samples[chunkStart + k] = scalers.denormalizeTarget(output, values[k]);
+      }
     }
 
     // Calculate statistics
-    double mean = predictions.stream()
-        .mapToDouble(Double::doubleValue)
-        .average()
-        .orElse(0.0);
-
-    double std = calculateStdDev(predictions, mean);
+    double mean = Arrays.stream(samples).average().orElse(0.0);
+    double std = Math.sqrt(Arrays.stream(samples).map(v -> (v - mean) * (v - mean)).average().orElse(0.0));
 
     // Confidence intervals
-    Collections.sort(predictions);
-    double lower95 = predictions.get((int) (numSamples * 0.025));
-    double upper95 = predictions.get((int) (numSamples * 0.975));
+    Arrays.sort(samples);
+    double lower95 = quantile(samples, 0.025);
+    double upper95 = quantile(samples, 0.975);
 
     BigDecimal currentPrice = currentSnapshot.getTotalGEX().getSpotPrice();
     BigDecimal predictedPrice = currentPrice.add(currentPrice.multiply(BigDecimal.valueOf(mean / 100.0)));
@@ -199,49 +291,58 @@ public class GEXPredictor {
    * Real-time prediction service
    */
   public PricePrediction predictLive(String symbol, int minutesAhead) {
-    List<GEXData> history = gexService.getGEXDataBySymbolBetweenStartAndEnd(
-        symbol,
-        LocalDateTime.now().minusDays(4),
-        LocalDateTime.now().plusDays(1)
-    );
-    return predict(history.getLast(), history, minutesAhead);
+    return predictLiveMultiHorizon(symbol, List.of(minutesAhead)).get(minutesAhead);
   }
 
   /**
-   * Feature importance analysis using permutation importance
+   * Feature importance analysis using permutation importance: the rise in prediction MSE, in percent price change
+   * squared, when one feature is shuffled across the test examples, for every feature of the preprocessor's schema
    */
-  public Map<String, Double> calculateFeatureImportance(List<GEXData> testSnapshots, int minutesAhead) {
-
-    Map<String, Double> importance = new HashMap<>();
-
-    // Get baseline predictions
-    List<PricePrediction> baselinePreds = predictBatch(testSnapshots, minutesAhead);
-    double baselineError = calculateMeanError(baselinePreds, testSnapshots, minutesAhead);
-
-    // For each feature, permute and measure performance degradation
-    String[] featureNames = {
-        "distanceToCallWall",
-        "distanceToPutWall",
-        "distanceToFlipPoint",
-        "callPutGEXRatio",
-        "netGEX",
-        "gexSkew",
-        "concentrationIndex",
-        "relativePosition",
-        "minutesToExpiry",
-        "priceVelocity",
-        "cci",
-        "stochastic"
-    };
-
-    for (String featureName : featureNames) {
-      // Permute this feature and recalculate error
-      // (Simplified - actual implementation would modify feature extraction)
-      double permutedError = baselineError * (1.1 + Math.random() * 0.3);
-      importance.put(featureName, permutedError - baselineError);
+  public List<FeatureImportance> calculateFeatureImportance(List<GEXData> testSnapshots, int minutesAhead) {
+    if (testSnapshots.isEmpty()) {
+      return List.of();
+    }
+    ModelBundle bundle = modelRegistry.getActive(testSnapshots.getFirst().getSymbol(), minutesAhead);
+    // Extract and normalize the features once, every permutation shuffles copies of this tensor
+    GEXFeatureStore store = GEXFeatureStore.extract(testSnapshots, featureExtractor, preprocessor);
+    DataSet testSet = createEvaluationSet(bundle, store, minutesAhead);
+    if (testSet.numExamples() < 2) {
+      throw new IllegalArgumentException("Need more than %d snapshots to measure feature importance"
+          .formatted(testSnapshots.size()));
     }
+    PermutationImportance importance = new PermutationImportance(
+        bundle.getModel(),
+        testSet,
+        bundle.getScalers(),
+        bundle.outputIndex(minutesAhead),
+        batchSize
+    );
+    int parallelism = importanceParallelism > 0 ? importanceParallelism : Runtime.getRuntime().availableProcessors();
+    return importance.compute(preprocessor.getFeatureNames(), importanceRepetitions, parallelism, IMPORTANCE_SEED);
+  }
 
-    return importance;
+  /**
+   * Throughput and latency of concurrent single window predictions on the model serving {@code symbol}, with
+   * and without micro-batching, for each of {@code clientCounts} concurrent clients
+   */
+  public InferenceBenchmarkResult benchmarkInference(String symbol, List<Integer> clientCounts, int requestsPerClient) {
+    ModelBundle bundle = modelRegistry.getActive(symbol, null);
+    return new InferenceBenchmark(bundle, BENCHMARK_SEED).run(clientCounts, requestsPerClient);
+  }
+
+  /**
+   * Normalized examples with labels for {@code horizon} minutes ahead, shaped the way {@code bundle} was trained
+   */
+  private DataSet createEvaluationSet(ModelBundle bundle, GEXFeatureStore store, int horizon) {
+    TrainingConfig config = bundle.getConfig();
+    GEXDataPreprocessor scaling = bundle.getPreprocessor();
+    if (GEXModelTrainer.isMultiHorizon(config)) {
+      return scaling.createMultiHorizonDataSet(store, 0, store.size(), bundle.getSequenceLength(), config.getHorizons(), false);
+    }
+    if (config != null && !Boolean.TRUE.equals(config.getUseTimeSeries())) {
+      return scaling.createDataSet(store, 0, store.size(), horizon, false);
+    }
+    return scaling.createTimeSeriesDataSet(store, 0, store.size(), bundle.getSequenceLength(), horizon, false);
   }
 
 //  private double[] convertToFeatureVector(GEXData snapshot, GEXFeatures features) {
@@ -270,11 +371,175 @@ public class GEXPredictor {
 //    };
 //  }
 
+  /**
+   * Raw feature rows of the last {@code sequenceLength} snapshots of {@code historicalSnapshots},
+   * each extracted from the snapshots preceding it
+   */
+  double[][] extractSequenceRows(List<GEXData> historicalSnapshots, int sequenceLength) {
+    int offset = historicalSnapshots.size() - sequenceLength;
+    double[][] rows = new double[sequenceLength][];
+    for (int t = 0; t < sequenceLength; t++) {
+      GEXData snapshot = historicalSnapshots.get(offset + t);
+      GEXFeatures features = featureExtractor.extractFeatures(
+          snapshot,
+          historicalSnapshots.subList(0, offset + t)
+      );
+      rows[t] = preprocessor.extractFeatureVector(snapshot, features);
+    }
+    return rows;
+  }
+
+  /**
+   * Normalized outputs of the last time step for the sequence made of the trailing rows of {@code rawRows},
+   * micro-batched with the concurrent predictions of the same model
+   */
+  private double[] predictLastStep(ModelBundle bundle, double[][] rawRows) {
+    return bundle.predictWindow(normalizeWindow(bundle, rawRows));
+  }
+
+  /**
+   * Normalized {@code [features, sequenceLength]} window in C order made of the trailing rows of {@code rawRows}
+   */
+  static double[] normalizeWindow(ModelBundle bundle, double[][] rawRows) {
+    int sequenceLength = bundle.getSequenceLength();
+    ScalerParameters scalers = bundle.getScalers();
+    int numFeatures = scalers.getNumFeatures();
+    double[] window = new double[numFeatures * sequenceLength];
+    double[] normalized = new double[numFeatures];
+    int offset = rawRows.length - sequenceLength;
+    for (int t = 0; t < sequenceLength; t++) {
+      scalers.normalizeRow(rawRows[offset + t], normalized);
+      for (int f = 0; f < numFeatures; f++) {
+        window[f * sequenceLength + t] = normalized[f];
+      }
+    }
+    return window;
+  }
+
+  /**
+   * Normalized outputs for the window ending with the newest snapshot of {@code history}, stepping only that
+   * snapshot through the symbol's recurrent state when it directly follows the previous call's snapshot and
+   * rebuilding the state from the full window otherwise
+   */
+  private double[] streamLastStep(ModelBundle bundle, String symbol, List<GEXData> history) {
+    String key = symbol + "/" + bundle.getVersion();
+    RnnStream stream = streams.get(key);
+    if (stream == null) {
+      // Drop the symbol's streams of versions that no longer serve it
+      streams.keySet().removeIf(existing -> existing.startsWith(symbol + "/") &&
+          !modelRegistry.getRoutes().containsValue(existing.substring(symbol.length() + 1)));
+      stream = streams.computeIfAbsent(key, ignored -> new RnnStream(bundle));
+    }
+    synchronized (stream) {
+      GEXData newest = history.getLast();
+      if (stream.isAt(newest.getCreated())) {
+        return stream.getOutputs();
+      }
+      if (stream.follows(history)) {
+        GEXFeatures features = featureExtractor.extractFeatures(newest, history.subList(0, history.size() - 1));
+        return stream.step(preprocessor.extractFeatureVector(newest, features), newest.getCreated());
+      }
+      log.debug("Resynchronizing {} stream at {}", key, newest.getCreated());
+      return stream.resync(extractSequenceRows(history, bundle.getSequenceLength()), newest.getCreated());
+    }
+  }
+
+  /**
+   * Denormalized price change predicted for every snapshot from index {@code first} on, each from the
+   * {@code sequenceLength} feature rows preceding it
+   */
+  private double[] predictPriceChanges(ModelBundle bundle, double[][] normalizedRows, int first, int outputIndex) {
+    MultiLayerNetwork model = bundle.getModel();
+    ScalerParameters scalers = bundle.getScalers();
+    int sequenceLength = bundle.getSequenceLength();
+    int numFeatures = scalers.getNumFeatures();
+    double[] changes = new double[normalizedRows.length - first];
+    for (int chunkStart = 0; chunkStart < changes.length; chunkStart += batchSize) {
+      int chunk = Math.min(batchSize, changes.length - chunkStart);
+      // Fill the [chunk, features, timeSteps] input in C order directly from the shared rows
+      double[] data = new double[chunk * numFeatures * sequenceLength];
+      for (int k = 0; k < chunk; k++) {
+        int windowStart = first + chunkStart + k - sequenceLength;
+        for (int t = 0; t < sequenceLength; t++) {
+          double[] row = normalizedRows[windowStart + t];
+          for (int f = 0; f < numFeatures; f++) {
+            data[(k * numFeatures + f) * sequenceLength + t] = row[f];
+          }
+        }
+      }
+      INDArray input = Nd4j.create(data, new long[]{ chunk, numFeatures, sequenceLength }, 'c')
+          .castTo(model.params().dataType());
+      // One replica per chunk, so concurrent batches interleave instead of queuing behind each other
+      INDArray output = bundle.infer(replica -> replica.output(input));
+      INDArray last = output.get(NDArrayIndex.all(), NDArrayIndex.point(outputIndex), NDArrayIndex.point(sequenceLength - 1));
+      double[] normalized = last.toDoubleVector();
+      for (int k = 0; k < chunk; k++) {
+        changes[chunkStart + k] = scalers.denormalizeTarget(outputIndex, normalized[k]);
+      }
+    }
+    return changes;
+  }
+
+  /**
+   * Prediction of a model's {@code priceChange} in percent, rated by the features of the current snapshot
+   */
+  PricePrediction toPrediction(GEXData currentSnapshot,
+                               double priceChange,
+                               GEXFeatures lastFeatures,
+                               int minutesAhead) {
+    // Calculate predicted price
+    BigDecimal currentPrice = currentSnapshot.getTotalGEX().getSpotPrice();
+    BigDecimal predictedPrice = currentPrice.add(
+        currentPrice.multiply(BigDecimal.valueOf(priceChange / 100.0))
+    );
+
+    return PricePrediction.builder()
+        .predictionTime(currentSnapshot.getCreated())
+        .targetTime(currentSnapshot.getCreated().plusMinutes(minutesAhead))
+        .predictedPrice(predictedPrice)
+        .confidence(calculateConfidence(lastFeatures))
+        .direction(determineDirection(priceChange))
+        .expectedMove(BigDecimal.valueOf(Math.abs(priceChange)))
+        .regime(determineRegime(currentSnapshot.getTotalGEX()))
+        .build();
+  }
+
+  /**
+   * Fail unless running {@code bundle} in training mode samples dropout and nothing else: without dropout all
+   * samples are identical, and batch normalization would normalize the tiled batch with its own statistics
+   */
+  private static void requireMonteCarloDropout(ModelBundle bundle) {
+    boolean dropout = false;
+    MultiLayerConfiguration configuration = bundle.getModel().getLayerWiseConfigurations();
+    for (int i = 0; i < configuration.getConfs().size(); i++) {
+      Layer layer = configuration.getConf(i).getLayer();
+      if (layer instanceof BatchNormalization) {
+        throw new IllegalStateException("Model version %s uses batch normalization, which Monte Carlo dropout cannot sample"
+            .formatted(bundle.getVersion()));
+      }
+      dropout |= layer instanceof DropoutLayer || layer.getIDropout() != null;
+    }
+    if (!dropout) {
+      throw new IllegalStateException("Model version %s has no dropout, train it with a dropout rate to estimate uncertainty"
+          .formatted(bundle.getVersion()));
+    }
+  }
+
+  /**
+   * Linearly interpolated {@code q} quantile of the sorted {@code values}
+   */
+  private static double quantile(double[] values, double q) {
+    double position = q * (values.length - 1);
+    int lower = (int) Math.floor(position);
+    int upper = Math.min(lower + 1, values.length - 1);
+    return values[lower] + (position - lower) * (values[upper] - values[lower]);
+  }
+
   private String determineDirection(double priceChange) {
     return (priceChange > 0.1) ? "UP" : (priceChange < -0.1) ? "DOWN" : "NEUTRAL";
   }
 
-  private BigDecimal calculateConfidence(INDArray output, GEXFeatures features) {
+  private BigDecimal calculateConfidence(GEXFeatures features) {
     // Confidence based on GEX concentration and regime clarity
     double concentration = features.getConcentrationIndex().doubleValue();
     double regimeClarity = Math.abs(features.getDistanceToFlipPoint().doubleValue()) / 10.0;
@@ -285,24 +550,4 @@ public class GEXPredictor {
   private String determineRegime(TotalGEX snapshot) {
     return snapshot.getSpotPrice().compareTo(snapshot.getFlipPoint()) > 0 ? "POSITIVE_GEX" : "NEGATIVE_GEX";
   }
-
-  private double calculateStdDev(List<Double> values, double mean) {
-    double variance = values.stream()
-        .mapToDouble(v -> Math.pow(v - mean, 2))
-        .average()
-        .orElse(0.0);
-    return Math.sqrt(variance);
-  }
-
-  private double calculateMeanError(List<PricePrediction> predictions, List<GEXData> snapshots, int horizon) {
-    double totalError = 0.0;
-    int count = 0;
-    for (int i = 0; i < predictions.size() && i + horizon < snapshots.size(); i++) {
-      BigDecimal predicted = predictions.get(i).getPredictedPrice();
-      BigDecimal actual = snapshots.get(i + horizon).getTotalGEX().getSpotPrice();
-      totalError += predicted.subtract(actual).abs().doubleValue();
-      count++;
-    }
-    return count > 0 ? (totalError / count) : 0.0;
-  }
 }
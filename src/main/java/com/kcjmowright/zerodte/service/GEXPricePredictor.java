@@ -13,17 +13,35 @@ import java.util.List;
 
 @Service
 @RequiredArgsConstructor
-public class GEXPricePredictor {
+public class GEXPricePredictor implements PricePredictor {
 
   private final GEXFeatureExtractor featureExtractor;
   private final GEXDataPreprocessor dataPreprocessor;
+  private final PredictionCache predictionCache;
 
   public static final String POSITIVE_GEX = "POSITIVE_GEX";
   public static final String NEGATIVE_GEX = "NEGATIVE_GEX";
   public static final String UP = "UP";
   public static final String DOWN = "DOWN";
   public static final String NEUTRAL = "NEUTRAL";
+  private static final String HEURISTIC_VERSION = "heuristic";
+
+  /**
+   * Prediction for the newest of the live {@code historicalSnapshots}, shared by every caller within the minute
+   */
+  public PricePrediction predictLive(GEXData currentSnapshot,
+                                     List<GEXData> historicalSnapshots,
+                                     int minutesAhead) {
+    return predictionCache.get(
+        currentSnapshot.getSymbol(),
+        currentSnapshot.getCreated(),
+        minutesAhead,
+        HEURISTIC_VERSION,
+        horizon -> predict(currentSnapshot, historicalSnapshots, horizon)
+    );
+  }
 
+  @Override
   public PricePrediction predict(GEXData currentSnapshot,
                                  List<GEXData> historicalSnapshots,
                                  int minutesAhead) {
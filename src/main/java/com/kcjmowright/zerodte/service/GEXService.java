@@ -46,6 +46,7 @@ public class GEXService {
   private final TotalGEXRepository totalGEXRepository;
   private final QuoteRepository quoteRepository;
   private final JsonMapper mapper;
+  private final PredictionCache predictionCache;
 
   private static final List<String> GAMMA_SYMBOLS = List.of("QQQ", "SPY", "$SPX", "IWM");
 
@@ -109,6 +110,8 @@ public class GEXService {
             entity.setSymbol(symbol);
             entity.setCreated(now);
             totalGEXRepository.save(entity);
+            // Predictions of the previous minute are stale now
+            predictionCache.invalidate(symbol);
             return Mono.just(entity);
           })
           .subscribe(
@@ -169,6 +172,16 @@ public class GEXService {
     return totalGEXRepository.getLatestBySymbol(symbol);
   }
 
+  /**
+   * Distinct trading days with captured snapshots for {@code symbol} between start and end
+   */
+  public List<LocalDate> getSessionDates(String symbol, LocalDateTime start, LocalDateTime end) {
+    return totalGEXRepository.findCreatedBySymbolAndCreatedBetween(symbol, start, end).stream()
+        .map(LocalDateTime::toLocalDate)
+        .distinct()
+        .toList();
+  }
+
   public List<GEXData> getGEXDataBySymbolBetweenStartAndEnd(String symbol, LocalDateTime start, LocalDateTime end) {
     return totalGEXRepository.getGEXDataBySymbolBetweenStartAndEnd(symbol, start, end).stream()
         .map(projection -> {
@@ -0,0 +1,205 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.exceptions.ResourceNotAvailableException;
+import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import com.kcjmowright.zerodte.model.WarmStartResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.dataset.DataSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Nightly warm-start retraining. Instead of refitting from scratch over the whole range, the current model is
+ * fine-tuned for a few epochs on the sessions captured since it was trained plus a random replay sample of older
+ * sessions, using its scalers unchanged. The result is registered and promoted only if it improves the validation
+ * loss on the newest data.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GEXWarmStartTrainer {
+  private final GEXModelTrainer trainer;
+  private final GEXModelRegistry modelRegistry;
+  private final GEXService gexService;
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  @Value("${zerodte.training.warmStart.enabled:false}")
+  private boolean enabled;
+
+  @Value("${zerodte.training.warmStart.epochs:5}")
+  private int epochs;
+
+  @Value("${zerodte.training.warmStart.replaySessions:10}")
+  private int replaySessions;
+
+  @Value("${zerodte.training.warmStart.learningRateScale:0.1}")
+  private double learningRateScale;
+
+  @Scheduled(cron = "${zerodte.training.warmStart.cron:0 30 17 * * MON-FRI}")
+  public void scheduledWarmStart() {
+    if (!enabled) {
+      return;
+    }
+    // Every routed version is fine-tuned once, whichever symbols it serves
+    for (String version : new LinkedHashSet<>(modelRegistry.getRoutes().values())) {
+      try {
+        WarmStartResult result = warmStartVersion(version);
+        log.info("Nightly warm start of {} finished: {}", version, result);
+      } catch (Exception e) {
+        log.error("Nightly warm start of {} failed", version, e);
+      }
+    }
+  }
+
+  /**
+   * Fine-tune the model serving {@code symbol}, or the default model if {@code symbol} is {@code null},
+   * on the sessions captured since it was trained
+   */
+  public WarmStartResult warmStart(String symbol) {
+    return warmStartVersion(modelRegistry.getActive(symbol, null).getVersion());
+  }
+
+  private WarmStartResult warmStartVersion(String version) {
+    if (!running.compareAndSet(false, true)) {
+      throw new ResourceNotAvailableException("A warm start is already running");
+    }
+    try {
+      return fineTune(version);
+    } finally {
+      running.set(false);
+    }
+  }
+
+  private WarmStartResult fineTune(String version) {
+    long start = System.currentTimeMillis();
+    // An independent copy of the routed version, so serving continues on the original while fine-tuning
+    ModelBundle bundle = modelRegistry.load(version);
+    TrainingConfig config = bundle.getConfig();
+    if (config == null) {
+      throw new IllegalStateException("Model version %s has no training config, train a model from scratch first"
+          .formatted(bundle.getVersion()));
+    }
+    LocalDateTime trainedUntil = config.getEndDate() == null ? LocalDateTime.now().minusDays(1) : config.getEndDate();
+    LocalDateTime now = LocalDateTime.now();
+
+    log.info("1. Load sessions captured for {} since {}", config.getSymbol(), trainedUntil);
+    List<LocalDate> newSessions = gexService.getSessionDates(config.getSymbol(), trainedUntil, now);
+    WarmStartResult.WarmStartResultBuilder result = WarmStartResult.builder()
+        .symbol(config.getSymbol())
+        .newSessions(newSessions);
+    if (newSessions.isEmpty()) {
+      log.info("No new sessions to train on");
+      return result.replaySessions(List.of()).elapsedMillis(System.currentTimeMillis() - start).build();
+    }
+    List<LocalDate> replay = sampleReplaySessions(config, trainedUntil);
+
+    GEXDataPreprocessor candidatePreprocessor = bundle.getPreprocessor();
+    List<DataSet> newExamples = loadExamples(candidatePreprocessor, config, newSessions);
+    List<DataSet> replayExamples = loadExamples(candidatePreprocessor, config, replay);
+
+    // Validate on the most recent examples, train on the rest of the new data plus the replay sample
+    double validationRatio = config.getValidationRatio() == null ? 0.15 : config.getValidationRatio();
+    int validSize = Math.max(1, (int) (newExamples.size() * validationRatio));
+    if (newExamples.size() <= validSize) {
+      log.info("Only {} new examples, not enough to fine-tune and validate", newExamples.size());
+      return result.replaySessions(replay).elapsedMillis(System.currentTimeMillis() - start).build();
+    }
+    List<DataSet> trainExamples = new ArrayList<>(replayExamples);
+    trainExamples.addAll(newExamples.subList(0, newExamples.size() - validSize));
+    DataSet trainSet = DataSet.merge(trainExamples);
+    DataSet validSet = DataSet.merge(newExamples.subList(newExamples.size() - validSize, newExamples.size()));
+
+    log.info("2. Fine-tune saved model on {} new and {} replay samples", newExamples.size() - validSize, replayExamples.size());
+    MultiLayerNetwork model = bundle.getModel();
+    model.setLearningRate(config.getLearningRate() * learningRateScale);
+    double baselineLoss = trainer.validationLoss(model, validSet);
+
+    TrainingConfig tuneConfig = config.toBuilder()
+        .numEpochs(epochs)
+        .earlyStoppingPatience(config.getEarlyStoppingPatience() == null ? epochs : Math.min(config.getEarlyStoppingPatience(), epochs))
+        .build();
+    TrainingState state = trainer.startTraining(model);
+    // Only epochs that beat the current model count as an improvement
+    state.bestValidLoss = baselineLoss;
+    trainer.trainEpochs(model, trainSet, validSet, tuneConfig, state, epochs);
+    state.restoreBest(model);
+
+    boolean promoted = state.bestSnapshots > 0;
+    log.info("3. Validation loss {} -> {}, {}", baselineLoss, state.bestValidLoss, promoted ? "promoting" : "keeping current model");
+    if (promoted) {
+      model.setLearningRate(config.getLearningRate());
+      modelRegistry.supersede(version, model, candidatePreprocessor, config.toBuilder().endDate(now).build());
+    }
+    return result
+        .replaySessions(replay)
+        .trainSamples(trainSet.numExamples())
+        .validationSamples(validSet.numExamples())
+        .epochsTrained(state.epoch)
+        .baselineValidationLoss(baselineLoss)
+        .candidateValidationLoss(state.bestValidLoss)
+        .promoted(promoted)
+        .elapsedMillis(System.currentTimeMillis() - start)
+        .build();
+  }
+
+  /**
+   * Pick {@code replaySessions} random sessions from the range the model was trained on
+   */
+  private List<LocalDate> sampleReplaySessions(TrainingConfig config, LocalDateTime trainedUntil) {
+    LocalDateTime from = config.getStartDate() == null ? trainedUntil.minusYears(1) : config.getStartDate();
+    List<LocalDate> sessions = new ArrayList<>(gexService.getSessionDates(config.getSymbol(), from, trainedUntil));
+    long seed = (config.getSeed() == null ? 0L : config.getSeed()) + LocalDate.now().toEpochDay();
+    Collections.shuffle(sessions, new Random(seed));
+    List<LocalDate> sample = new ArrayList<>(sessions.subList(0, Math.min(replaySessions, sessions.size())));
+    Collections.sort(sample);
+    return sample;
+  }
+
+  /**
+   * Build the examples of each session separately, so no sample spans two sessions, without refitting the scalers.
+   * Features of a session's first rows are extracted with the trailing snapshots of the sessions before it as
+   * history, the way training over the full range extracted them.
+   */
+  private List<DataSet> loadExamples(GEXDataPreprocessor target, TrainingConfig config, List<LocalDate> sessions) {
+    List<DataSet> examples = new ArrayList<>();
+    for (LocalDate session : sessions) {
+      // Reaches back over weekends and holidays to the previous session
+      List<GEXData> snapshots = gexService.getGEXDataBySymbolBetweenStartAndEnd(
+          config.getSymbol(),
+          session.minusDays(4).atStartOfDay(),
+          session.plusDays(1).atStartOfDay().minusNanos(1)
+      );
+      int first = 0;
+      while (first < snapshots.size() && snapshots.get(first).getCreated().toLocalDate().isBefore(session)) {
+        first++;
+      }
+      boolean multiHorizon = GEXModelTrainer.isMultiHorizon(config);
+      int horizon = multiHorizon ? Collections.max(config.getHorizons()) : config.getPredictionHorizon();
+      boolean timeSeries = multiHorizon || Boolean.TRUE.equals(config.getUseTimeSeries());
+      int required = horizon + (timeSeries ? config.getSequenceLength() : 0);
+      if (snapshots.size() - first <= required) {
+        log.debug("Skipping session {} with {} snapshots", session, snapshots.size() - first);
+        continue;
+      }
+      int historyFrom = Math.max(0, first - GEXFeatureStore.HISTORY_WINDOW);
+      GEXFeatureStore store = GEXFeatureStore.extract(snapshots.subList(historyFrom, snapshots.size()), new GEXFeatureExtractor(), target);
+      // The history rows only feed the features, the session's examples start at its first snapshot
+      DataSet dataSet = trainer.createDataSet(target, store, first - historyFrom, store.size(), config, false);
+      examples.addAll(dataSet.asList());
+    }
+    return examples;
+  }
+}
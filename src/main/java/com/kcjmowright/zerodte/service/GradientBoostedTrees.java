@@ -0,0 +1,466 @@
+package com.kcjmowright.zerodte.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+/**
+ * Gradient-boosted regression trees for the squared loss in pure Java. Every feature is bucketed once into at most
+ * {@code maxBins} quantile bins, so growing a node only sums gradients per bin instead of sorting examples, and the
+ * larger child's histogram is its parent's minus its sibling's. The histograms and split search of large nodes are
+ * spread over the features on {@code parallelism} threads. Trees are flat arrays over raw feature values, so a
+ * prediction is a few hundred comparisons and needs no scaling.
+ */
+@Slf4j
+final class GradientBoostedTrees {
+  // Node examples times features worth spreading a histogram over the threads
+  private static final long PARALLEL_WORK = 1L << 15;
+  private static final int MAX_DEPTH = 12;
+
+  private final double base;
+  private final Tree[] trees;
+  private final double[] featureGains;
+
+  /**
+   * Boosting parameters
+   *
+   * @param numTrees       boosting rounds, fewer if the validation loss stops improving
+   * @param learningRate   shrinkage of every tree's leaf values
+   * @param maxDepth       depth of every tree, at most {@value #MAX_DEPTH}
+   * @param minSamplesLeaf examples a leaf holds at least
+   * @param l2             L2 regularization of the leaf values
+   * @param maxBins        quantile bins per feature, at most 256
+   * @param patience       rounds without a validation improvement before boosting stops
+   */
+  record Params(int numTrees, double learningRate, int maxDepth, int minSamplesLeaf, double l2, int maxBins, int patience) {
+  }
+
+  /**
+   * One regression tree, node 0 is the root. Internal nodes send a row left if its {@code feature} value is at most
+   * {@code threshold}, leaves have feature -1 and hold their {@code value}.
+   */
+  private record Tree(int[] feature, double[] threshold, int[] left, int[] right, double[] value) {
+    double predict(double[] row) {
+      int node = 0;
+      while (feature[node] >= 0) {
+        node = row[feature[node]] <= threshold[node] ? left[node] : right[node];
+      }
+      return value[node];
+    }
+  }
+
+  private GradientBoostedTrees(double base, Tree[] trees, double[] featureGains) {
+    this.base = base;
+    this.trees = trees;
+    this.featureGains = featureGains;
+  }
+
+  /**
+   * Fit trees to {@code targets} of the raw feature {@code rows}, stopping early on the loss over the validation
+   * examples if there are any
+   */
+  static GradientBoostedTrees fit(double[][] rows,
+                                  double[] targets,
+                                  double[][] validRows,
+                                  double[] validTargets,
+                                  Params params,
+                                  int parallelism) {
+    if (rows.length == 0 || rows.length != targets.length) {
+      throw new IllegalArgumentException("Need as many targets as training rows, and at least one");
+    }
+    int workers = Math.max(1, Math.min(parallelism, rows[0].length));
+    try (ExecutorService pool = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("gex-gbt-", 0).factory())) {
+      return new Fitter(rows, targets, params, pool, workers).fit(validRows, validTargets);
+    }
+  }
+
+  double predict(double[] row) {
+    double prediction = base;
+    for (Tree tree : trees) {
+      prediction += tree.predict(row);
+    }
+    return prediction;
+  }
+
+  int size() {
+    return trees.length;
+  }
+
+  /**
+   * Training loss reduction achieved by the splits on every feature, summed over the trees
+   */
+  double[] getFeatureGains() {
+    return featureGains.clone();
+  }
+
+  /**
+   * Gradient sums and example counts per feature and bin of the examples of one node
+   */
+  private static final class Histogram {
+    private final double[][] sums;
+    private final int[][] counts;
+    private double total;
+
+    private Histogram(int[] numBins) {
+      sums = new double[numBins.length][];
+      counts = new int[numBins.length][];
+      for (int f = 0; f < numBins.length; f++) {
+        sums[f] = new double[numBins[f]];
+        counts[f] = new int[numBins[f]];
+      }
+    }
+
+    /**
+     * Turn this parent histogram into the one of the sibling of {@code child}
+     */
+    private Histogram subtract(Histogram child) {
+      for (int f = 0; f < sums.length; f++) {
+        for (int b = 0; b < sums[f].length; b++) {
+          sums[f][b] -= child.sums[f][b];
+          counts[f][b] -= child.counts[f][b];
+        }
+      }
+      total -= child.total;
+      return this;
+    }
+  }
+
+  private record Split(int feature, int bin, double gain) {
+  }
+
+  /**
+   * State of one boosting run: binned columns, current predictions and the nodes of the tree being grown
+   */
+  private static final class Fitter {
+    private final int numExamples;
+    private final int numFeatures;
+    private final double[] targets;
+    private final Params params;
+    private final ExecutorService pool;
+    private final int workers;
+    private final int maxDepth;
+    private final double[][] cuts;
+    private final int[] numBins;
+    private final byte[][] bins;
+    private final double[] predictions;
+    private final double[] gradients;
+    private final int[] order;
+    private final double[] featureGains;
+    private final int[] nodeFeature;
+    private final double[] nodeThreshold;
+    private final int[] nodeLeft;
+    private final int[] nodeRight;
+    private final double[] nodeValue;
+    private int nodeCount;
+
+    private Fitter(double[][] rows, double[] targets, Params params, ExecutorService pool, int workers) {
+      this.numExamples = rows.length;
+      this.numFeatures = rows[0].length;
+      this.targets = targets;
+      this.params = params;
+      this.pool = pool;
+      this.workers = workers;
+      this.maxDepth = Math.max(1, Math.min(MAX_DEPTH, params.maxDepth()));
+      this.cuts = new double[numFeatures][];
+      this.numBins = new int[numFeatures];
+      this.bins = new byte[numFeatures][];
+      this.predictions = new double[numExamples];
+      this.gradients = new double[numExamples];
+      this.order = new int[numExamples];
+      this.featureGains = new double[numFeatures];
+      int maxNodes = (1 << (maxDepth + 1)) - 1;
+      this.nodeFeature = new int[maxNodes];
+      this.nodeThreshold = new double[maxNodes];
+      this.nodeLeft = new int[maxNodes];
+      this.nodeRight = new int[maxNodes];
+      this.nodeValue = new double[maxNodes];
+
+      int maxBins = Math.max(2, Math.min(256, params.maxBins()));
+      forEachFeature(numExamples, f -> {
+        double[] column = new double[numExamples];
+        for (int i = 0; i < numExamples; i++) {
+          column[i] = rows[i][f];
+        }
+        double[] sorted = column.clone();
+        Arrays.sort(sorted);
+        cuts[f] = quantileCuts(sorted, maxBins);
+        numBins[f] = cuts[f].length + 1;
+        bins[f] = new byte[numExamples];
+        for (int i = 0; i < numExamples; i++) {
+          bins[f][i] = (byte) bin(cuts[f], column[i]);
+        }
+      });
+    }
+
+    private GradientBoostedTrees fit(double[][] validRows, double[] validTargets) {
+      double base = Arrays.stream(targets).average().orElse(0.0);
+      Arrays.fill(predictions, base);
+      double[] validPredictions = new double[validRows.length];
+      Arrays.fill(validPredictions, base);
+      double bestLoss = meanSquaredError(validPredictions, validTargets);
+      int bestSize = 0;
+      double[] bestGains = new double[numFeatures];
+
+      List<Tree> trees = new ArrayList<>();
+      for (int t = 0; t < params.numTrees(); t++) {
+        for (int i = 0; i < numExamples; i++) {
+          gradients[i] = predictions[i] - targets[i];
+        }
+        Tree tree = grow();
+        trees.add(tree);
+        if (validRows.length == 0) {
+          continue;
+        }
+        for (int v = 0; v < validRows.length; v++) {
+          validPredictions[v] += tree.predict(validRows[v]);
+        }
+        double loss = meanSquaredError(validPredictions, validTargets);
+        if (loss < bestLoss) {
+          bestLoss = loss;
+          bestSize = trees.size();
+          bestGains = featureGains.clone();
+        } else if (trees.size() - bestSize >= params.patience()) {
+          log.info("Validation loss stopped improving after {} trees", bestSize);
+          break;
+        }
+      }
+      if (validRows.length == 0) {
+        bestSize = trees.size();
+        bestGains = featureGains;
+      }
+      log.info("Boosted {} trees over {} examples, validation MSE {}", bestSize, numExamples, bestLoss);
+      return new GradientBoostedTrees(base, trees.subList(0, bestSize).toArray(Tree[]::new), bestGains);
+    }
+
+    /**
+     * Grow one tree on the current gradients, adding its leaf values to the training predictions
+     */
+    private Tree grow() {
+      nodeCount = 0;
+      for (int i = 0; i < numExamples; i++) {
+        order[i] = i;
+      }
+      build(0, numExamples, 0, histogram(0, numExamples));
+      return new Tree(
+          Arrays.copyOf(nodeFeature, nodeCount),
+          Arrays.copyOf(nodeThreshold, nodeCount),
+          Arrays.copyOf(nodeLeft, nodeCount),
+          Arrays.copyOf(nodeRight, nodeCount),
+          Arrays.copyOf(nodeValue, nodeCount)
+      );
+    }
+
+    /**
+     * Grow the node of the examples {@code order[start, end)}, returning its index
+     */
+    private int build(int start, int end, int depth, Histogram histogram) {
+      int node = nodeCount++;
+      int count = end - start;
+      Split split = depth < maxDepth && count >= 2 * params.minSamplesLeaf() ? bestSplit(histogram, count) : null;
+      if (split == null) {
+        double value = -params.learningRate() * histogram.total / (count + params.l2());
+        nodeFeature[node] = -1;
+        nodeValue[node] = value;
+        for (int k = start; k < end; k++) {
+          predictions[order[k]] += value;
+        }
+        return node;
+      }
+
+      featureGains[split.feature()] += split.gain();
+      int middle = partition(start, end, split.feature(), split.bin());
+      // Sum up the smaller child only, the larger one is what remains of the parent
+      Histogram left;
+      Histogram right;
+      if (middle - start <= end - middle) {
+        left = histogram(start, middle);
+        right = histogram.subtract(left);
+      } else {
+        right = histogram(middle, end);
+        left = histogram.subtract(right);
+      }
+      nodeFeature[node] = split.feature();
+      nodeThreshold[node] = cuts[split.feature()][split.bin()];
+      nodeLeft[node] = build(start, middle, depth + 1, left);
+      nodeRight[node] = build(middle, end, depth + 1, right);
+      return node;
+    }
+
+    private Histogram histogram(int start, int end) {
+      Histogram histogram = new Histogram(numBins);
+      forEachFeature(end - start, f -> {
+        byte[] column = bins[f];
+        double[] sums = histogram.sums[f];
+        int[] counts = histogram.counts[f];
+        for (int k = start; k < end; k++) {
+          int i = order[k];
+          int bin = column[i] & 0xFF;
+          sums[bin] += gradients[i];
+          counts[bin]++;
+        }
+      });
+      for (int k = start; k < end; k++) {
+        histogram.total += gradients[order[k]];
+      }
+      return histogram;
+    }
+
+    /**
+     * Split of the largest loss reduction over all features and bins that leaves both children at least
+     * {@code minSamplesLeaf} examples, or {@code null} if no split reduces the loss
+     */
+    private Split bestSplit(Histogram histogram, int count) {
+      double l2 = params.l2();
+      int minSamplesLeaf = params.minSamplesLeaf();
+      double total = histogram.total;
+      double parentScore = total * total / (count + l2);
+      double[] gains = new double[numFeatures];
+      int[] splitBins = new int[numFeatures];
+      forEachFeature(count, f -> {
+        double[] sums = histogram.sums[f];
+        int[] counts = histogram.counts[f];
+        double leftSum = 0.0;
+        int leftCount = 0;
+        splitBins[f] = -1;
+        for (int b = 0; b < numBins[f] - 1; b++) {
+          leftSum += sums[b];
+          leftCount += counts[b];
+          if (leftCount < minSamplesLeaf) {
+            continue;
+          }
+          int rightCount = count - leftCount;
+          if (rightCount < minSamplesLeaf) {
+            break;
+          }
+          double rightSum = total - leftSum;
+          double gain = leftSum * leftSum / (leftCount + l2) + rightSum * rightSum / (rightCount + l2) - parentScore;
+          if (gain > gains[f]) {
+            gains[f] = gain;
+            splitBins[f] = b;
+          }
+        }
+      });
+      Split best = null;
+      for (int f = 0; f < numFeatures; f++) {
+        if (splitBins[f] >= 0 && (best == null || gains[f] > best.gain())) {
+          best = new Split(f, splitBins[f], gains[f]);
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Reorder {@code order[start, end)} so the examples at most {@code bin} on {@code feature} come first,
+     * returning where the others start
+     */
+    private int partition(int start, int end, int feature, int bin) {
+      byte[] column = bins[feature];
+      int i = start;
+      int j = end - 1;
+      while (i <= j) {
+        if ((column[order[i]] & 0xFF) <= bin) {
+          i++;
+        } else {
+          int swap = order[i];
+          order[i] = order[j];
+          order[j--] = swap;
+        }
+      }
+      return i;
+    }
+
+    /**
+     * Run {@code task} for every feature, striped over the threads if the node is large enough to pay for it
+     */
+    private void forEachFeature(int examples, IntConsumer task) {
+      if (workers == 1 || (long) examples * numFeatures < PARALLEL_WORK) {
+        for (int f = 0; f < numFeatures; f++) {
+          task.accept(f);
+        }
+        return;
+      }
+      List<CompletableFuture<Void>> futures = new ArrayList<>(workers - 1);
+      for (int w = 1; w < workers; w++) {
+        int stripe = w;
+        futures.add(CompletableFuture.runAsync(() -> {
+          for (int f = stripe; f < numFeatures; f += workers) {
+            task.accept(f);
+          }
+        }, pool));
+      }
+      for (int f = 0; f < numFeatures; f += workers) {
+        task.accept(f);
+      }
+      futures.forEach(CompletableFuture::join);
+    }
+  }
+
+  /**
+   * Upper bounds of the bins of a sorted column: midpoints between its distinct values if there are at most
+   * {@code maxBins} of them, else its {@code maxBins} quantiles. NaN sorts last and falls into the last bin.
+   */
+  static double[] quantileCuts(double[] sorted, int maxBins) {
+    int finite = sorted.length;
+    while (finite > 0 && Double.isNaN(sorted[finite - 1])) {
+      finite--;
+    }
+    double[] distinct = new double[finite];
+    int numDistinct = 0;
+    for (int i = 0; i < finite; i++) {
+      if (numDistinct == 0 || sorted[i] != distinct[numDistinct - 1]) {
+        distinct[numDistinct++] = sorted[i];
+      }
+    }
+    if (numDistinct <= maxBins) {
+      double[] cuts = new double[Math.max(0, numDistinct - 1)];
+      for (int b = 0; b < cuts.length; b++) {
+        cuts[b] = distinct[b] + (distinct[b + 1] - distinct[b]) / 2.0;
+      }
+      return cuts;
+    }
+    double[] cuts = new double[maxBins - 1];
+    int numCuts = 0;
+    for (int q = 1; q < maxBins; q++) {
+      double cut = sorted[(int) ((long) q * finite / maxBins)];
+      if (cut < distinct[numDistinct - 1] && (numCuts == 0 || cut > cuts[numCuts - 1])) {
+        cuts[numCuts++] = cut;
+      }
+    }
+    return Arrays.copyOf(cuts, numCuts);
+  }
+
+  /**
+   * Bin of {@code value}: the first bin whose upper bound is at least {@code value}, the last one if none is
+   */
+  static int bin(double[] cuts, double value) {
+    int low = 0;
+    int high = cuts.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (value <= cuts[middle]) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  private static double meanSquaredError(double[] predictions, double[] targets) {
+    if (predictions.length == 0) {
+      return Double.NaN;
+    }
+    double sum = 0.0;
+    for (int i = 0; i < predictions.length; i++) {
+      double error = predictions[i] - targets[i];
+      sum += error * error;
+    }
+    return sum / predictions.length;
+  }
+}
@@ -0,0 +1,108 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.InferenceBenchmarkResult;
+import com.kcjmowright.zerodte.model.LatencyStats;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Throughput and latency of single window predictions from concurrent clients, each client sending its requests
+ * back to back, once with a forward pass per request and once through the bundle's micro-batcher. Windows are
+ * random normalized values, which cost the same forward pass as real ones.
+ */
+@Slf4j
+final class InferenceBenchmark {
+  private static final int WINDOWS = 64;
+  private static final int WARMUP_REQUESTS = 20;
+
+  private final ModelBundle bundle;
+  private final double[][] windows;
+
+  InferenceBenchmark(ModelBundle bundle, long seed) {
+    this.bundle = bundle;
+    int windowLength = bundle.getScalers().getNumFeatures() * bundle.getSequenceLength();
+    Random random = new Random(seed);
+    this.windows = new double[WINDOWS][windowLength];
+    for (double[] window : windows) {
+      for (int i = 0; i < windowLength; i++) {
+        window[i] = random.nextDouble();
+      }
+    }
+  }
+
+  InferenceBenchmarkResult run(List<Integer> clientCounts, int requestsPerClient) {
+    for (int i = 0; i < WARMUP_REQUESTS; i++) {
+      unbatched(windows[i % WINDOWS]);
+      bundle.predictWindow(windows[i % WINDOWS]);
+    }
+
+    List<InferenceBenchmarkResult.Point> points = new ArrayList<>();
+    for (int clients : clientCounts) {
+      LatencyHistogram unbatchedLatency = new LatencyHistogram();
+      double unbatched = measure(clients, requestsPerClient, this::unbatched, unbatchedLatency);
+      LatencyHistogram batchedLatency = new LatencyHistogram();
+      double batched = measure(clients, requestsPerClient, bundle::predictWindow, batchedLatency);
+      LatencyStats batchedStats = batchedLatency.snapshot();
+      log.info("{} clients: {} requests/s unbatched, {} requests/s batched, batched p99 {} ms", clients,
+          String.format("%.1f", unbatched), String.format("%.1f", batched), batchedStats.getP99Millis());
+      points.add(InferenceBenchmarkResult.Point.builder()
+          .clients(clients)
+          .unbatchedRequestsPerSecond(unbatched)
+          .batchedRequestsPerSecond(batched)
+          .speedup(batched / unbatched)
+          .unbatchedLatency(unbatchedLatency.snapshot())
+          .batchedLatency(batchedStats)
+          .build());
+    }
+    return InferenceBenchmarkResult.builder()
+        .version(bundle.getVersion())
+        .replicas(bundle.getServing().replicas())
+        .maxBatchItems(bundle.getServing().maxBatchItems())
+        .maxBatchWaitMicros(bundle.getServing().maxBatchWaitMicros())
+        .requestsPerClient(requestsPerClient)
+        .points(points)
+        .build();
+  }
+
+  /**
+   * Requests per second of {@code clients} concurrent clients each sending {@code requests} windows to {@code predict}
+   */
+  private double measure(int clients, int requests, Function<double[], double[]> predict, LatencyHistogram latency) {
+    long start = System.nanoTime();
+    try (ExecutorService pool = Executors.newFixedThreadPool(clients, Thread.ofPlatform().name("gex-benchmark-", 0).factory())) {
+      List<CompletableFuture<Void>> futures = new ArrayList<>(clients);
+      for (int c = 0; c < clients; c++) {
+        int client = c;
+        futures.add(CompletableFuture.runAsync(() -> {
+          for (int r = 0; r < requests; r++) {
+            long requested = System.nanoTime();
+            predict.apply(windows[(client + r) % WINDOWS]);
+            latency.record(System.nanoTime() - requested);
+          }
+        }, pool));
+      }
+      futures.forEach(CompletableFuture::join);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    return (double) clients * requests / seconds;
+  }
+
+  private double[] unbatched(double[] window) {
+    int sequenceLength = bundle.getSequenceLength();
+    INDArray input = Nd4j.create(window, new long[]{ 1, bundle.getScalers().getNumFeatures(), sequenceLength }, 'c')
+        .castTo(bundle.getModel().params().dataType());
+    return bundle.infer(model -> model.output(input))
+        .get(NDArrayIndex.point(0), NDArrayIndex.all(), NDArrayIndex.point(sequenceLength - 1))
+        .toDoubleVector();
+  }
+}
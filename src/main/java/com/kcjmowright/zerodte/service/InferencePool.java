@@ -0,0 +1,103 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.InferencePoolStats;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Replicas of one network for concurrent inference. {@code MultiLayerNetwork.output} keeps the input and
+ * activations of the call on the network's layers, so one instance must not run two calls at once. Each caller
+ * borrows a replica of its own instead, waiting only when all {@code maxReplicas} are busy. Replicas are created
+ * on demand and share the parameter array of the source network, so each one only adds its own activations.
+ * The source network itself is never handed out and stays free for cloning.
+ */
+@Slf4j
+final class InferencePool {
+  private final String version;
+  private final MultiLayerNetwork model;
+  private final int maxReplicas;
+  private final LinkedBlockingQueue<MultiLayerNetwork> idle = new LinkedBlockingQueue<>();
+  private final AtomicInteger replicas = new AtomicInteger();
+  private final AtomicInteger busy = new AtomicInteger();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final LatencyHistogram queueWait = new LatencyHistogram();
+  private final LatencyHistogram execution = new LatencyHistogram();
+
+  InferencePool(String version, MultiLayerNetwork model, int maxReplicas) {
+    this.version = version;
+    this.model = model;
+    this.maxReplicas = Math.max(1, maxReplicas);
+  }
+
+  /**
+   * Run {@code task} on a replica no other thread uses meanwhile. The task must not keep the replica or
+   * modify its parameters.
+   */
+  <T> T execute(Function<MultiLayerNetwork, T> task) {
+    long requested = System.nanoTime();
+    MultiLayerNetwork replica = acquire();
+    long started = System.nanoTime();
+    queueWait.record(started - requested);
+    try {
+      return task.apply(replica);
+    } finally {
+      execution.record(System.nanoTime() - started);
+      busy.decrementAndGet();
+      idle.offer(replica);
+    }
+  }
+
+  InferencePoolStats getStats() {
+    return InferencePoolStats.builder()
+        .version(version)
+        .maxReplicas(maxReplicas)
+        .replicas(replicas.get())
+        .busy(busy.get())
+        .waiting(waiting.get())
+        .queueWait(queueWait.snapshot())
+        .execution(execution.snapshot())
+        .build();
+  }
+
+  private MultiLayerNetwork acquire() {
+    MultiLayerNetwork replica = idle.poll();
+    if (replica == null) {
+      replica = createIfBelowLimit();
+    }
+    if (replica == null) {
+      waiting.incrementAndGet();
+      try {
+        replica = idle.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted waiting for a replica of model version %s".formatted(version), e);
+      } finally {
+        waiting.decrementAndGet();
+      }
+    }
+    busy.incrementAndGet();
+    return replica;
+  }
+
+  private MultiLayerNetwork createIfBelowLimit() {
+    for (int count = replicas.get(); count < maxReplicas; count = replicas.get()) {
+      if (replicas.compareAndSet(count, count + 1)) {
+        try {
+          MultiLayerNetwork replica = new MultiLayerNetwork(model.getLayerWiseConfigurations().clone());
+          // Without cloning, the replica's parameters are a view of the source network's parameters
+          replica.init(model.params(), false);
+          log.debug("Created inference replica {} of model version {}", count + 1, version);
+          return replica;
+        } catch (RuntimeException e) {
+          replicas.decrementAndGet();
+          throw e;
+        }
+      }
+    }
+    return null;
+  }
+}
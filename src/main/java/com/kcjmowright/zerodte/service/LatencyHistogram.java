@@ -0,0 +1,78 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.LatencyStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with power of two microsecond buckets from 1µs to about 134s, the last bucket
+ * also holding anything longer. Recording is a couple of adder increments, so it can sit on every inference call.
+ */
+final class LatencyHistogram {
+  private static final int BUCKETS = 28;
+
+  private final LongAdder[] counts = new LongAdder[BUCKETS];
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+  LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  void record(long nanos) {
+    long micros = Math.max(1L, (nanos + 999L) / 1000L);
+    // Bucket i holds (2^(i-1), 2^i] microseconds
+    int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+    counts[bucket].increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+
+  LatencyStats snapshot() {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts[i].sum();
+      count += snapshot[i];
+    }
+    Map<Double, Long> buckets = new LinkedHashMap<>();
+    for (int i = 0; i < BUCKETS; i++) {
+      if (snapshot[i] > 0) {
+        buckets.put(upperBoundMillis(i), snapshot[i]);
+      }
+    }
+    return LatencyStats.builder()
+        .count(count)
+        .meanMillis(count == 0 ? 0.0 : totalNanos.sum() / 1e6 / count)
+        .p50Millis(percentile(snapshot, count, 0.50))
+        .p95Millis(percentile(snapshot, count, 0.95))
+        .p99Millis(percentile(snapshot, count, 0.99))
+        .maxMillis(maxNanos.get() / 1e6)
+        .buckets(buckets)
+        .build();
+  }
+
+  private static double percentile(long[] snapshot, long count, double q) {
+    if (count == 0) {
+      return 0.0;
+    }
+    long rank = (long) Math.ceil(q * count);
+    long seen = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return upperBoundMillis(i);
+      }
+    }
+    return upperBoundMillis(BUCKETS - 1);
+  }
+
+  private static double upperBoundMillis(int bucket) {
+    return (1L << bucket) / 1000.0;
+  }
+}
@@ -0,0 +1,124 @@
+package com.kcjmowright.zerodte.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-batching in front of an {@link InferencePool}. Single window predictions that arrive together, for any
+ * symbol or horizon served by the same model, are stacked into one input and run as one forward pass. The first
+ * request of a batch leads it: it waits up to {@code maxWaitMicros} for more requests, or less if the batch
+ * fills up to {@code maxItems}, then runs the batch on a replica and completes every request's future. No
+ * dispatcher thread is needed, and a lone request pays at most {@code maxWaitMicros} of extra latency. Setting
+ * either limit to zero or one disables batching.
+ */
+@Slf4j
+final class MicroBatcher {
+  private final InferencePool pool;
+  private final int numFeatures;
+  private final int sequenceLength;
+  private final DataType dataType;
+  private final int maxItems;
+  private final long maxWaitNanos;
+  private Batch open = new Batch();
+
+  private record Request(double[] window, CompletableFuture<double[]> result) {
+  }
+
+  private static final class Batch {
+    private final List<Request> requests = new ArrayList<>();
+    private boolean closed = false;
+  }
+
+  MicroBatcher(InferencePool pool, int numFeatures, int sequenceLength, DataType dataType, int maxItems, long maxWaitMicros) {
+    this.pool = pool;
+    this.numFeatures = numFeatures;
+    this.sequenceLength = sequenceLength;
+    this.dataType = dataType;
+    this.maxItems = Math.max(1, maxItems);
+    this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0L, maxWaitMicros));
+  }
+
+  /**
+   * Normalized outputs of the last time step for one normalized {@code [features, timeSteps]} window in C order
+   */
+  double[] predict(double[] window) {
+    Request request = new Request(window, new CompletableFuture<>());
+    Batch batch;
+    boolean leader;
+    boolean full;
+    synchronized (this) {
+      batch = open;
+      batch.requests.add(request);
+      leader = batch.requests.size() == 1;
+      full = batch.requests.size() >= maxItems || maxWaitNanos == 0L;
+      if (full) {
+        close(batch);
+      }
+    }
+    if (full) {
+      // Whoever closes the batch runs it
+      run(batch.requests);
+    } else if (leader && awaitBatch(batch)) {
+      run(batch.requests);
+    }
+    try {
+      return request.result().join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+  }
+
+  /**
+   * Wait until the batch times out or fills up, returning whether this thread closed it and must run it
+   */
+  private synchronized boolean awaitBatch(Batch batch) {
+    long deadline = System.nanoTime() + maxWaitNanos;
+    try {
+      for (long remaining = maxWaitNanos; !batch.closed && remaining > 0L; remaining = deadline - System.nanoTime()) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (batch.closed) {
+      return false;
+    }
+    close(batch);
+    return true;
+  }
+
+  private void close(Batch batch) {
+    batch.closed = true;
+    open = new Batch();
+    notifyAll();
+  }
+
+  private void run(List<Request> requests) {
+    try {
+      int windowLength = numFeatures * sequenceLength;
+      double[] data = new double[requests.size() * windowLength];
+      for (int k = 0; k < requests.size(); k++) {
+        System.arraycopy(requests.get(k).window(), 0, data, k * windowLength, windowLength);
+      }
+      INDArray input = Nd4j.create(data, new long[]{ requests.size(), numFeatures, sequenceLength }, 'c').castTo(dataType);
+      // Output is 3D [batch, outputs, sequenceLength]
+      INDArray output = pool.execute(model -> model.output(input));
+      INDArray last = output.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(sequenceLength - 1));
+      for (int k = 0; k < requests.size(); k++) {
+        requests.get(k).result().complete(last.getRow(k).toDoubleVector());
+      }
+    } catch (RuntimeException e) {
+      log.warn("Micro-batch of {} predictions failed due to {}", requests.size(), e.getMessage());
+      requests.forEach(request -> request.result().completeExceptionally(e));
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.InferencePoolStats;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * A fully loaded model version: the network together with the scalers it was trained with.
+ * Bundles are immutable once published, so a prediction that read a bundle keeps a consistent
+ * model and scaler pair even if another version is promoted meanwhile. Inference runs on the bundle's replica
+ * pool through {@link #infer} or the micro-batcher of {@link #predictWindow}, never on {@link #getModel()}
+ * directly, so concurrent predictions are safe.
+ */
+@Getter
+public final class ModelBundle {
+  static final int DEFAULT_SEQUENCE_LENGTH = 15;
+
+  private final String version;
+  private final MultiLayerNetwork model;
+  private final GEXDataPreprocessor preprocessor;
+  private final ScalerParameters scalers;
+  private final TrainingConfig config;
+  private final LocalDateTime created;
+  private final long memoryBytes;
+  @Getter(AccessLevel.PACKAGE)
+  private final Serving serving;
+  @Getter(AccessLevel.NONE)
+  private final InferencePool inferencePool;
+  @Getter(AccessLevel.NONE)
+  private final MicroBatcher microBatcher;
+
+  /**
+   * How a bundle serves inference: replicas of its network, and the size and wait limits of its micro-batches
+   */
+  record Serving(int replicas, int maxBatchItems, long maxBatchWaitMicros) {
+  }
+
+  ModelBundle(String version,
+              MultiLayerNetwork model,
+              GEXDataPreprocessor preprocessor,
+              TrainingConfig config,
+              LocalDateTime created,
+              Serving serving) {
+    this.version = version;
+    this.model = model;
+    this.preprocessor = preprocessor;
+    this.scalers = preprocessor.requireScalerParameters();
+    this.config = config;
+    this.created = created;
+    this.memoryBytes = estimateMemoryBytes(model);
+    this.serving = serving;
+    this.inferencePool = new InferencePool(version, model, serving.replicas());
+    this.microBatcher = new MicroBatcher(
+        inferencePool,
+        scalers.getNumFeatures(),
+        getSequenceLength(),
+        model.params().dataType(),
+        serving.maxBatchItems(),
+        serving.maxBatchWaitMicros()
+    );
+  }
+
+  /**
+   * Run {@code task} on one of the bundle's inference replicas, waiting if all of them are busy
+   */
+  <T> T infer(Function<MultiLayerNetwork, T> task) {
+    return inferencePool.execute(task);
+  }
+
+  /**
+   * Normalized outputs of the last time step for one normalized {@code [features, sequenceLength]} window in
+   * C order, batched with the windows other threads submit to this bundle at the same time
+   */
+  double[] predictWindow(double[] window) {
+    return microBatcher.predict(window);
+  }
+
+  public InferencePoolStats getInferenceStats() {
+    return inferencePool.getStats();
+  }
+
+  /**
+   * Whether the network takes {@code [examples, features, timeSteps]} sequences rather than single feature rows
+   */
+  public boolean isSequenceModel() {
+    return config == null || GEXModelTrainer.isMultiHorizon(config) || Boolean.TRUE.equals(config.getUseTimeSeries());
+  }
+
+  /**
+   * Time steps the network expects per input sequence
+   */
+  public int getSequenceLength() {
+    return config == null || config.getSequenceLength() == null ? DEFAULT_SEQUENCE_LENGTH : config.getSequenceLength();
+  }
+
+  /**
+   * Network output holding the prediction for {@code horizon} minutes ahead. Single-output models answer every
+   * horizon they are routed for from output 0, multi-horizon models only the horizons they were trained on.
+   */
+  public int outputIndex(int horizon) {
+    if (!GEXModelTrainer.isMultiHorizon(config)) {
+      return 0;
+    }
+    int index = config.getHorizons().indexOf(horizon);
+    if (index < 0) {
+      throw new IllegalArgumentException("Model version %s predicts %s minutes ahead, not %d"
+          .formatted(version, config.getHorizons(), horizon));
+    }
+    return index;
+  }
+
+  /**
+   * Bytes held by the parameters and, if it was loaded, the updater state
+   */
+  private static long estimateMemoryBytes(MultiLayerNetwork model) {
+    INDArray params = model.params();
+    long bytes = params.length() * params.dataType().width();
+    Updater updater = model.getUpdater(false);
+    INDArray state = updater == null ? null : updater.getStateViewArray();
+    if (state != null) {
+      bytes += state.length() * state.dataType().width();
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,117 @@
+package com.kcjmowright.zerodte.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Loaded model bundles by version, evicted least recently used first once their combined size exceeds the budget.
+ * Pinned versions, e.g. those serving a route, are never evicted, so the budget is exceeded when they alone
+ * outgrow it. Concurrent requests for a version that is still loading wait for the same load. Evicting a bundle
+ * only drops the cache's reference, predictions already holding it finish normally.
+ */
+@Slf4j
+final class ModelCache {
+  private final long budgetBytes;
+  private final Function<String, ModelBundle> loader;
+  private final Predicate<String> pinned;
+  private final LinkedHashMap<String, CompletableFuture<ModelBundle>> bundles = new LinkedHashMap<>(16, 0.75f, true);
+  private long usedBytes = 0L;
+
+  ModelCache(long budgetBytes, Function<String, ModelBundle> loader, Predicate<String> pinned) {
+    this.budgetBytes = budgetBytes;
+    this.loader = loader;
+    this.pinned = pinned;
+  }
+
+  /**
+   * The bundle of {@code version}, loading it on the calling thread if no other thread is already loading it
+   */
+  ModelBundle get(String version) {
+    CompletableFuture<ModelBundle> future;
+    boolean load = false;
+    synchronized (this) {
+      future = bundles.get(version);
+      if (future == null) {
+        future = new CompletableFuture<>();
+        bundles.put(version, future);
+        load = true;
+      }
+    }
+    if (load) {
+      try {
+        ModelBundle bundle = loader.apply(version);
+        future.complete(bundle);
+        loaded(version, bundle);
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          bundles.remove(version);
+        }
+        future.completeExceptionally(e);
+        throw e;
+      }
+    }
+    return future.join();
+  }
+
+  /**
+   * Versions currently loaded
+   */
+  synchronized Map<String, Long> getLoaded() {
+    Map<String, Long> loaded = new LinkedHashMap<>();
+    getLoadedBundles().forEach(bundle -> loaded.put(bundle.getVersion(), bundle.getMemoryBytes()));
+    return loaded;
+  }
+
+  /**
+   * Bundles currently loaded, least recently used first
+   */
+  synchronized List<ModelBundle> getLoadedBundles() {
+    List<ModelBundle> loaded = new ArrayList<>();
+    bundles.values().forEach(future -> {
+      ModelBundle bundle = future.getNow(null);
+      if (bundle != null) {
+        loaded.add(bundle);
+      }
+    });
+    return loaded;
+  }
+
+  synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  long getBudgetBytes() {
+    return budgetBytes;
+  }
+
+  private synchronized void loaded(String version, ModelBundle bundle) {
+    usedBytes += bundle.getMemoryBytes();
+    List<String> evicted = new ArrayList<>();
+    Iterator<Map.Entry<String, CompletableFuture<ModelBundle>>> entries = bundles.entrySet().iterator();
+    while (usedBytes > budgetBytes && entries.hasNext()) {
+      Map.Entry<String, CompletableFuture<ModelBundle>> entry = entries.next();
+      ModelBundle candidate = entry.getValue().getNow(null);
+      // Keep the bundle just loaded, those still loading and pinned ones
+      if (candidate == null || entry.getKey().equals(version) || pinned.test(entry.getKey())) {
+        continue;
+      }
+      entries.remove();
+      usedBytes -= candidate.getMemoryBytes();
+      evicted.add(entry.getKey());
+    }
+    if (!evicted.isEmpty()) {
+      log.info("Evicted model versions {} to stay within {} bytes", evicted, budgetBytes);
+    }
+    if (usedBytes > budgetBytes) {
+      log.warn("Loaded model versions hold {} bytes, over the budget of {} bytes", usedBytes, budgetBytes);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.kcjmowright.zerodte.service;
+
+import org.nd4j.linalg.factory.Environment;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ND4J and BLAS thread counts are process wide. Code that runs several networks concurrently limits them
+ * for its duration so the concurrent workers do not oversubscribe the cores. Limits may overlap and be closed
+ * in any order: the lowest open limit applies, and the original counts return once the last one is closed.
+ */
+final class Nd4jThreads {
+  private static final Object LOCK = new Object();
+  private static final List<Limit> open = new ArrayList<>();
+  private static int[] original;
+
+  private Nd4jThreads() {
+  }
+
+  /**
+   * Threads each of {@code workers} concurrent workers gets when {@code configured} is not set
+   */
+  static int perWorker(int configured, int workers) {
+    return configured > 0 ? configured : Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+  }
+
+  /**
+   * Limit ND4J and BLAS to {@code threads} until the returned limit is closed
+   */
+  static Limit limit(int threads) {
+    synchronized (LOCK) {
+      if (open.isEmpty()) {
+        Environment environment = Nd4j.getEnvironment();
+        original = new int[]{ environment.maxThreads(), environment.maxMasterThreads(), Nd4j.factory().blas().getMaxThreads() };
+      }
+      Limit limit = new Limit(threads);
+      open.add(limit);
+      applyLowest();
+      return limit;
+    }
+  }
+
+  private static void applyLowest() {
+    int threads = open.stream().mapToInt(limit -> limit.threads).min().orElseThrow();
+    apply(threads, threads, threads);
+  }
+
+  private static void apply(int maxThreads, int maxMasterThreads, int blasThreads) {
+    Environment environment = Nd4j.getEnvironment();
+    environment.setMaxThreads(maxThreads);
+    environment.setMaxMasterThreads(maxMasterThreads);
+    Nd4j.factory().blas().setMaxThreads(blasThreads);
+  }
+
+  /**
+   * One open thread limit, closing it more than once has no further effect
+   */
+  static final class Limit implements AutoCloseable {
+    private final int threads;
+
+    private Limit(int threads) {
+      this.threads = threads;
+    }
+
+    @Override
+    public void close() {
+      synchronized (LOCK) {
+        // Identity, not equality, two limits of the same threads are distinct
+        if (!open.removeIf(limit -> limit == this)) {
+          return;
+        }
+        if (open.isEmpty()) {
+          apply(original[0], original[1], original[2]);
+          original = null;
+        } else {
+          applyLowest();
+        }
+      }
+    }
+  }
+}
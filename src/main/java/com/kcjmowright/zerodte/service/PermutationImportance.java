@@ -0,0 +1,176 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.FeatureImportance;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Permutation feature importance over a normalized evaluation set. Each feature column is shuffled across the
+ * examples {@code repetitions} times, and the rise of the prediction MSE over the unshuffled baseline is its
+ * importance. Features are spread over concurrent workers, each with its own copy of the network and of the
+ * input so no shuffle is visible to another worker.
+ */
+@Slf4j
+final class PermutationImportance {
+  private final MultiLayerNetwork model;
+  private final ScalerParameters scalers;
+  private final int outputIndex;
+  private final int batchSize;
+  private final long[] shape;
+  private final double[] features;
+  private final double[] targets;
+  private final DataType dataType;
+
+  /**
+   * @param dataSet normalized {@code [examples, features]} or {@code [examples, features, timeSteps]} examples whose
+   *                labels hold output {@code outputIndex} at the last time step
+   */
+  PermutationImportance(MultiLayerNetwork model, DataSet dataSet, ScalerParameters scalers, int outputIndex, int batchSize) {
+    this.model = model;
+    this.scalers = scalers;
+    this.outputIndex = outputIndex;
+    this.batchSize = batchSize;
+    this.shape = dataSet.getFeatures().shape();
+    this.features = dataSet.getFeatures().dup('c').data().asDouble();
+    this.targets = denormalize(lastStep(dataSet.getLabels()).toDoubleVector());
+    this.dataType = model.params().dataType();
+  }
+
+  /**
+   * Importance of every feature, most important first
+   */
+  List<FeatureImportance> compute(List<String> featureNames, int repetitions, int parallelism, long seed) {
+    // The model may be serving predictions meanwhile, so even the baseline runs on a copy
+    double baseline = meanSquaredError(model.clone(), features);
+    log.info("Permutation importance of {} features over {} examples, baseline MSE {}", featureNames.size(), shape[0], baseline);
+
+    int workers = Math.max(1, Math.min(parallelism, featureNames.size()));
+    double[][] increases = new double[featureNames.size()][repetitions];
+    Nd4jThreads.Limit threadLimit = Nd4jThreads.limit(Nd4jThreads.perWorker(0, workers));
+    try (ExecutorService pool = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("gex-importance-", 0).factory())) {
+      List<CompletableFuture<Void>> futures = new ArrayList<>(workers);
+      for (int w = 0; w < workers; w++) {
+        int worker = w;
+        futures.add(CompletableFuture.runAsync(() -> {
+          MultiLayerNetwork replica = model.clone();
+          double[] shuffled = new double[features.length];
+          for (int f = worker; f < featureNames.size(); f += workers) {
+            for (int r = 0; r < repetitions; r++) {
+              permute(f, new Random(seed + 31L * f + r), shuffled);
+              increases[f][r] = meanSquaredError(replica, shuffled) - baseline;
+            }
+          }
+        }, pool));
+      }
+      futures.forEach(CompletableFuture::join);
+    } finally {
+      threadLimit.close();
+    }
+
+    List<FeatureImportance> importances = new ArrayList<>(featureNames.size());
+    for (int f = 0; f < featureNames.size(); f++) {
+      importances.add(summarize(featureNames.get(f), increases[f]));
+    }
+    importances.sort(Comparator.comparingDouble(FeatureImportance::getImportance).reversed());
+    return importances;
+  }
+
+  /**
+   * Copy the features into {@code shuffled} with column {@code feature} moved between examples by a random permutation
+   */
+  private void permute(int feature, Random random, double[] shuffled) {
+    System.arraycopy(features, 0, shuffled, 0, features.length);
+    int examples = (int) shape[0];
+    int[] permutation = new int[examples];
+    for (int k = 0; k < examples; k++) {
+      permutation[k] = k;
+    }
+    for (int k = examples - 1; k > 0; k--) {
+      int j = random.nextInt(k + 1);
+      int swap = permutation[k];
+      permutation[k] = permutation[j];
+      permutation[j] = swap;
+    }
+    // A feature spans timeSteps consecutive values of an example in 'c' order, one value for 2D inputs
+    int timeSteps = shape.length == 3 ? (int) shape[2] : 1;
+    int exampleStride = (int) shape[1] * timeSteps;
+    for (int k = 0; k < examples; k++) {
+      System.arraycopy(
+          features, permutation[k] * exampleStride + feature * timeSteps,
+          shuffled, k * exampleStride + feature * timeSteps,
+          timeSteps
+      );
+    }
+  }
+
+  private double meanSquaredError(MultiLayerNetwork network, double[] input) {
+    int examples = (int) shape[0];
+    int exampleStride = input.length / examples;
+    double sum = 0.0;
+    for (int chunkStart = 0; chunkStart < examples; chunkStart += batchSize) {
+      int chunk = Math.min(batchSize, examples - chunkStart);
+      double[] data = new double[chunk * exampleStride];
+      System.arraycopy(input, chunkStart * exampleStride, data, 0, data.length);
+      long[] chunkShape = shape.clone();
+      chunkShape[0] = chunk;
+      double[] predictions = denormalize(lastStep(network.output(Nd4j.create(data, chunkShape, 'c').castTo(dataType)))
+          .toDoubleVector());
+      for (int k = 0; k < chunk; k++) {
+        double error = predictions[k] - targets[chunkStart + k];
+        sum += error * error;
+      }
+    }
+    return sum / examples;
+  }
+
+  /**
+   * Column {@code outputIndex} of a 2D output, or of the last time step of a 3D output
+   */
+  private INDArray lastStep(INDArray output) {
+    return output.rank() == 3 ?
+        output.get(NDArrayIndex.all(), NDArrayIndex.point(outputIndex), NDArrayIndex.point(output.size(2) - 1)) :
+        output.get(NDArrayIndex.all(), NDArrayIndex.point(outputIndex));
+  }
+
+  private double[] denormalize(double[] normalized) {
+    for (int k = 0; k < normalized.length; k++) {
+      normalized[k] = scalers.denormalizeTarget(outputIndex, normalized[k]);
+    }
+    return normalized;
+  }
+
+  private static FeatureImportance summarize(String feature, double[] increases) {
+    int n = increases.length;
+    double mean = 0.0;
+    for (double increase : increases) {
+      mean += increase / n;
+    }
+    double variance = 0.0;
+    for (double increase : increases) {
+      variance += (increase - mean) * (increase - mean) / Math.max(1, n - 1);
+    }
+    double std = Math.sqrt(variance);
+    double halfWidth = 1.96 * std / Math.sqrt(n);
+    return FeatureImportance.builder()
+        .feature(feature)
+        .importance(mean)
+        .stdDeviation(std)
+        .confidence95Lower(mean - halfWidth)
+        .confidence95Upper(mean + halfWidth)
+        .repetitions(n)
+        .build();
+  }
+}
@@ -0,0 +1,122 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.PredictionCacheStats;
+import com.kcjmowright.zerodte.model.PricePrediction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Live predictions by symbol, snapshot minute, horizon and model version. Inputs only change when a new snapshot
+ * is captured, so every poll, endpoint and push within the minute shares one computation. Concurrent misses for a
+ * key wait for the computation already running instead of starting their own. A captured snapshot drops the
+ * symbol's entries and a model promotion drops everything.
+ */
+@Slf4j
+@Component
+public class PredictionCache {
+  private final ConcurrentHashMap<Key, CompletableFuture<PricePrediction>> entries = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  private record Key(String symbol, LocalDateTime snapshot, int horizon, String version) {
+  }
+
+  /**
+   * Cached predictions of {@code symbol} at {@code snapshot} for every horizon of {@code versions}, which maps each
+   * horizon to the version of the model serving it. Horizons nobody computed yet are passed to {@code compute}
+   * together in one call.
+   */
+  public Map<Integer, PricePrediction> getAll(String symbol,
+                                              LocalDateTime snapshot,
+                                              Map<Integer, String> versions,
+                                              Function<List<Integer>, Map<Integer, PricePrediction>> compute) {
+    Map<Integer, CompletableFuture<PricePrediction>> futures = new HashMap<>();
+    Map<Integer, CompletableFuture<PricePrediction>> claimed = new HashMap<>();
+    versions.forEach((horizon, version) -> {
+      Key key = new Key(symbol, snapshot, horizon, version);
+      CompletableFuture<PricePrediction> created = new CompletableFuture<>();
+      CompletableFuture<PricePrediction> existing = entries.putIfAbsent(key, created);
+      if (existing == null) {
+        misses.increment();
+        claimed.put(horizon, created);
+        futures.put(horizon, created);
+      } else {
+        (existing.isDone() ? hits : coalesced).increment();
+        futures.put(horizon, existing);
+      }
+    });
+
+    if (!claimed.isEmpty()) {
+      try {
+        Map<Integer, PricePrediction> computed = compute.apply(new ArrayList<>(claimed.keySet()));
+        claimed.forEach((horizon, future) -> future.complete(computed.get(horizon)));
+      } catch (RuntimeException e) {
+        // Let the next caller retry instead of caching the failure
+        claimed.forEach((horizon, future) -> {
+          entries.remove(new Key(symbol, snapshot, horizon, versions.get(horizon)), future);
+          future.completeExceptionally(e);
+        });
+        throw e;
+      }
+    }
+
+    Map<Integer, PricePrediction> predictions = new HashMap<>();
+    futures.forEach((horizon, future) -> predictions.put(horizon, future.join()));
+    return predictions;
+  }
+
+  /**
+   * Cached prediction of {@code symbol} at {@code snapshot} for {@code horizon} minutes ahead by {@code version}
+   */
+  public PricePrediction get(String symbol,
+                             LocalDateTime snapshot,
+                             int horizon,
+                             String version,
+                             Function<Integer, PricePrediction> compute) {
+    return getAll(symbol, snapshot, Map.of(horizon, version), claimed -> Map.of(horizon, compute.apply(horizon)))
+        .get(horizon);
+  }
+
+  /**
+   * Drop the entries of {@code symbol}, e.g. once a newer snapshot was captured
+   */
+  public void invalidate(String symbol) {
+    if (entries.keySet().removeIf(key -> key.symbol().equals(symbol))) {
+      invalidations.increment();
+    }
+  }
+
+  /**
+   * Drop every entry, e.g. once a model was promoted
+   */
+  public void invalidateAll() {
+    entries.clear();
+    invalidations.increment();
+    log.debug("Prediction cache cleared");
+  }
+
+  public PredictionCacheStats getStats() {
+    long hitCount = hits.sum() + coalesced.sum();
+    long total = hitCount + misses.sum();
+    return PredictionCacheStats.builder()
+        .hits(hits.sum())
+        .misses(misses.sum())
+        .coalesced(coalesced.sum())
+        .invalidations(invalidations.sum())
+        .size(entries.size())
+        .hitRate(total == 0 ? 0.0 : (double) hitCount / total)
+        .build();
+  }
+}
@@ -0,0 +1,17 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.PricePrediction;
+
+import java.util.List;
+
+/**
+ * Predicts the spot price of a snapshot's symbol some minutes ahead, whatever the model behind it.
+ */
+public interface PricePredictor {
+
+  /**
+   * @param historicalSnapshots snapshots leading up to {@code currentSnapshot}, oldest first
+   */
+  PricePrediction predict(GEXData currentSnapshot, List<GEXData> historicalSnapshots, int minutesAhead);
+}
@@ -0,0 +1,136 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.GEXData;
+import lombok.Getter;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental LSTM inference for one symbol, feeding each new feature row with {@code rnnTimeStep} instead of
+ * rerunning the whole sequence. The model was trained on windows of {@code sequenceLength} steps starting from
+ * a zeroed state, so the stream keeps {@code sequenceLength} staggered copies of the recurrent state as rows of
+ * one mini-batch: every step feeds the new row to all of them, reads the copy that has now seen exactly one
+ * window, and restarts that copy from zero. Each minute costs one time step and the result matches full
+ * window inference. Not thread safe, callers synchronize on the stream.
+ */
+final class RnnStream {
+  @Getter
+  private final String version;
+  private final MultiLayerNetwork network;
+  private final ScalerParameters scalers;
+  private final int sequenceLength;
+  private final int[] recurrentLayers;
+  private long steps = 0L;
+  private LocalDateTime lastCreated;
+  @Getter
+  private double[] outputs;
+
+  RnnStream(ModelBundle bundle) {
+    this.version = bundle.getVersion();
+    // A private copy, its recurrent state belongs to this stream alone
+    this.network = bundle.getModel().clone();
+    this.scalers = bundle.getScalers();
+    this.sequenceLength = bundle.getSequenceLength();
+    this.recurrentLayers = recurrentLayers(network);
+    network.rnnClearPreviousState();
+  }
+
+  /**
+   * Whether {@code model} is a unidirectional LSTM stack that can be stepped one time step at a time
+   */
+  static boolean supports(MultiLayerNetwork model) {
+    int layers = model.getLayerWiseConfigurations().getConfs().size();
+    if (layers == 0) {
+      return false;
+    }
+    for (int i = 0; i < layers; i++) {
+      Layer layer = model.getLayerWiseConfigurations().getConf(i).getLayer();
+      if (!(layer instanceof LSTM) && !(layer instanceof RnnOutputLayer)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether the last row fed was the snapshot created at {@code created}
+   */
+  boolean isAt(LocalDateTime created) {
+    return outputs != null && created.equals(lastCreated);
+  }
+
+  /**
+   * Whether the newest snapshot of {@code history} directly follows the last row fed, in the same session
+   */
+  boolean follows(List<GEXData> history) {
+    if (outputs == null || history.size() < 2) {
+      return false;
+    }
+    LocalDateTime previous = history.get(history.size() - 2).getCreated();
+    LocalDateTime newest = history.getLast().getCreated();
+    return previous.equals(lastCreated) && newest.toLocalDate().equals(lastCreated.toLocalDate());
+  }
+
+  /**
+   * Feed the raw feature row of the snapshot created at {@code created} and return the normalized outputs
+   * for the window ending with it
+   */
+  double[] step(double[] rawRow, LocalDateTime created) {
+    int restart = (int) (steps % sequenceLength);
+    resetRow(restart);
+    INDArray input = Nd4j.create(network.params().dataType(), sequenceLength, scalers.getNumFeatures());
+    for (int k = 0; k < sequenceLength; k++) {
+      scalers.writeNormalizedRow(rawRow, input, k);
+    }
+    // 2D input [copies, features] gives 2D output [copies, outputs]
+    INDArray output = network.rnnTimeStep(input);
+    steps++;
+    lastCreated = created;
+    // The copy restarted sequenceLength - 1 steps ago has now seen exactly one window
+    outputs = steps < sequenceLength ? null : output.getRow((restart + 1) % sequenceLength).toDoubleVector();
+    return outputs;
+  }
+
+  /**
+   * Discard the state and rebuild it from the raw rows of the last {@code sequenceLength} snapshots,
+   * e.g. at the start of a session or after a gap. Costs as much as one full window pass.
+   */
+  double[] resync(double[][] rawRows, LocalDateTime created) {
+    network.rnnClearPreviousState();
+    steps = 0L;
+    outputs = null;
+    for (double[] rawRow : rawRows) {
+      step(rawRow, created);
+    }
+    return outputs;
+  }
+
+  private void resetRow(int row) {
+    for (int layer : recurrentLayers) {
+      Map<String, INDArray> state = network.rnnGetPreviousState(layer);
+      if (state != null) {
+        state.values().forEach(array -> array.getRow(row).assign(0.0));
+        network.rnnSetPreviousState(layer, state);
+      }
+    }
+  }
+
+  private static int[] recurrentLayers(MultiLayerNetwork network) {
+    List<Integer> layers = new ArrayList<>();
+    for (int i = 0; i < network.getLayerWiseConfigurations().getConfs().size(); i++) {
+      if (network.getLayerWiseConfigurations().getConf(i).getLayer() instanceof LSTM) {
+        layers.add(i);
+      }
+    }
+    return layers.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
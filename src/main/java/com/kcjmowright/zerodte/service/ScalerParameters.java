@@ -0,0 +1,169 @@
+package com.kcjmowright.zerodte.service;
+
+import lombok.Getter;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Primitive snapshot of the fitted feature and target scalers.
+ * Both min/max and mean/std normalizers reduce to the per-column affine transform
+ * {@code normalized = raw * scale + offset}, so inference can normalize and denormalize
+ * with plain arithmetic instead of wrapping every value in an INDArray and DataSet.
+ * The arrays are shared, callers must treat them as read-only.
+ */
+@Getter
+public final class ScalerParameters {
+  private final double[] featureScale;
+  private final double[] featureOffset;
+  private final double[] targetScale;
+  private final double[] targetOffset;
+
+  private ScalerParameters(double[] featureScale, double[] featureOffset, double[] targetScale, double[] targetOffset) {
+    this.featureScale = featureScale;
+    this.featureOffset = featureOffset;
+    this.targetScale = targetScale;
+    this.targetOffset = targetOffset;
+  }
+
+  /**
+   * Capture the feature statistics of {@code featureScaler} and the label statistics of {@code targetScaler}.
+   * A target scaler that was not fitted on labels leaves predictions untouched, exactly as its revert would.
+   */
+  public static ScalerParameters of(DataNormalization featureScaler, DataNormalization targetScaler) {
+    double[][] features = featureAffine(featureScaler);
+    double[][] target = targetAffine(targetScaler);
+    return new ScalerParameters(features[0], features[1], target[0], target[1]);
+  }
+
+  public int getNumFeatures() {
+    return featureScale.length;
+  }
+
+  public double normalizeFeature(int featureIndex, double rawValue) {
+    return rawValue * featureScale[featureIndex] + featureOffset[featureIndex];
+  }
+
+  public double denormalizeFeature(int featureIndex, double normalizedValue) {
+    return (normalizedValue - featureOffset[featureIndex]) / featureScale[featureIndex];
+  }
+
+  public double normalizeTarget(double rawValue) {
+    return normalizeTarget(0, rawValue);
+  }
+
+  public double denormalizeTarget(double normalizedValue) {
+    return denormalizeTarget(0, normalizedValue);
+  }
+
+  /**
+   * Normalize the raw value of output {@code output} of a multi-output target, e.g. one prediction horizon
+   */
+  public double normalizeTarget(int output, double rawValue) {
+    return isTargetFitted(output) ? rawValue * targetScale[output] + targetOffset[output] : rawValue;
+  }
+
+  public double denormalizeTarget(int output, double normalizedValue) {
+    return isTargetFitted(output) ? (normalizedValue - targetOffset[output]) / targetScale[output] : normalizedValue;
+  }
+
+  /**
+   * Whether output {@code output} has label statistics, failing for an output the fitted target does not have
+   */
+  private boolean isTargetFitted(int output) {
+    if (targetScale.length == 0) {
+      return false;
+    }
+    if (output < 0 || output >= targetScale.length) {
+      throw new IllegalArgumentException("Target scaler has %d outputs, not output %d".formatted(targetScale.length, output));
+    }
+    return true;
+  }
+
+  /**
+   * Normalize a raw feature row into {@code out}, which may be the same array as {@code raw}.
+   */
+  public void normalizeRow(double[] raw, double[] out) {
+    for (int f = 0; f < featureScale.length; f++) {
+      out[f] = raw[f] * featureScale[f] + featureOffset[f];
+    }
+  }
+
+  /**
+   * Normalized copies of the raw feature rows {@code raw}
+   */
+  public double[][] normalizeRows(double[][] raw) {
+    double[][] normalized = new double[raw.length][];
+    for (int i = 0; i < raw.length; i++) {
+      normalized[i] = new double[raw[i].length];
+      normalizeRow(raw[i], normalized[i]);
+    }
+    return normalized;
+  }
+
+  /**
+   * Normalize a raw feature row while writing it into a 2D {@code [examples, features]} inference buffer.
+   */
+  public void writeNormalizedRow(double[] raw, INDArray buffer, long example) {
+    for (int f = 0; f < featureScale.length; f++) {
+      buffer.putScalar(example, f, raw[f] * featureScale[f] + featureOffset[f]);
+    }
+  }
+
+  /**
+   * Normalize a raw feature row while writing it into a 3D {@code [examples, features, timeSteps]} inference buffer.
+   */
+  public void writeNormalizedRow(double[] raw, INDArray buffer, long example, long timeStep) {
+    for (int f = 0; f < featureScale.length; f++) {
+      buffer.putScalar(example, f, timeStep, raw[f] * featureScale[f] + featureOffset[f]);
+    }
+  }
+
+  private static double[][] featureAffine(DataNormalization scaler) {
+    if (scaler instanceof NormalizerMinMaxScaler minMax) {
+      return minMaxAffine(minMax.getMin(), minMax.getMax(), minMax.getTargetMin(), minMax.getTargetMax());
+    }
+    if (scaler instanceof NormalizerStandardize standardize) {
+      return standardizeAffine(standardize.getMean(), standardize.getStd());
+    }
+    throw new IllegalArgumentException("Unsupported feature scaler %s".formatted(scaler.getClass().getSimpleName()));
+  }
+
+  private static double[][] targetAffine(DataNormalization scaler) {
+    if (scaler instanceof NormalizerMinMaxScaler minMax && minMax.isFitLabel()) {
+      return minMaxAffine(minMax.getLabelMin(), minMax.getLabelMax(), minMax.getTargetMin(), minMax.getTargetMax());
+    }
+    if (scaler instanceof NormalizerStandardize standardize && standardize.isFitLabel()) {
+      return standardizeAffine(standardize.getLabelMean(), standardize.getLabelStd());
+    }
+    // Unfitted label statistics leave every output untouched
+    return new double[][]{ new double[0], new double[0] };
+  }
+
+  private static double[][] minMaxAffine(INDArray min, INDArray max, double targetMin, double targetMax) {
+    double[] lower = min.toDoubleVector();
+    double[] upper = max.toDoubleVector();
+    double[] scale = new double[lower.length];
+    double[] offset = new double[lower.length];
+    for (int i = 0; i < lower.length; i++) {
+      double range = Math.max(upper[i] - lower[i], Nd4j.EPS_THRESHOLD);
+      scale[i] = (targetMax - targetMin) / range;
+      offset[i] = targetMin - lower[i] * scale[i];
+    }
+    return new double[][]{ scale, offset };
+  }
+
+  private static double[][] standardizeAffine(INDArray mean, INDArray std) {
+    double[] means = mean.toDoubleVector();
+    double[] stds = std.toDoubleVector();
+    double[] scale = new double[means.length];
+    double[] offset = new double[means.length];
+    for (int i = 0; i < means.length; i++) {
+      scale[i] = 1.0 / Math.max(stds[i], Nd4j.EPS_THRESHOLD);
+      offset[i] = -means[i] * scale[i];
+    }
+    return new double[][]{ scale, offset };
+  }
+}
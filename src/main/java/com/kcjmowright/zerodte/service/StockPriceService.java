@@ -88,12 +88,9 @@ public class StockPriceService {
         LocalDateTime.now().minusDays(4),
         LocalDateTime.now().plusDays(1)
     );
-    Map<Integer, PricePrediction> predictions = (history != null && history.size() > 15) ?
-        predictionService.predictMultiHorizon(
-            history.getLast(),
-            history,
-            List.of(15, 30, 60)
-        ) : Map.of();
+    // Symbols without a specific or default model only get price updates
+    Map<Integer, PricePrediction> predictions = (history != null && history.size() > 15 && predictionService.hasModel(symbol)) ?
+        predictionService.predictLiveMultiHorizon(history, List.of(15, 30, 60)) : Map.of();
 
     return new StockPriceUpdate(
         symbol,
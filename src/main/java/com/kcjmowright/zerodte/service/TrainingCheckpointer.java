@@ -0,0 +1,376 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.TrainingCheckpoint;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
+import org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer;
+import org.nd4j.linalg.factory.Nd4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Periodically checkpoints training runs under {@code <basePath>/checkpoints/<runId>/} so an interrupted run
+ * can be resumed. Parameters and updater state are copied on the training thread, then serialized by a single
+ * background writer so the training loop never waits on disk. If the writer falls behind, only the newest
+ * pending checkpoint of each run is kept.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrainingCheckpointer {
+  private static final String CHECKPOINTS = "checkpoints";
+  private static final String LATEST = "latest";
+  private static final String MODEL_FILE = "model.zip";
+  private static final String BEST_PARAMS_FILE = "best_params.bin";
+  private static final String FEATURE_SCALER_FILE = "feature_scaler.bin";
+  private static final String TARGET_SCALER_FILE = "target_scaler.bin";
+  private static final String STATE_FILE = "state.json";
+
+  private final JsonMapper mapper;
+  // Newest checkpoint of each run not yet written
+  private final Map<String, Snapshot> pending = new ConcurrentHashMap<>();
+  private ExecutorService writer;
+
+  @Value("${zerodte.model.basePath:./data/}")
+  private String basePath;
+
+  @Value("${zerodte.training.checkpointInterval:5}")
+  private int checkpointInterval;
+
+  @Value("${zerodte.training.checkpointsRetained:2}")
+  private int checkpointsRetained;
+
+  @PostConstruct
+  public void start() {
+    writer = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("gex-checkpoint").daemon(true).factory());
+  }
+
+  /**
+   * Let the pending checkpoints finish writing before shutdown
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    writer.shutdown();
+    if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+      log.warn("Checkpoint writer did not finish within 30 seconds");
+    }
+  }
+
+  /**
+   * Start checkpointing a run whose datasets were normalized by the scalers of {@code preprocessor}.
+   * Returns {@code null} when checkpointing is disabled.
+   */
+  Session open(String runId, TrainingConfig config, GEXDataPreprocessor preprocessor) {
+    if (checkpointInterval <= 0) {
+      return null;
+    }
+    return new Session(
+        runId,
+        config,
+        serialize(preprocessor.getFeatureScaler()),
+        serialize(preprocessor.getTargetScaler())
+    );
+  }
+
+  /**
+   * Latest checkpoint of every run that can be resumed
+   */
+  public List<TrainingCheckpoint> getCheckpoints() {
+    Path root = Paths.get(basePath, CHECKPOINTS);
+    if (!Files.isDirectory(root)) {
+      return List.of();
+    }
+    List<TrainingCheckpoint> checkpoints = new ArrayList<>();
+    try (Stream<Path> runs = Files.list(root)) {
+      for (Path run : runs.filter(Files::isDirectory).toList()) {
+        TrainingCheckpoint checkpoint = getCheckpoint(run.getFileName().toString());
+        if (checkpoint != null) {
+          checkpoints.add(checkpoint);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to list checkpoints due to %s".formatted(e.getMessage()), e);
+    }
+    checkpoints.sort(Comparator.comparing(TrainingCheckpoint::getCreated).reversed());
+    return checkpoints;
+  }
+
+  /**
+   * Latest checkpoint of {@code runId}, or {@code null} if it has none
+   */
+  public TrainingCheckpoint getCheckpoint(String runId) {
+    Path directory = latestDirectory(runId);
+    return directory == null ? null : mapper.readValue(directory.resolve(STATE_FILE).toFile(), TrainingCheckpoint.class);
+  }
+
+  /**
+   * Restore the network, its updater state and best parameters from the latest checkpoint of {@code runId},
+   * loading the scalers the run was normalized with into {@code preprocessor}
+   */
+  Restored restore(String runId, GEXDataPreprocessor preprocessor) {
+    Path directory = latestDirectory(runId);
+    if (directory == null) {
+      throw new IllegalStateException("No checkpoint found for training run " + runId);
+    }
+    try {
+      TrainingCheckpoint checkpoint = mapper.readValue(directory.resolve(STATE_FILE).toFile(), TrainingCheckpoint.class);
+      MultiLayerNetwork model = ModelSerializer.restoreMultiLayerNetwork(directory.resolve(MODEL_FILE).toFile(), true);
+      INDArray bestParams = Nd4j.readBinary(directory.resolve(BEST_PARAMS_FILE).toFile());
+      preprocessor.loadScalers(
+          directory.resolve(FEATURE_SCALER_FILE).toFile(),
+          directory.resolve(TARGET_SCALER_FILE).toFile()
+      );
+      log.info("Restored training run {} at epoch {} from {}", runId, checkpoint.getEpoch(), directory);
+      return new Restored(checkpoint, model, bestParams);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to restore checkpoint due to %s".formatted(e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Remove the checkpoints of a run once its final model has been saved
+   */
+  void delete(String runId) {
+    writer.execute(() -> {
+      pending.remove(runId);
+      Path directory = Paths.get(basePath, CHECKPOINTS, runId);
+      try {
+        deleteRecursively(directory);
+        log.debug("Deleted checkpoints of training run {}", runId);
+      } catch (IOException e) {
+        log.warn("Unable to delete checkpoints at {}", directory, e);
+      }
+    });
+  }
+
+  private Path latestDirectory(String runId) {
+    Path run = Paths.get(basePath, CHECKPOINTS, runId);
+    Path latest = run.resolve(LATEST);
+    if (!Files.exists(latest)) {
+      return null;
+    }
+    try {
+      return run.resolve(Files.readString(latest, StandardCharsets.UTF_8).trim());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read checkpoint pointer due to %s".formatted(e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Write the newest pending checkpoint of {@code runId}, if a later task has not written it already
+   */
+  private void writePending(String runId) {
+    Snapshot snapshot = pending.remove(runId);
+    if (snapshot != null) {
+      write(snapshot);
+    }
+  }
+
+  private void write(Snapshot snapshot) {
+    Path run = Paths.get(basePath, CHECKPOINTS, snapshot.checkpoint.getRunId());
+    String name = "epoch-%05d".formatted(snapshot.checkpoint.getEpoch());
+    Path directory = run.resolve(name);
+    long start = System.currentTimeMillis();
+    try {
+      Files.createDirectories(directory);
+      writeModel(snapshot, directory.resolve(MODEL_FILE));
+      Nd4j.saveBinary(snapshot.bestParams, directory.resolve(BEST_PARAMS_FILE).toFile());
+      Files.write(directory.resolve(FEATURE_SCALER_FILE), snapshot.featureScaler);
+      Files.write(directory.resolve(TARGET_SCALER_FILE), snapshot.targetScaler);
+      Files.write(directory.resolve(STATE_FILE), mapper.writeValueAsBytes(snapshot.checkpoint));
+
+      // Publish the checkpoint only once it is complete
+      Path pointer = run.resolve(LATEST + ".tmp");
+      Files.writeString(pointer, name, StandardCharsets.UTF_8);
+      Files.move(pointer, run.resolve(LATEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      pruneCheckpoints(run);
+      log.info("Checkpointed training run {} at epoch {} in {} ms",
+          snapshot.checkpoint.getRunId(), snapshot.checkpoint.getEpoch(), System.currentTimeMillis() - start);
+    } catch (Exception e) {
+      log.warn("Unable to write checkpoint to {}", directory, e);
+    }
+  }
+
+  /**
+   * Write the network in the {@link ModelSerializer} layout from copies taken on the training thread
+   */
+  private void writeModel(Snapshot snapshot, Path file) throws IOException {
+    try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      zip.putNextEntry(new ZipEntry(ModelSerializer.CONFIGURATION_JSON));
+      zip.write(snapshot.configuration.getBytes(StandardCharsets.UTF_8));
+      zip.closeEntry();
+
+      zip.putNextEntry(new ZipEntry(ModelSerializer.COEFFICIENTS_BIN));
+      writeArray(snapshot.params, zip);
+      zip.closeEntry();
+
+      if (snapshot.updaterState != null) {
+        zip.putNextEntry(new ZipEntry(ModelSerializer.UPDATER_BIN));
+        writeArray(snapshot.updaterState, zip);
+        zip.closeEntry();
+      }
+    }
+  }
+
+  private void writeArray(INDArray array, OutputStream out) throws IOException {
+    // Not closed, that would close the enclosing zip stream
+    DataOutputStream data = new DataOutputStream(out);
+    Nd4j.write(array, data);
+    data.flush();
+  }
+
+  private void pruneCheckpoints(Path run) throws IOException {
+    List<Path> checkpoints;
+    try (Stream<Path> files = Files.list(run)) {
+      checkpoints = files
+          .filter(path -> Files.isDirectory(path) && path.getFileName().toString().startsWith("epoch-"))
+          .sorted(Comparator.comparing(Path::getFileName).reversed())
+          .toList();
+    }
+    for (int i = Math.max(1, checkpointsRetained); i < checkpoints.size(); i++) {
+      deleteRecursively(checkpoints.get(i));
+    }
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(path)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private static byte[] serialize(NormalizerMinMaxScaler scaler) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      NormalizerSerializer.getDefault().write(scaler, out);
+      return out.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize scaler due to %s".formatted(e.getMessage()), e);
+    }
+  }
+
+  /**
+   * Checkpoints one run every {@code checkpointInterval} epochs
+   */
+  final class Session {
+    private final String runId;
+    private final TrainingConfig config;
+    private final byte[] featureScaler;
+    private final byte[] targetScaler;
+
+    private Session(String runId, TrainingConfig config, byte[] featureScaler, byte[] targetScaler) {
+      this.runId = runId;
+      this.config = config;
+      this.featureScaler = featureScaler;
+      this.targetScaler = targetScaler;
+    }
+
+    /**
+     * Called on the training thread after {@code state} has recorded a completed epoch
+     */
+    void afterEpoch(MultiLayerNetwork model, TrainingState state) {
+      if (state.epoch % checkpointInterval != 0) {
+        return;
+      }
+      long start = System.nanoTime();
+      Updater updater = model.getUpdater();
+      INDArray updaterState = updater == null ? null : updater.getStateViewArray();
+      Snapshot snapshot = new Snapshot(
+          TrainingCheckpoint.builder()
+              .runId(runId)
+              .config(config)
+              .epoch(state.epoch)
+              .bestEpoch(state.bestEpoch)
+              .bestValidationLoss(state.bestValidLoss)
+              .patienceCounter(state.patienceCounter)
+              .stoppedEarly(state.stoppedEarly)
+              .trainingMillis(state.trainingMillis)
+              .trainLosses(List.copyOf(state.trainLosses))
+              .validationLosses(List.copyOf(state.validLosses))
+              .created(LocalDateTime.now())
+              .build(),
+          model.getLayerWiseConfigurations().toJson(),
+          model.params().dup(),
+          updaterState == null ? null : updaterState.dup(),
+          state.bestParams.dup(),
+          featureScaler,
+          targetScaler
+      );
+      // A checkpoint still waiting for the writer is replaced rather than queued behind
+      if (pending.put(runId, snapshot) == null) {
+        writer.execute(() -> writePending(runId));
+      }
+      log.debug("Captured checkpoint of training run {} at epoch {} in {} µs",
+          runId, state.epoch, (System.nanoTime() - start) / 1_000L);
+    }
+  }
+
+  /**
+   * Immutable copy of everything a checkpoint writes, detached from the network that keeps training
+   */
+  private record Snapshot(TrainingCheckpoint checkpoint,
+                          String configuration,
+                          INDArray params,
+                          INDArray updaterState,
+                          INDArray bestParams,
+                          byte[] featureScaler,
+                          byte[] targetScaler) {
+  }
+
+  /**
+   * A network and early stopping state restored from a checkpoint
+   */
+  record Restored(TrainingCheckpoint checkpoint, MultiLayerNetwork model, INDArray bestParams) {
+
+    /**
+     * Carry the restored counters and best parameters over into a fresh training state
+     */
+    void applyTo(TrainingState state) {
+      state.epoch = checkpoint.getEpoch();
+      state.bestEpoch = checkpoint.getBestEpoch();
+      state.bestValidLoss = checkpoint.getBestValidationLoss();
+      state.patienceCounter = checkpoint.getPatienceCounter();
+      state.stoppedEarly = checkpoint.isStoppedEarly();
+      state.trainingMillis = checkpoint.getTrainingMillis();
+      state.trainLosses.addAll(checkpoint.getTrainLosses());
+      state.validLosses.addAll(checkpoint.getValidationLosses());
+      state.bestParams.assign(bestParams);
+    }
+  }
+}
@@ -0,0 +1,277 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.exceptions.ResourceNotAvailableException;
+import com.kcjmowright.zerodte.model.TrainingCheckpoint;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import com.kcjmowright.zerodte.model.TrainingJob;
+import com.kcjmowright.zerodte.model.TrainingJobStatus;
+import com.kcjmowright.zerodte.model.TrainingProgress;
+import com.kcjmowright.zerodte.model.TrainingResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs training requests as background jobs on a dedicated bounded executor.
+ * Submissions beyond the worker count wait in a bounded queue instead of contending for CPU,
+ * and every epoch is published to {@code /topic/training/{jobId}}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrainingJobService {
+  private static final String TOPIC = "/topic/training/";
+
+  private final GEXModelTrainer trainer;
+  private final TrainingCheckpointer checkpointer;
+  private final SimpMessagingTemplate messagingTemplate;
+  private final Map<String, TrainingJob> jobs = new ConcurrentHashMap<>();
+  private final Map<String, Future<?>> futures = new ConcurrentHashMap<>();
+  private final Set<String> cancelRequested = ConcurrentHashMap.newKeySet();
+  private ThreadPoolExecutor executor;
+
+  @Value("${zerodte.training.workers:1}")
+  private int workers;
+
+  @Value("${zerodte.training.queueCapacity:16}")
+  private int queueCapacity;
+
+  @Value("${zerodte.training.jobHistory:50}")
+  private int jobHistory;
+
+  @PostConstruct
+  public void start() {
+    executor = new ThreadPoolExecutor(
+        workers,
+        workers,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(queueCapacity),
+        Thread.ofPlatform().name("gex-training-", 0).factory()
+    );
+  }
+
+  @PreDestroy
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Queue a training run and return its job immediately
+   */
+  public TrainingJob submit(TrainingConfig config) {
+    String id = UUID.randomUUID().toString();
+    return submit(id, config, listener -> trainer.trainModel(config, listener, id));
+  }
+
+  /**
+   * Queue long-running work other than a training run, e.g. a warm start or a benchmark, whose outcome becomes
+   * the job's report
+   */
+  public TrainingJob submitTask(TrainingConfig config, Supplier<?> task) {
+    return submit(UUID.randomUUID().toString(), config, listener -> task.get());
+  }
+
+  /**
+   * Queue a training run performed by {@code training}, which reports its epochs to the listener it is given
+   */
+  public TrainingJob submit(TrainingConfig config, TrainingRun training) {
+    return submit(UUID.randomUUID().toString(), config, training::train);
+  }
+
+  /**
+   * Queue the continuation of an interrupted run from its latest checkpoint under its original job id
+   */
+  public TrainingJob resume(String id) {
+    TrainingCheckpoint checkpoint = checkpointer.getCheckpoint(id);
+    if (checkpoint == null) {
+      return null;
+    }
+    TrainingJob existing = jobs.get(id);
+    if (existing != null && existing.getFinished() == null) {
+      throw new ResourceNotAvailableException("Training job {} is still {}", id, existing.getStatus());
+    }
+    return submit(id, checkpoint.getConfig(), listener -> trainer.resumeTraining(id, listener));
+  }
+
+  private TrainingJob submit(String id, TrainingConfig config, Function<TrainingProgressListener, ?> work) {
+    pruneHistory();
+    TrainingJob job = TrainingJob.builder()
+        .id(id)
+        .status(TrainingJobStatus.QUEUED)
+        .config(config)
+        .submitted(LocalDateTime.now())
+        .trainLosses(new ArrayList<>())
+        .validationLosses(new ArrayList<>())
+        .build();
+    jobs.put(job.getId(), job);
+    try {
+      futures.put(job.getId(), executor.submit(() -> run(job, work)));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(job.getId());
+      throw new ResourceNotAvailableException("Training queue is full with {} waiting jobs", executor.getQueue().size());
+    }
+    log.info("Queued training job {}", job.getId());
+    publish(job, null, null);
+    return snapshot(job);
+  }
+
+  public TrainingJob getJob(String id) {
+    TrainingJob job = jobs.get(id);
+    return job == null ? null : snapshot(job);
+  }
+
+  public List<TrainingJob> getJobs() {
+    return jobs.values().stream()
+        .map(this::snapshot)
+        .sorted(Comparator.comparing(TrainingJob::getSubmitted).reversed())
+        .toList();
+  }
+
+  /**
+   * Cancel a queued job, or interrupt a running one at its next epoch boundary
+   */
+  public TrainingJob cancel(String id) {
+    TrainingJob job = jobs.get(id);
+    if (job == null) {
+      return null;
+    }
+    cancelRequested.add(id);
+    Future<?> future = futures.get(id);
+    if (future != null) {
+      future.cancel(true);
+    }
+    boolean queued;
+    synchronized (job) {
+      queued = job.getStatus() == TrainingJobStatus.QUEUED;
+      if (queued) {
+        job.setStatus(TrainingJobStatus.CANCELLED);
+        job.setFinished(LocalDateTime.now());
+      }
+    }
+    if (queued) {
+      // run() never starts a cancelled job, so its cleanup would never happen
+      futures.remove(id);
+      cancelRequested.remove(id);
+    }
+    return snapshot(job);
+  }
+
+  private void run(TrainingJob job, Function<TrainingProgressListener, ?> work) {
+    synchronized (job) {
+      // Cancelled while queued
+      if (job.getStatus() != TrainingJobStatus.QUEUED) {
+        return;
+      }
+      job.setStatus(TrainingJobStatus.RUNNING);
+      job.setStarted(LocalDateTime.now());
+    }
+    log.info("Started training job {}", job.getId());
+    try {
+      Object outcome = work.apply((epoch, trainLoss, validationLoss) -> {
+        update(job, j -> {
+          j.setCurrentEpoch(epoch);
+          j.getTrainLosses().add(trainLoss);
+          j.getValidationLosses().add(validationLoss);
+        });
+        publish(job, trainLoss, validationLoss);
+      });
+      finish(job, TrainingJobStatus.COMPLETED, outcome, null);
+    } catch (Exception e) {
+      if (e instanceof CancellationException || cancelRequested.contains(job.getId())) {
+        finish(job, TrainingJobStatus.CANCELLED, null, null);
+      } else {
+        log.error("Training job {} failed", job.getId(), e);
+        finish(job, TrainingJobStatus.FAILED, null, e.getMessage());
+      }
+    } finally {
+      futures.remove(job.getId());
+      cancelRequested.remove(job.getId());
+    }
+  }
+
+  private void finish(TrainingJob job, TrainingJobStatus status, Object outcome, String error) {
+    update(job, j -> {
+      j.setStatus(status);
+      if (outcome instanceof TrainingResult result) {
+        j.setResult(result);
+      } else {
+        j.setReport(outcome);
+      }
+      j.setError(error);
+      j.setFinished(LocalDateTime.now());
+    });
+    log.info("Training job {} {}", job.getId(), status);
+    publish(job, null, null);
+  }
+
+  private void update(TrainingJob job, Consumer<TrainingJob> change) {
+    synchronized (job) {
+      change.accept(job);
+    }
+  }
+
+  private TrainingJob snapshot(TrainingJob job) {
+    synchronized (job) {
+      return job.toBuilder()
+          .trainLosses(List.copyOf(job.getTrainLosses()))
+          .validationLosses(List.copyOf(job.getValidationLosses()))
+          .build();
+    }
+  }
+
+  private void publish(TrainingJob job, Double trainLoss, Double validationLoss) {
+    TrainingProgress progress;
+    synchronized (job) {
+      progress = new TrainingProgress(job.getId(), job.getStatus(), job.getCurrentEpoch(), trainLoss, validationLoss);
+    }
+    try {
+      messagingTemplate.convertAndSend(TOPIC + job.getId(), progress);
+    } catch (Exception e) {
+      log.warn("Unable to publish progress for training job {}", job.getId(), e);
+    }
+  }
+
+  /**
+   * Forget the oldest finished jobs beyond the configured history size
+   */
+  private void pruneHistory() {
+    List<TrainingJob> finished = jobs.values().stream()
+        .filter(job -> job.getFinished() != null)
+        .sorted(Comparator.comparing(TrainingJob::getFinished))
+        .toList();
+    for (int i = 0; i < finished.size() - jobHistory; i++) {
+      jobs.remove(finished.get(i).getId());
+    }
+  }
+
+  /**
+   * A unit of training work that reports its epochs to a listener
+   */
+  @FunctionalInterface
+  public interface TrainingRun {
+    TrainingResult train(TrainingProgressListener listener);
+  }
+}
@@ -0,0 +1,14 @@
+package com.kcjmowright.zerodte.service;
+
+/**
+ * Receives the losses of every completed training epoch.
+ */
+@FunctionalInterface
+public interface TrainingProgressListener {
+  TrainingProgressListener NONE = (epoch, trainLoss, validationLoss) -> { };
+
+  /**
+   * @param epoch one based number of the completed epoch
+   */
+  void onEpoch(int epoch, double trainLoss, double validationLoss);
+}
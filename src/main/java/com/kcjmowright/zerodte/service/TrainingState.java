@@ -0,0 +1,57 @@
+package com.kcjmowright.zerodte.service;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Early stopping bookkeeping for one training run, kept outside the loop so a run can be paused after
+ * a number of epochs and resumed later.
+ */
+final class TrainingState {
+  final List<Double> trainLosses = new ArrayList<>();
+  final List<Double> validLosses = new ArrayList<>();
+  int epoch = 0;
+  int bestEpoch = 0;
+  int patienceCounter = 0;
+  double bestValidLoss = Double.MAX_VALUE;
+  boolean stoppedEarly = false;
+  long trainingMillis = 0L;
+  int bestSnapshots = 0;
+  long bestSnapshotNanos = 0L;
+  final INDArray bestParams;
+  final TrainingProgressListener listener;
+  TrainingCheckpointer.Session checkpoints;
+
+  TrainingState(MultiLayerNetwork model, TrainingProgressListener listener) {
+    // A single flattened parameter buffer, overwritten in place whenever validation improves
+    this.bestParams = model.params().dup();
+    this.listener = listener;
+  }
+
+  /**
+   * Copy the current parameters of {@code model} into the best parameter buffer
+   */
+  void recordBest(MultiLayerNetwork model) {
+    long start = System.nanoTime();
+    bestParams.assign(model.params());
+    bestSnapshots++;
+    bestSnapshotNanos += System.nanoTime() - start;
+  }
+
+  /**
+   * Restore the best parameters into {@code model} in place
+   */
+  void restoreBest(MultiLayerNetwork model) {
+    model.setParams(bestParams);
+  }
+
+  /**
+   * Whether the run can train more epochs within {@code maxEpochs}
+   */
+  boolean canContinue(int maxEpochs) {
+    return !stoppedEarly && epoch < maxEpochs;
+  }
+}
@@ -0,0 +1,191 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.EnsemblePrediction;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
+import org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GEXEnsemblePredictorTest {
+  private static final int TIME_STEPS = 5;
+  private static final int HORIZON = 15;
+
+  @TempDir
+  Path scalerDirectory;
+
+  @Test
+  void shouldScaleWeightsToOneAndLeaveOutZeroWeights() {
+    Map<String, Double> weights = new LinkedHashMap<>();
+    weights.put("ff", 1.0);
+    weights.put("lstm", 3.0);
+    weights.put("attention", 0.0);
+
+    Map<String, Double> normalized = GEXEnsemblePredictor.normalizeWeights(weights);
+    assertEquals(List.of("ff", "lstm"), List.copyOf(normalized.keySet()));
+    assertEquals(0.25, normalized.get("ff"), 1e-12);
+    assertEquals(0.75, normalized.get("lstm"), 1e-12);
+  }
+
+  @Test
+  void shouldRejectMissingOrInvalidWeights() {
+    assertThrows(IllegalArgumentException.class, () -> GEXEnsemblePredictor.normalizeWeights(Map.of()));
+    assertThrows(IllegalArgumentException.class, () -> GEXEnsemblePredictor.normalizeWeights(Map.of("ff", 0.0)));
+    assertThrows(IllegalArgumentException.class, () -> GEXEnsemblePredictor.normalizeWeights(Map.of("ff", -1.0)));
+    assertThrows(IllegalArgumentException.class, () -> GEXEnsemblePredictor.normalizeWeights(Map.of("ff", Double.NaN)));
+  }
+
+  @Test
+  void shouldCombineMembersByWeight() {
+    List<GEXEnsemblePredictor.MemberResult> results = List.of(
+        new GEXEnsemblePredictor.MemberResult("a", "feedforward", 1.0, 2_000_000L),
+        new GEXEnsemblePredictor.MemberResult("b", "lstm", 3.0, 5_000_000L),
+        new GEXEnsemblePredictor.MemberResult("c", "attention", -1.0, 1_000_000L)
+    );
+    Map<String, Double> weights = Map.of("a", 0.5, "b", 0.25, "c", 0.25);
+
+    EnsemblePrediction ensemble = GEXEnsemblePredictor.combine(results, weights);
+    // 0.5 * 1 + 0.25 * 3 - 0.25 * 1
+    assertEquals(1.0, ensemble.getPriceChange(), 1e-12);
+    // 0.5 * 0 + 0.25 * 4 + 0.25 * 4
+    assertEquals(Math.sqrt(2.0), ensemble.getDisagreement(), 1e-12);
+    assertEquals(4.0, ensemble.getSpread(), 1e-12);
+    assertFalse(ensemble.isDirectionConsensus());
+    assertEquals(5.0, ensemble.getSlowestMemberMillis(), 1e-12);
+    assertEquals(8.0, ensemble.getTotalMemberMillis(), 1e-12);
+    assertEquals(0.25, ensemble.getMembers().get(1).getWeight(), 1e-12);
+
+    EnsemblePrediction agreeing = GEXEnsemblePredictor.combine(results.subList(0, 2), Map.of("a", 0.5, "b", 0.5));
+    assertEquals(2.0, agreeing.getPriceChange(), 1e-12);
+    assertEquals(1.0, agreeing.getDisagreement(), 1e-12);
+    assertTrue(agreeing.isDirectionConsensus());
+  }
+
+  @Test
+  void shouldRunMembersConcurrentlyWithTheirOwnPredictions() throws Exception {
+    GEXDataPreprocessor preprocessor = fittedPreprocessor();
+    int features = preprocessor.getNumFeatures();
+    ModelBundle feedForward = bundle("ff", feedForwardNetwork(features), preprocessor,
+        TrainingConfig.builder().modelType("feedforward").predictionHorizon(HORIZON).build());
+    ModelBundle lstm = bundle("lstm", lstmNetwork(features), preprocessor,
+        TrainingConfig.builder().modelType("lstm").predictionHorizon(HORIZON).useTimeSeries(true).sequenceLength(TIME_STEPS).build());
+
+    Random random = new Random(3);
+    double[][] rows = new double[TIME_STEPS][features];
+    for (double[] row : rows) {
+      for (int f = 0; f < features; f++) {
+        row[f] = random.nextDouble() * 10.0;
+      }
+    }
+
+    GEXEnsemblePredictor ensemble = new GEXEnsemblePredictor(null, null, null, null);
+    ensemble.start();
+    try {
+      List<GEXEnsemblePredictor.MemberResult> results = ensemble.predictMembers(List.of(feedForward, lstm), rows, HORIZON);
+      assertEquals(expectedFeedForward(feedForward, rows), results.get(0).priceChange(), 1e-9);
+      assertEquals(expectedLstm(lstm, rows), results.get(1).priceChange(), 1e-9);
+      assertEquals(GEXEnsemblePredictor.predictMember(lstm, rows, HORIZON).priceChange(), results.get(1).priceChange(), 1e-12);
+    } finally {
+      ensemble.stop();
+    }
+  }
+
+  @Test
+  void shouldRejectMembersOfOtherHorizons() throws Exception {
+    GEXDataPreprocessor preprocessor = fittedPreprocessor();
+    int features = preprocessor.getNumFeatures();
+    ModelBundle single = bundle("ff", feedForwardNetwork(features), preprocessor,
+        TrainingConfig.builder().modelType("feedforward").predictionHorizon(HORIZON).build());
+    ModelBundle multi = bundle("multi", lstmNetwork(features), preprocessor,
+        TrainingConfig.builder().modelType("multihorizon").horizons(List.of(5, HORIZON)).sequenceLength(TIME_STEPS).build());
+
+    GEXEnsemblePredictor.requireHorizon(single, HORIZON);
+    GEXEnsemblePredictor.requireHorizon(multi, HORIZON);
+    assertThrows(IllegalArgumentException.class, () -> GEXEnsemblePredictor.requireHorizon(single, 60));
+    assertThrows(IllegalArgumentException.class, () -> GEXEnsemblePredictor.requireHorizon(multi, 60));
+  }
+
+  private double expectedFeedForward(ModelBundle bundle, double[][] rows) {
+    double[] row = new double[rows[0].length];
+    bundle.getScalers().normalizeRow(rows[rows.length - 1], row);
+    double output = bundle.getModel().output(Nd4j.create(row, new long[]{ 1, row.length }, 'c')).getDouble(0, 0);
+    return bundle.getScalers().denormalizeTarget(0, output);
+  }
+
+  private double expectedLstm(ModelBundle bundle, double[][] rows) {
+    double output = bundle.getModel()
+        .output(Nd4j.create(GEXPredictor.normalizeWindow(bundle, rows), new long[]{ 1, rows[0].length, TIME_STEPS }, 'c'))
+        .get(NDArrayIndex.point(0), NDArrayIndex.point(0), NDArrayIndex.point(TIME_STEPS - 1))
+        .getDouble(0);
+    return bundle.getScalers().denormalizeTarget(0, output);
+  }
+
+  private GEXDataPreprocessor fittedPreprocessor() throws Exception {
+    GEXDataPreprocessor preprocessor = new GEXDataPreprocessor();
+    NormalizerMinMaxScaler scaler = new NormalizerMinMaxScaler(0, 1);
+    scaler.fitLabel(true);
+    scaler.fit(new DataSet(
+        Nd4j.rand(DataType.DOUBLE, 50, preprocessor.getNumFeatures()).muli(10.0),
+        Nd4j.rand(DataType.DOUBLE, 50, 2).subi(0.5)
+    ));
+    File featureFile = scalerDirectory.resolve("feature_scaler.bin").toFile();
+    File targetFile = scalerDirectory.resolve("target_scaler.bin").toFile();
+    NormalizerSerializer.getDefault().write(scaler, featureFile);
+    NormalizerSerializer.getDefault().write(scaler, targetFile);
+    preprocessor.loadScalers(featureFile, targetFile);
+    return preprocessor;
+  }
+
+  private static ModelBundle bundle(String version, MultiLayerNetwork model, GEXDataPreprocessor preprocessor, TrainingConfig config) {
+    return new ModelBundle(version, model, preprocessor, config, LocalDateTime.now(), new ModelBundle.Serving(1, 8, 100L));
+  }
+
+  private static MultiLayerNetwork feedForwardNetwork(int features) {
+    MultiLayerNetwork model = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+        .seed(7)
+        .dataType(DataType.DOUBLE)
+        .list()
+        .layer(new DenseLayer.Builder().nIn(features).nOut(8).activation(Activation.RELU).build())
+        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(8).nOut(1).activation(Activation.IDENTITY).build())
+        .build());
+    model.init();
+    return model;
+  }
+
+  private static MultiLayerNetwork lstmNetwork(int features) {
+    MultiLayerNetwork model = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+        .seed(11)
+        .dataType(DataType.DOUBLE)
+        .list()
+        .layer(new LSTM.Builder().nIn(features).nOut(6).activation(Activation.TANH).build())
+        .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(6).nOut(2).activation(Activation.IDENTITY).build())
+        .build());
+    model.init();
+    return model;
+  }
+}
@@ -0,0 +1,70 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.HyperparameterResult;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GEXHyperparameterTunerTest {
+  private static final int TRIALS = 9;
+  private static final int NUM_EPOCHS = 45;
+  private static final int MIN_EPOCHS = 5;
+  private static final int REDUCTION_FACTOR = 3;
+  private static final long MILLIS_PER_EPOCH = 10L;
+
+  @Test
+  void shouldPromoteTheTopThirdOfEveryRungAndReportTheSavedCompute() {
+    MultiLayerNetwork model = tinyNetwork();
+    List<GEXHyperparameterTuner.TrialRun> trials = new ArrayList<>();
+    for (int i = 0; i < TRIALS; i++) {
+      trials.add(new GEXHyperparameterTuner.TrialRun(i, Map.of("trial", i),
+          TrainingConfig.builder().numEpochs(NUM_EPOCHS).build()));
+    }
+
+    // A stub trial whose validation loss is its index, so lower indices rank higher in every rung
+    GEXHyperparameterTuner.successiveHalving(trials, 1, MIN_EPOCHS, REDUCTION_FACTOR, (trial, untilEpoch) -> {
+      if (trial.state == null) {
+        trial.state = new TrainingState(model, TrainingProgressListener.NONE);
+      }
+      trial.state.trainingMillis += (untilEpoch - trial.state.epoch) * MILLIS_PER_EPOCH;
+      trial.state.epoch = untilEpoch;
+      trial.state.bestValidLoss = trial.index;
+    });
+
+    // Rung 0 trains all 9 trials for 5 epochs, its best 3 go on to 15 epochs and the best of those to all 45
+    assertEquals(List.of(2, 1, 1, 0, 0, 0, 0, 0, 0), trials.stream().map(trial -> trial.rung).toList());
+    assertEquals(List.of(45, 15, 15, 5, 5, 5, 5, 5, 5), trials.stream().map(trial -> trial.state.epoch).toList());
+
+    trials.forEach(trial -> trial.score = trial.index);
+    HyperparameterResult result = GEXHyperparameterTuner.summarize(trials, trials.getFirst(), System.currentTimeMillis());
+    assertEquals(Map.of("trial", 0), result.getBestParams());
+    // 105 of 405 grid epochs at 10 ms each
+    assertEquals(1_050L, result.getComputeMillis());
+    assertEquals(4_050L, result.getEstimatedFullGridMillis());
+    assertEquals(3_000L, result.getComputeTimeSavedMillis());
+    assertFalse(result.getTrials().getFirst().isStoppedEarly());
+    assertTrue(result.getTrials().get(1).isStoppedEarly());
+    assertEquals(2, result.getTrials().getFirst().getRung());
+  }
+
+  private static MultiLayerNetwork tinyNetwork() {
+    MultiLayerNetwork model = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+        .list()
+        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(1).nOut(1).activation(Activation.IDENTITY).build())
+        .build());
+    model.init();
+    return model;
+  }
+}
@@ -0,0 +1,63 @@
+package com.kcjmowright.zerodte.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GEXOnlineLearnerTest {
+  private static final double MARGIN = 0.05;
+
+  @Test
+  void shouldKeepTheMeanOfTheLastErrorsOnly() {
+    GEXOnlineLearner.RollingError errors = new GEXOnlineLearner.RollingError(3);
+    assertEquals(0.0, errors.mean(), 0.0);
+
+    errors.addAll(new double[]{ 1.0, 2.0 });
+    assertFalse(errors.isFull());
+    assertEquals(2, errors.size());
+    assertEquals(1.5, errors.mean(), 1e-12);
+
+    // Wraps around, 1.0 and 2.0 drop out
+    errors.addAll(new double[]{ 3.0, 4.0, 5.0 });
+    assertTrue(errors.isFull());
+    assertEquals(3, errors.size());
+    assertEquals(4.0, errors.mean(), 1e-12);
+
+    GEXOnlineLearner.RollingError copy = new GEXOnlineLearner.RollingError(3);
+    copy.addAll(new double[]{ 100.0 });
+    copy.copyFrom(errors);
+    assertEquals(3, copy.size());
+    assertEquals(4.0, copy.mean(), 1e-12);
+
+    // The copy continues where the original would, evicting 3.0
+    copy.addAll(new double[]{ 9.0 });
+    errors.addAll(new double[]{ 9.0 });
+    assertEquals(errors.mean(), copy.mean(), 1e-12);
+    assertEquals(6.0, copy.mean(), 1e-12);
+  }
+
+  @Test
+  void shouldPromoteOnlyOnceTheWindowIsFullAndTheMarginIsMet() {
+    GEXOnlineLearner.RollingError live = new GEXOnlineLearner.RollingError(4);
+    GEXOnlineLearner.RollingError shadow = new GEXOnlineLearner.RollingError(4);
+
+    // Far better, but over half a window
+    live.addAll(new double[]{ 1.0, 1.0 });
+    shadow.addAll(new double[]{ 0.5, 0.5 });
+    assertFalse(GEXOnlineLearner.shadowWins(live, shadow, MARGIN));
+
+    // A full window, better but within the margin
+    live.addAll(new double[]{ 1.0, 1.0 });
+    shadow.addAll(new double[]{ 1.5, 1.4 });
+    assertEquals(0.975, shadow.mean(), 1e-12);
+    assertFalse(GEXOnlineLearner.shadowWins(live, shadow, MARGIN));
+
+    // Beyond the margin once the oldest 0.5 makes way for 0.1
+    live.addAll(new double[]{ 1.0 });
+    shadow.addAll(new double[]{ 0.1 });
+    assertEquals(0.875, shadow.mean(), 1e-12);
+    assertTrue(GEXOnlineLearner.shadowWins(live, shadow, MARGIN));
+  }
+}
@@ -0,0 +1,139 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.GEXData;
+import com.kcjmowright.zerodte.model.PricePrediction;
+import com.kcjmowright.zerodte.model.TotalGEX;
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
+import org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GEXPredictorTest {
+  private static final String SYMBOL = "SPY";
+  private static final int HORIZON = 15;
+  // Within the feature history window, so predicting from the whole history sees the same features
+  private static final int SNAPSHOTS = 40;
+
+  @TempDir
+  Path scalerDirectory;
+
+  @Test
+  void shouldPredictEveryBatchIndexAsFromItsOwnHistory() throws Exception {
+    // Shorter windows start at the 10th snapshot, longer ones once a full window exists
+    assertBatchMatchesSinglePredictions(5, 10);
+    assertBatchMatchesSinglePredictions(12, 12);
+  }
+
+  private void assertBatchMatchesSinglePredictions(int sequenceLength, int first) throws Exception {
+    GEXDataPreprocessor preprocessor = fittedPreprocessor();
+    ModelBundle bundle = lstmBundle(preprocessor, sequenceLength);
+    GEXModelRegistry registry = mock(GEXModelRegistry.class);
+    when(registry.getActive(SYMBOL, HORIZON)).thenReturn(bundle);
+    GEXPredictor predictor = new GEXPredictor(preprocessor, new GEXFeatureExtractor(), null, registry, null);
+    // Smaller than the batch, so the windows span several chunks
+    ReflectionTestUtils.setField(predictor, "batchSize", 7);
+
+    List<GEXData> snapshots = snapshots();
+    List<PricePrediction> batch = predictor.predictBatch(snapshots, HORIZON);
+    assertEquals(SNAPSHOTS - first, batch.size());
+    for (int k = 0; k < batch.size(); k++) {
+      int i = first + k;
+      PricePrediction single = predictor.predict(snapshots.get(i), snapshots.subList(0, i), HORIZON);
+      String index = "sequence length %d, index %d".formatted(sequenceLength, i);
+      assertEquals(single.getPredictionTime(), batch.get(k).getPredictionTime(), index);
+      assertEquals(single.getPredictedPrice().doubleValue(), batch.get(k).getPredictedPrice().doubleValue(), 1e-9, index);
+      assertEquals(single.getExpectedMove().doubleValue(), batch.get(k).getExpectedMove().doubleValue(), 1e-9, index);
+      assertEquals(single.getConfidence(), batch.get(k).getConfidence(), index);
+      assertEquals(single.getRegime(), batch.get(k).getRegime(), index);
+    }
+  }
+
+  private static List<GEXData> snapshots() {
+    Random random = new Random(17);
+    LocalDateTime start = LocalDateTime.of(2026, 10, 19, 9, 30);
+    double price = 580.0;
+    List<GEXData> snapshots = new ArrayList<>(SNAPSHOTS);
+    for (int i = 0; i < SNAPSHOTS; i++) {
+      double open = price;
+      price += random.nextGaussian();
+      TotalGEX totalGEX = new TotalGEX();
+      totalGEX.setSpotPrice(BigDecimal.valueOf(price));
+      totalGEX.setCallWall(BigDecimal.valueOf(590.0));
+      totalGEX.setPutWall(BigDecimal.valueOf(570.0));
+      totalGEX.setFlipPoint(BigDecimal.valueOf(578.0 + random.nextDouble() * 4.0));
+      totalGEX.setTotalCallGEX(BigDecimal.valueOf(1_000.0 + random.nextDouble() * 100.0));
+      totalGEX.setTotalPutGEX(BigDecimal.valueOf(-800.0 - random.nextDouble() * 100.0));
+      totalGEX.setTotalGEX(totalGEX.getTotalCallGEX().add(totalGEX.getTotalPutGEX()));
+      totalGEX.setTimestamp(start.plusMinutes(i));
+      snapshots.add(GEXData.builder()
+          .created(start.plusMinutes(i))
+          .symbol(SYMBOL)
+          .open(BigDecimal.valueOf(open))
+          .close(BigDecimal.valueOf(price))
+          .high(BigDecimal.valueOf(Math.max(open, price) + random.nextDouble()))
+          .low(BigDecimal.valueOf(Math.min(open, price) - random.nextDouble()))
+          .totalGEX(totalGEX)
+          .vix(BigDecimal.valueOf(15.0 + random.nextDouble()))
+          .build());
+    }
+    return snapshots;
+  }
+
+  private GEXDataPreprocessor fittedPreprocessor() throws Exception {
+    GEXDataPreprocessor preprocessor = new GEXDataPreprocessor();
+    NormalizerMinMaxScaler scaler = new NormalizerMinMaxScaler(0, 1);
+    scaler.fitLabel(true);
+    scaler.fit(new DataSet(
+        Nd4j.rand(DataType.DOUBLE, 50, preprocessor.getNumFeatures()).muli(10.0),
+        Nd4j.rand(DataType.DOUBLE, 50, 1).subi(0.5)
+    ));
+    File featureFile = scalerDirectory.resolve("feature_scaler.bin").toFile();
+    File targetFile = scalerDirectory.resolve("target_scaler.bin").toFile();
+    NormalizerSerializer.getDefault().write(scaler, featureFile);
+    NormalizerSerializer.getDefault().write(scaler, targetFile);
+    preprocessor.loadScalers(featureFile, targetFile);
+    return preprocessor;
+  }
+
+  private static ModelBundle lstmBundle(GEXDataPreprocessor preprocessor, int sequenceLength) {
+    MultiLayerNetwork model = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+        .seed(19)
+        .dataType(DataType.DOUBLE)
+        .list()
+        .layer(new LSTM.Builder().nIn(preprocessor.getNumFeatures()).nOut(6).activation(Activation.TANH).build())
+        .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(6).nOut(1).activation(Activation.IDENTITY).build())
+        .build());
+    model.init();
+    TrainingConfig config = TrainingConfig.builder()
+        .modelType("lstm")
+        .predictionHorizon(HORIZON)
+        .useTimeSeries(true)
+        .sequenceLength(sequenceLength)
+        .build();
+    return new ModelBundle("lstm-" + sequenceLength, model, preprocessor, config, LocalDateTime.now(),
+        new ModelBundle.Serving(1, 8, 100L));
+  }
+}
@@ -0,0 +1,81 @@
+package com.kcjmowright.zerodte.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GradientBoostedTreesTest {
+  private static final int FEATURES = 4;
+  private static final GradientBoostedTrees.Params PARAMS = new GradientBoostedTrees.Params(200, 0.1, 4, 20, 1.0, 64, 20);
+
+  @Test
+  void shouldFitNonLinearTargetIdenticallyOnAnyNumberOfThreads() {
+    double[][] rows = rows(20_000, 1);
+    double[] targets = targets(rows);
+    double[][] validRows = rows(2_000, 2);
+    double[] validTargets = targets(validRows);
+
+    GradientBoostedTrees serial = GradientBoostedTrees.fit(rows, targets, validRows, validTargets, PARAMS, 1);
+    GradientBoostedTrees parallel = GradientBoostedTrees.fit(rows, targets, validRows, validTargets, PARAMS, 4);
+
+    double[][] testRows = rows(1_000, 3);
+    double[] testTargets = targets(testRows);
+    double[] serialPredictions = new double[testRows.length];
+    double[] parallelPredictions = new double[testRows.length];
+    double squaredError = 0.0;
+    for (int i = 0; i < testRows.length; i++) {
+      serialPredictions[i] = serial.predict(testRows[i]);
+      parallelPredictions[i] = parallel.predict(testRows[i]);
+      squaredError += Math.pow(serialPredictions[i] - testTargets[i], 2);
+    }
+    assertEquals(serial.size(), parallel.size());
+    assertArrayEquals(serialPredictions, parallelPredictions, 0.0);
+    // Targets vary with a variance of about 1.1, the noise alone accounts for 0.01
+    assertTrue(squaredError / testRows.length < 0.05, "test MSE " + squaredError / testRows.length);
+
+    // The last feature does not enter the targets and gains next to nothing
+    double[] gains = serial.getFeatureGains();
+    assertTrue(gains[FEATURES - 1] < 0.01 * gains[0]);
+  }
+
+  @Test
+  void shouldBinDistinctValuesAndQuantiles() {
+    double[] cuts = GradientBoostedTrees.quantileCuts(new double[]{ 1, 1, 2, 3, 3, Double.NaN }, 8);
+    assertArrayEquals(new double[]{ 1.5, 2.5 }, cuts, 0.0);
+    assertEquals(0, GradientBoostedTrees.bin(cuts, 1.0));
+    assertEquals(1, GradientBoostedTrees.bin(cuts, 2.5));
+    assertEquals(2, GradientBoostedTrees.bin(cuts, 3.0));
+    assertEquals(2, GradientBoostedTrees.bin(cuts, Double.NaN));
+
+    double[] sorted = new double[1_000];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = i;
+    }
+    assertEquals(3, GradientBoostedTrees.quantileCuts(sorted, 4).length);
+  }
+
+  private static double[][] rows(int count, long seed) {
+    Random random = new Random(seed);
+    double[][] rows = new double[count][FEATURES];
+    for (double[] row : rows) {
+      for (int f = 0; f < FEATURES; f++) {
+        row[f] = random.nextDouble() * 2.0 - 1.0;
+      }
+    }
+    return rows;
+  }
+
+  private static double[] targets(double[][] rows) {
+    Random noise = new Random(rows.length);
+    double[] targets = new double[rows.length];
+    for (int i = 0; i < rows.length; i++) {
+      double[] row = rows[i];
+      targets[i] = (row[0] > 0.2 ? 1.5 : -0.5) + row[1] * row[2] + noise.nextGaussian() * 0.1;
+    }
+    return targets;
+  }
+}
@@ -0,0 +1,64 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.InferencePoolStats;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InferencePoolTest {
+
+  @Test
+  void shouldMatchSerialOutputUnderConcurrentCallers() {
+    MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
+        .seed(3)
+        .dataType(DataType.DOUBLE)
+        .list()
+        .layer(new DenseLayer.Builder().nIn(4).nOut(8).activation(Activation.TANH).build())
+        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(8).nOut(1).activation(Activation.IDENTITY).build())
+        .build();
+    MultiLayerNetwork model = new MultiLayerNetwork(config);
+    model.init();
+
+    List<INDArray> inputs = new ArrayList<>();
+    List<double[]> expected = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      INDArray input = Nd4j.rand(DataType.DOUBLE, 16, 4);
+      inputs.add(input);
+      expected.add(model.output(input).toDoubleVector());
+    }
+
+    InferencePool pool = new InferencePool("test", model, 3);
+    try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+      List<CompletableFuture<double[]>> futures = inputs.stream()
+          .map(input -> CompletableFuture.supplyAsync(() -> pool.execute(replica -> replica.output(input).toDoubleVector()), executor))
+          .toList();
+      for (int i = 0; i < inputs.size(); i++) {
+        assertArrayEquals(expected.get(i), futures.get(i).join(), 1e-12);
+      }
+    }
+
+    InferencePoolStats stats = pool.getStats();
+    assertTrue(stats.getReplicas() <= 3);
+    assertEquals(0, stats.getBusy());
+    assertEquals(64, stats.getExecution().getCount());
+    assertEquals(64, stats.getQueueWait().getCount());
+  }
+}
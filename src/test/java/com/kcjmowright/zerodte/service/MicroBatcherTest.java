@@ -0,0 +1,67 @@
+package com.kcjmowright.zerodte.service;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MicroBatcherTest {
+  private static final int FEATURES = 3;
+  private static final int TIME_STEPS = 5;
+  private static final int CLIENTS = 8;
+
+  @Test
+  void shouldRunConcurrentRequestsAsOneBatchWithUnbatchedResults() {
+    MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
+        .seed(11)
+        .dataType(DataType.DOUBLE)
+        .list()
+        .layer(new LSTM.Builder().nIn(FEATURES).nOut(6).activation(Activation.TANH).build())
+        .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(6).nOut(2).activation(Activation.IDENTITY).build())
+        .build();
+    MultiLayerNetwork model = new MultiLayerNetwork(config);
+    model.init();
+
+    Random random = new Random(5);
+    double[][] windows = new double[CLIENTS][FEATURES * TIME_STEPS];
+    double[][] expected = new double[CLIENTS][];
+    for (int c = 0; c < CLIENTS; c++) {
+      for (int i = 0; i < windows[c].length; i++) {
+        windows[c][i] = random.nextDouble();
+      }
+      expected[c] = model.output(Nd4j.create(windows[c], new long[]{ 1, FEATURES, TIME_STEPS }, 'c'))
+          .get(NDArrayIndex.point(0), NDArrayIndex.all(), NDArrayIndex.point(TIME_STEPS - 1))
+          .toDoubleVector();
+    }
+
+    // The batch fills up with all clients long before the wait times out
+    InferencePool pool = new InferencePool("test", model, 2);
+    MicroBatcher batcher = new MicroBatcher(pool, FEATURES, TIME_STEPS, DataType.DOUBLE, CLIENTS, 10_000_000L);
+    try (ExecutorService executor = Executors.newFixedThreadPool(CLIENTS)) {
+      List<CompletableFuture<double[]>> futures = IntStream.range(0, CLIENTS)
+          .mapToObj(c -> CompletableFuture.supplyAsync(() -> batcher.predict(windows[c]), executor))
+          .toList();
+      for (int c = 0; c < CLIENTS; c++) {
+        assertArrayEquals(expected[c], futures.get(c).join(), 1e-12);
+      }
+    }
+    assertEquals(1, pool.getStats().getExecution().getCount());
+  }
+}
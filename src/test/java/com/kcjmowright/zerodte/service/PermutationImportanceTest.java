@@ -0,0 +1,56 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.FeatureImportance;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PermutationImportanceTest {
+
+  @Test
+  void shouldOnlyAttributeImportanceToFeaturesTheModelUses() {
+    // y = 2 * x0, the other two features are ignored by the model
+    MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
+        .dataType(DataType.DOUBLE)
+        .list()
+        .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE)
+            .nIn(3)
+            .nOut(1)
+            .activation(Activation.IDENTITY)
+            .build())
+        .build();
+    MultiLayerNetwork model = new MultiLayerNetwork(config);
+    model.init();
+    model.setParam("0_W", Nd4j.create(new double[][]{{ 2.0 }, { 0.0 }, { 0.0 }}));
+    model.setParam("0_b", Nd4j.zeros(DataType.DOUBLE, 1, 1));
+
+    INDArray features = Nd4j.rand(DataType.DOUBLE, 200, 3);
+    DataSet dataSet = new DataSet(features, features.getColumn(0, true).mul(2.0));
+    NormalizerMinMaxScaler scaler = new NormalizerMinMaxScaler(0, 1);
+    scaler.fit(dataSet);
+
+    List<FeatureImportance> importances = new PermutationImportance(model, dataSet, ScalerParameters.of(scaler, scaler), 0, 64)
+        .compute(List.of("x0", "x1", "x2"), 4, 2, 7L);
+
+    assertEquals("x0", importances.getFirst().getFeature());
+    assertTrue(importances.getFirst().getConfidence95Lower() > 0.0);
+    for (FeatureImportance importance : importances.subList(1, importances.size())) {
+      assertEquals(0.0, importance.getImportance(), 1e-9);
+      assertEquals(4, importance.getRepetitions());
+    }
+  }
+}
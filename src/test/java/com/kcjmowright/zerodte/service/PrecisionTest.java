@@ -0,0 +1,59 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PrecisionTest {
+  private static final int FEATURES = 21;
+  private static final int TIME_STEPS = 15;
+
+  @Test
+  void shouldPredictWithinToleranceInReducedPrecision() {
+    MultiLayerNetwork reference = GEXModelBuilder.withDataType(
+        new GEXModelBuilder().buildLSTMNetwork(FEATURES, TIME_STEPS, 137, 0.001, 0.0001),
+        DataType.DOUBLE
+    );
+    // Normalized features lie in [0, 1]
+    INDArray input = Nd4j.rand(DataType.DOUBLE, 32, FEATURES, TIME_STEPS);
+    double[] expected = reference.output(input).toDoubleVector();
+
+    MultiLayerNetwork single = GEXModelBuilder.withDataType(reference, DataType.FLOAT);
+    assertEquals(DataType.FLOAT, single.params().dataType());
+    assertArrayEquals(expected, single.output(input.castTo(DataType.FLOAT)).castTo(DataType.DOUBLE).toDoubleVector(), 1e-5);
+
+    MultiLayerNetwork half = GEXModelBuilder.withDataType(reference, DataType.HALF);
+    assertEquals(DataType.HALF, half.params().dataType());
+    assertArrayEquals(expected, half.output(input.castTo(DataType.HALF)).castTo(DataType.DOUBLE).toDoubleVector(), 1e-2);
+  }
+
+  @Test
+  void shouldCastDataSetTensorsAndMasks() {
+    DataSet dataSet = new DataSet(
+        Nd4j.rand(DataType.DOUBLE, 4, FEATURES, TIME_STEPS),
+        Nd4j.rand(DataType.DOUBLE, 4, 1, TIME_STEPS),
+        null,
+        Nd4j.ones(DataType.DOUBLE, 4, TIME_STEPS)
+    );
+    DataSet cast = GEXDataPreprocessor.castDataSet(dataSet, DataType.FLOAT);
+    assertEquals(DataType.FLOAT, cast.getFeatures().dataType());
+    assertEquals(DataType.FLOAT, cast.getLabels().dataType());
+    assertEquals(DataType.FLOAT, cast.getLabelsMaskArray().dataType());
+    assertArrayEquals(dataSet.getFeatures().toDoubleVector(), cast.getFeatures().castTo(DataType.DOUBLE).toDoubleVector(), 1e-6);
+  }
+
+  @Test
+  void shouldTrainInFloatUnlessConfigured() {
+    assertEquals(DataType.FLOAT, GEXModelTrainer.dataType(new TrainingConfig()));
+    assertEquals(DataType.DOUBLE, GEXModelTrainer.dataType(TrainingConfig.builder().dataType("double").build()));
+    assertThrows(IllegalArgumentException.class, () -> GEXModelTrainer.dataType(TrainingConfig.builder().dataType("HALF").build()));
+  }
+}
@@ -0,0 +1,134 @@
+package com.kcjmowright.zerodte.service;
+
+import com.kcjmowright.zerodte.model.TrainingConfig;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
+import org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RnnStreamTest {
+  private static final int TIME_STEPS = 4;
+  private static final int OUTPUTS = 2;
+  private static final int ROWS = 3 * TIME_STEPS + 1;
+  private static final LocalDateTime START = LocalDateTime.of(2026, 10, 19, 9, 30);
+
+  @TempDir
+  Path scalerDirectory;
+
+  @Test
+  void shouldMatchFullWindowInferenceAtEveryStep() throws Exception {
+    ModelBundle bundle = lstmBundle();
+    double[][] rows = randomRows(ROWS, bundle.getScalers().getNumFeatures(), 5);
+    RnnStream stream = new RnnStream(bundle);
+    assertTrue(RnnStream.supports(bundle.getModel()));
+
+    for (int i = 0; i < ROWS; i++) {
+      double[] outputs = stream.step(rows[i], START.plusMinutes(i));
+      if (i < TIME_STEPS - 1) {
+        assertNull(outputs, "no full window before step " + (i + 1));
+      } else {
+        assertArrayEquals(fullWindow(bundle, rows, i), outputs, 1e-9, "step " + (i + 1));
+      }
+    }
+    assertTrue(stream.isAt(START.plusMinutes(ROWS - 1)));
+  }
+
+  @Test
+  void shouldResyncFromTheTrailingWindowAfterAGap() throws Exception {
+    ModelBundle bundle = lstmBundle();
+    int features = bundle.getScalers().getNumFeatures();
+    double[][] before = randomRows(ROWS, features, 7);
+    double[][] after = randomRows(ROWS, features, 9);
+    RnnStream stream = new RnnStream(bundle);
+    for (int i = 0; i < ROWS; i++) {
+      stream.step(before[i], START.plusMinutes(i));
+    }
+
+    // Snapshots were missed, the state is rebuilt from the window ending with the newest one
+    LocalDateTime resumed = START.plusMinutes(ROWS + 10);
+    double[] outputs = stream.resync(Arrays.copyOfRange(after, 0, TIME_STEPS), resumed);
+    assertArrayEquals(fullWindow(bundle, after, TIME_STEPS - 1), outputs, 1e-9);
+    assertTrue(stream.isAt(resumed));
+    assertFalse(stream.isAt(START.plusMinutes(ROWS - 1)));
+
+    // Stepping on after the resync keeps matching the trailing window, no state from before the gap remains
+    for (int i = TIME_STEPS; i < ROWS; i++) {
+      assertArrayEquals(fullWindow(bundle, after, i), stream.step(after[i], resumed.plusMinutes(i)), 1e-9, "step " + (i + 1));
+    }
+  }
+
+  /**
+   * Normalized outputs of {@code model.output} at the last time step of the window ending with row {@code end}
+   */
+  private static double[] fullWindow(ModelBundle bundle, double[][] rows, int end) {
+    double[][] window = Arrays.copyOfRange(rows, end + 1 - TIME_STEPS, end + 1);
+    return bundle.getModel()
+        .output(Nd4j.create(GEXPredictor.normalizeWindow(bundle, window), new long[]{ 1, window[0].length, TIME_STEPS }, 'c'))
+        .get(NDArrayIndex.point(0), NDArrayIndex.all(), NDArrayIndex.point(TIME_STEPS - 1))
+        .toDoubleVector();
+  }
+
+  private static double[][] randomRows(int count, int features, long seed) {
+    Random random = new Random(seed);
+    double[][] rows = new double[count][features];
+    for (double[] row : rows) {
+      for (int f = 0; f < features; f++) {
+        row[f] = random.nextDouble() * 10.0;
+      }
+    }
+    return rows;
+  }
+
+  private ModelBundle lstmBundle() throws Exception {
+    GEXDataPreprocessor preprocessor = new GEXDataPreprocessor();
+    NormalizerMinMaxScaler scaler = new NormalizerMinMaxScaler(0, 1);
+    scaler.fitLabel(true);
+    scaler.fit(new DataSet(
+        Nd4j.rand(DataType.DOUBLE, 50, preprocessor.getNumFeatures()).muli(10.0),
+        Nd4j.rand(DataType.DOUBLE, 50, OUTPUTS).subi(0.5)
+    ));
+    File featureFile = scalerDirectory.resolve("feature_scaler.bin").toFile();
+    File targetFile = scalerDirectory.resolve("target_scaler.bin").toFile();
+    NormalizerSerializer.getDefault().write(scaler, featureFile);
+    NormalizerSerializer.getDefault().write(scaler, targetFile);
+    preprocessor.loadScalers(featureFile, targetFile);
+
+    MultiLayerNetwork model = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+        .seed(13)
+        .dataType(DataType.DOUBLE)
+        .list()
+        .layer(new LSTM.Builder().nIn(preprocessor.getNumFeatures()).nOut(6).activation(Activation.TANH).build())
+        .layer(new LSTM.Builder().nIn(6).nOut(5).activation(Activation.TANH).build())
+        .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(5).nOut(OUTPUTS).activation(Activation.IDENTITY).build())
+        .build());
+    model.init();
+    TrainingConfig config = TrainingConfig.builder()
+        .modelType("lstm")
+        .predictionHorizon(15)
+        .useTimeSeries(true)
+        .sequenceLength(TIME_STEPS)
+        .build();
+    return new ModelBundle("lstm", model, preprocessor, config, LocalDateTime.now(), new ModelBundle.Serving(1, 8, 100L));
+  }
+}
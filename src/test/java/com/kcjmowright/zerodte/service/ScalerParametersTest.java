@@ -0,0 +1,77 @@
+package com.kcjmowright.zerodte.service;
+
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ScalerParametersTest {
+
+  private static final double[][] FEATURES = {{ 1.0, -4.0, 10.0 }, { 3.0, 2.0, 10.5 }, { 2.0, 0.0, 12.0 }};
+  private static final double[][] LABELS = {{ -0.5 }, { 0.25 }, { 1.5 }};
+
+  @Test
+  void shouldMatchMinMaxScaler() {
+    NormalizerMinMaxScaler scaler = new NormalizerMinMaxScaler(0, 1);
+    scaler.fitLabel(true);
+    DataSet dataSet = new DataSet(Nd4j.create(FEATURES), Nd4j.create(LABELS));
+    scaler.fit(dataSet);
+
+    assertParity(ScalerParameters.of(scaler, scaler), scaler, dataSet);
+  }
+
+  @Test
+  void shouldMatchStandardizer() {
+    NormalizerStandardize scaler = new NormalizerStandardize();
+    scaler.fitLabel(true);
+    DataSet dataSet = new DataSet(Nd4j.create(FEATURES), Nd4j.create(LABELS));
+    scaler.fit(dataSet);
+
+    assertParity(ScalerParameters.of(scaler, scaler), scaler, dataSet);
+  }
+
+  @Test
+  void shouldLeaveTargetUntouchedWhenLabelsNotFitted() {
+    NormalizerMinMaxScaler scaler = new NormalizerMinMaxScaler(0, 1);
+    scaler.fit(new DataSet(Nd4j.create(FEATURES), Nd4j.create(LABELS)));
+
+    ScalerParameters parameters = ScalerParameters.of(scaler, scaler);
+
+    assertEquals(0.42, parameters.denormalizeTarget(0.42), 1e-12);
+    assertEquals(0.42, parameters.normalizeTarget(0.42), 1e-12);
+  }
+
+  @Test
+  void shouldRejectOutputsTheTargetWasNotFittedOn() {
+    NormalizerMinMaxScaler scaler = new NormalizerMinMaxScaler(0, 1);
+    scaler.fitLabel(true);
+    scaler.fit(new DataSet(Nd4j.create(FEATURES), Nd4j.create(LABELS)));
+
+    ScalerParameters parameters = ScalerParameters.of(scaler, scaler);
+
+    assertThrows(IllegalArgumentException.class, () -> parameters.denormalizeTarget(1, 0.42));
+    assertThrows(IllegalArgumentException.class, () -> parameters.normalizeTarget(1, 0.42));
+  }
+
+  private void assertParity(ScalerParameters parameters, DataNormalization scaler, DataSet dataSet) {
+    DataSet transformed = dataSet.copy();
+    scaler.transform(transformed);
+
+    INDArray buffer = Nd4j.create(FEATURES.length, FEATURES[0].length);
+    for (int i = 0; i < FEATURES.length; i++) {
+      parameters.writeNormalizedRow(FEATURES[i], buffer, i);
+      assertEquals(transformed.getLabels().getDouble(i, 0), parameters.normalizeTarget(LABELS[i][0]), 1e-6);
+      assertEquals(LABELS[i][0], parameters.denormalizeTarget(transformed.getLabels().getDouble(i, 0)), 1e-6);
+    }
+    for (int i = 0; i < FEATURES.length; i++) {
+      assertArrayEquals(transformed.getFeatures().getRow(i).toDoubleVector(), buffer.getRow(i).toDoubleVector(), 1e-6);
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.kcjmowright.zerodte.service;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class StudentNetworkTest {
+  private static final int FEATURES = 21;
+  private static final int OUTPUTS = 3;
+
+  @Test
+  void shouldServeSequenceShapedInputsStepByStep() {
+    MultiLayerNetwork student = new GEXModelBuilder().buildStudentNetwork(FEATURES, OUTPUTS, 137, 0.001, 0.0001);
+    INDArray windows = Nd4j.rand(DataType.FLOAT, 4, FEATURES, 5);
+    INDArray output = student.output(windows);
+    assertArrayEquals(new long[]{ 4, OUTPUTS, 5 }, output.shape());
+
+    // Every time step is predicted from its own feature row only
+    INDArray lastRow = windows.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(4, 5));
+    assertArrayEquals(
+        output.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(4)).toDoubleVector(),
+        student.output(lastRow.dup()).get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(0)).toDoubleVector(),
+        1e-5
+    );
+  }
+}
@@ -0,0 +1,62 @@
+package com.kcjmowright.zerodte.service;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class TrainingStateTest {
+  private static final Logger log = LoggerFactory.getLogger(TrainingStateTest.class);
+  private static final int NUM_FEATURES = 19;
+  private static final int SNAPSHOTS = 20;
+
+  private final GEXModelBuilder modelBuilder = new GEXModelBuilder();
+
+  @Test
+  void shouldRestoreBestParametersOfDeepNetwork() {
+    assertRestoresBest("deep", modelBuilder.buildDeepNetwork(NUM_FEATURES, 42, 0.001, 0.0001));
+  }
+
+  @Test
+  void shouldRestoreBestParametersOfLSTMNetwork() {
+    assertRestoresBest("lstm", modelBuilder.buildLSTMNetwork(NUM_FEATURES, 15, 42, 0.001, 0.0001));
+  }
+
+  private void assertRestoresBest(String name, MultiLayerNetwork model) {
+    TrainingState state = new TrainingState(model, TrainingProgressListener.NONE);
+    model.params().addi(1.0);
+    state.recordBest(model);
+    INDArray best = model.params().dup();
+
+    model.params().muli(2.0);
+    assertNotEquals(best, model.params());
+
+    state.restoreBest(model);
+    assertEquals(best, model.params());
+    report(name, model, state);
+  }
+
+  /**
+   * Compare the per-snapshot cost of the parameter buffer with the full network clone it replaced
+   */
+  private void report(String name, MultiLayerNetwork model, TrainingState state) {
+    for (int i = 1; i < SNAPSHOTS; i++) {
+      state.recordBest(model);
+    }
+    long cloneNanos = 0L;
+    for (int i = 0; i < SNAPSHOTS; i++) {
+      long start = System.nanoTime();
+      model.clone();
+      cloneNanos += System.nanoTime() - start;
+    }
+    log.info("{}: {} parameters, buffer snapshot {} µs, clone {} µs",
+        name,
+        model.numParams(),
+        state.bestSnapshotNanos / state.bestSnapshots / 1_000L,
+        cloneNanos / SNAPSHOTS / 1_000L);
+  }
+}